@@ -0,0 +1,375 @@
+package de.squareys.nhbench.batch;
+
+import io.scif.SCIFIO;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+/**
+ * Filters a batch of image files with a pipeline of three stages: decode,
+ * filter and encode. The stages run on their own threads and are joined by
+ * bounded queues, so reading and writing files overlaps with filtering, while
+ * the number of images held in memory stays bounded by the queue capacity.
+ *
+ * Images that fail to be read, filtered or written are reported and skipped,
+ * the rest of the batch is processed anyway. This includes errors like an
+ * {@link OutOfMemoryError} for a single image. Inputs which would be written
+ * to the same output file as an earlier input, e.g. "a.png" and "a.tif", are
+ * reported and skipped as well, instead of overwriting its result.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class BatchPipeline {
+
+	/** Default capacity of the queues between the stages */
+	public static final int DEFAULT_QUEUE_CAPACITY = 2;
+
+	private final ImageCodec codec;
+	private final FilterSpec filter;
+	private final File outputDirectory;
+	private final int decoders;
+	private final int filters;
+	private final int encoders;
+	private final int queueCapacity;
+
+	/* marks the end of a queue */
+	private static final Item END = new Item(null);
+
+	/**
+	 * An image on its way through the pipeline.
+	 */
+	private static class Item {
+		final File file;
+		Img<FloatType> input;
+		Img<FloatType> output;
+
+		Item(final File file) {
+			this.file = file;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param codec
+	 *            codec to read and write images with
+	 * @param filter
+	 *            filter to apply to every image
+	 * @param outputDirectory
+	 *            directory to write the filtered images to
+	 * @param decoders
+	 *            number of decoding threads
+	 * @param filters
+	 *            number of filtering threads
+	 * @param encoders
+	 *            number of encoding threads
+	 * @param queueCapacity
+	 *            maximum number of images waiting between two stages
+	 */
+	public BatchPipeline(final ImageCodec codec, final FilterSpec filter,
+			final File outputDirectory, final int decoders, final int filters,
+			final int encoders, final int queueCapacity) {
+		if (decoders < 1 || filters < 1 || encoders < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException(
+					"Thread counts and queue capacity must be >= 1");
+		}
+		this.codec = codec;
+		this.filter = filter;
+		this.outputDirectory = outputDirectory;
+		this.decoders = decoders;
+		this.filters = filters;
+		this.encoders = encoders;
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Process a batch of files.
+	 *
+	 * @param inputs
+	 *            the files to filter
+	 * @return throughput and utilization of the run
+	 * @throws IOException
+	 *             if the output directory could not be created
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the pipeline
+	 */
+	public BatchReport run(final List<File> inputs) throws IOException,
+			InterruptedException {
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			throw new IOException("Could not create " + outputDirectory);
+		}
+
+		final BlockingQueue<Item> files = new LinkedBlockingQueue<Item>();
+		final BlockingQueue<Item> decoded = new ArrayBlockingQueue<Item>(
+				queueCapacity);
+		final BlockingQueue<Item> filtered = new ArrayBlockingQueue<Item>(
+				queueCapacity);
+
+		final List<String> failures = Collections
+				.synchronizedList(new ArrayList<String>());
+
+		final Map<File, File> outputs = new HashMap<File, File>();
+		for (final File file : inputs) {
+			final File output = outputFile(file);
+			final File previous = outputs.get(output);
+			if (previous != null) {
+				failures.add(file + ": output " + output
+						+ " is already written for " + previous);
+			} else {
+				outputs.put(output, file);
+				files.add(new Item(file));
+			}
+		}
+		files.add(END);
+
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicLong bytes = new AtomicLong();
+
+		final Stage decode = new Stage("decode", decoders, files, decoded,
+				failures) {
+			@Override
+			void process(final Item item) throws IOException {
+				item.input = codec.decode(item.file);
+			}
+		};
+		final Stage filterStage = new Stage("filter", filters, decoded,
+				filtered, failures) {
+			@Override
+			void process(final Item item) {
+				item.output = item.input.factory().create(item.input,
+						new FloatType());
+				filter.apply(item.input, item.output);
+				item.input = null;
+			}
+		};
+		final Stage encode = new Stage("encode", encoders, filtered, null,
+				failures) {
+			@Override
+			void process(final Item item) throws IOException {
+				codec.encode(item.output, outputFile(item.file));
+				bytes.addAndGet(Intervals.numElements(item.output) * 4);
+				item.output = null;
+				completed.incrementAndGet();
+			}
+		};
+
+		final List<Stage> stages = Arrays.asList(decode, filterStage, encode);
+		final ExecutorService executor = Executors
+				.newFixedThreadPool(decoders + filters + encoders);
+
+		final long start = System.nanoTime();
+		try {
+			for (final Stage stage : stages) {
+				for (int i = 0; i < stage.threads; ++i) {
+					executor.execute(stage.worker());
+				}
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				// keep waiting
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		final long wall = System.nanoTime() - start;
+
+		final List<BatchReport.StageStats> stats = new ArrayList<BatchReport.StageStats>();
+		for (final Stage stage : stages) {
+			stats.add(new BatchReport.StageStats(stage.name, stage.threads,
+					stage.busyNanos.get()));
+		}
+
+		return new BatchReport(completed.get(), bytes.get(), wall, stats,
+				failures);
+	}
+
+	/**
+	 * @return the file the filtered version of input is written to
+	 */
+	public File outputFile(final File input) {
+		final String name = input.getName();
+		final int dot = name.lastIndexOf('.');
+		return new File(outputDirectory, ((dot > 0) ? name.substring(0, dot)
+				: name) + codec.getExtension());
+	}
+
+	/**
+	 * List the input files of a batch.
+	 *
+	 * @param input
+	 *            a directory, whose (non hidden) files are returned in order
+	 *            of their names, or a text file with one path per line
+	 * @return the input files
+	 * @throws IOException
+	 *             if the list could not be read
+	 */
+	public static List<File> listInputs(final File input) throws IOException {
+		final List<File> files = new ArrayList<File>();
+
+		if (input.isDirectory()) {
+			final File[] children = input.listFiles();
+			if (children != null) {
+				Arrays.sort(children);
+				for (final File child : children) {
+					if (child.isFile() && !child.isHidden()) {
+						files.add(child);
+					}
+				}
+			}
+			return files;
+		}
+
+		final BufferedReader reader = new BufferedReader(new FileReader(input));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) {
+					files.add(new File(line));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return files;
+	}
+
+	/**
+	 * Filter a batch of files from the command line.
+	 *
+	 * @param args
+	 *            input directory or list file, filter specification (see
+	 *            {@link FilterSpec#parse(String)}), output directory and
+	 *            optionally the number of decoding, filtering and encoding
+	 *            threads
+	 * @throws Exception
+	 *             if the batch could not be processed
+	 */
+	public static void main(final String[] args) throws Exception {
+		if (args.length != 3 && args.length != 6) {
+			System.err.println("Usage: BatchPipeline <input dir|list file> "
+					+ "<filter, e.g. min:3> <output dir> "
+					+ "[<decoders> <filters> <encoders>]");
+			System.exit(2);
+		}
+
+		final int decoders = (args.length == 6) ? Integer.parseInt(args[3]) : 1;
+		final int filters = (args.length == 6) ? Integer.parseInt(args[4])
+				: Runtime.getRuntime().availableProcessors();
+		final int encoders = (args.length == 6) ? Integer.parseInt(args[5]) : 1;
+
+		final SCIFIO scifio = new SCIFIO();
+		try {
+			final BatchPipeline pipeline = new BatchPipeline(
+					new ScifioImageCodec(scifio), FilterSpec.parse(args[1]),
+					new File(args[2]), decoders, filters, encoders,
+					DEFAULT_QUEUE_CAPACITY);
+
+			final BatchReport report = pipeline.run(listInputs(new File(
+					args[0])));
+			report.print(System.out);
+		} finally {
+			scifio.getContext().dispose();
+		}
+	}
+
+	/**
+	 * A stage of the pipeline: takes items from its input queue, processes
+	 * them and passes them on to the output queue.
+	 */
+	private static abstract class Stage {
+		final String name;
+		final int threads;
+		final BlockingQueue<Item> in;
+		final BlockingQueue<Item> out;
+		final List<String> failures;
+		final AtomicLong busyNanos = new AtomicLong();
+		final AtomicInteger running;
+
+		Stage(final String name, final int threads,
+				final BlockingQueue<Item> in, final BlockingQueue<Item> out,
+				final List<String> failures) {
+			this.name = name;
+			this.threads = threads;
+			this.in = in;
+			this.out = out;
+			this.failures = failures;
+			this.running = new AtomicInteger(threads);
+		}
+
+		abstract void process(Item item) throws IOException;
+
+		private void end() {
+			try {
+				out.put(END);
+			} catch (final InterruptedException e) {
+				// the pipeline is shut down
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		Runnable worker() {
+			return new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (true) {
+							final Item item = in.take();
+							if (item == END) {
+								// let the other threads of this stage see it
+								in.put(END);
+								break;
+							}
+
+							final long start = System.nanoTime();
+							boolean ok = false;
+							try {
+								process(item);
+								ok = true;
+							} catch (final Throwable t) {
+								// includes errors like OutOfMemoryError, which
+								// only affect this item
+								failures.add(item.file + " (" + name + "): "
+										+ t);
+							} finally {
+								busyNanos.addAndGet(System.nanoTime() - start);
+							}
+
+							if (ok && out != null) {
+								out.put(item);
+							}
+						}
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						// the last thread of a stage ends the next one, even
+						// if it terminates abnormally
+						if (running.decrementAndGet() == 0 && out != null) {
+							end();
+						}
+					}
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package de.squareys.nhbench.batch;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Throughput and per stage utilization of a {@link BatchPipeline} run.
+ *
+ * Utilization is the fraction of the wall time the threads of a stage spent
+ * working rather than waiting on their queues. A stage close to 100% while the
+ * others idle is the bottleneck; add threads to it.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class BatchReport {
+
+	/**
+	 * Statistics of one stage.
+	 */
+	public static class StageStats {
+		private final String name;
+		private final int threads;
+		private final long busyNanos;
+
+		public StageStats(final String name, final int threads,
+				final long busyNanos) {
+			this.name = name;
+			this.threads = threads;
+			this.busyNanos = busyNanos;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public long getBusyNanos() {
+			return busyNanos;
+		}
+	}
+
+	private final int images;
+	private final long bytes;
+	private final long wallNanos;
+	private final List<StageStats> stages;
+	private final List<String> failures;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param images
+	 *            number of successfully processed images
+	 * @param bytes
+	 *            number of processed pixel bytes (as float)
+	 * @param wallNanos
+	 *            wall time of the run
+	 * @param stages
+	 *            statistics per stage
+	 * @param failures
+	 *            descriptions of failed images
+	 */
+	public BatchReport(final int images, final long bytes,
+			final long wallNanos, final List<StageStats> stages,
+			final List<String> failures) {
+		this.images = images;
+		this.bytes = bytes;
+		this.wallNanos = wallNanos;
+		this.stages = stages;
+		this.failures = failures;
+	}
+
+	public int getImages() {
+		return images;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	public List<StageStats> getStages() {
+		return Collections.unmodifiableList(stages);
+	}
+
+	public List<String> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+
+	/**
+	 * @return processed images per second
+	 */
+	public double getImagesPerSecond() {
+		return images / (wallNanos / 1e9);
+	}
+
+	/**
+	 * @return processed megabytes of pixel data per second
+	 */
+	public double getMegabytesPerSecond() {
+		return bytes / 1e6 / (wallNanos / 1e9);
+	}
+
+	/**
+	 * @return utilization of a stage in [0, 1]
+	 */
+	public double getUtilization(final StageStats stage) {
+		return stage.getBusyNanos() / ((double) wallNanos * stage.getThreads());
+	}
+
+	/**
+	 * Print the report.
+	 *
+	 * @param out
+	 *            stream to print to
+	 */
+	public void print(final PrintStream out) {
+		out.println(String.format(
+				"%d images, %.1f MB in %.2f s: %.2f images/s, %.1f MB/s",
+				images, bytes / 1e6, wallNanos / 1e9, getImagesPerSecond(),
+				getMegabytesPerSecond()));
+		for (final StageStats stage : stages) {
+			out.println(String.format("  %-8s %2d threads, %5.1f%% busy",
+					stage.getName(), stage.getThreads(),
+					100 * getUtilization(stage)));
+		}
+		for (final String failure : failures) {
+			out.println("  FAILED " + failure);
+		}
+	}
+}
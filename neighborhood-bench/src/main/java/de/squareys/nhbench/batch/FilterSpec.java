@@ -0,0 +1,128 @@
+package de.squareys.nhbench.batch;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.algorithm.neighborhood.HyperSphereShape;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.real.FloatType;
+import de.squareys.nhbench.morphology.DecomposedMorphology;
+import de.squareys.nhbench.morphology.SeparableMorphology;
+
+/**
+ * Morphological filter applied to every image of a batch, parsed from a
+ * specification like "min:3", "max:rectangle:2", "min:sphere:4" or
+ * "min:diamond:5" (operation, optional shape, radius).
+ *
+ * Rectangles are filtered with {@link SeparableMorphology}, spheres and
+ * diamonds with {@link DecomposedMorphology}, both with a mirror single
+ * boundary.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class FilterSpec {
+
+	private final boolean max;
+	private final String shapeName;
+	private final int radius;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param max
+	 *            true for a maximum filter, false for a minimum filter
+	 * @param shapeName
+	 *            "rectangle", "sphere" or "diamond"
+	 * @param radius
+	 *            radius of the shape
+	 */
+	public FilterSpec(final boolean max, final String shapeName,
+			final int radius) {
+		if (!"rectangle".equals(shapeName) && !"sphere".equals(shapeName)
+				&& !"diamond".equals(shapeName)) {
+			throw new IllegalArgumentException("Unknown shape: " + shapeName);
+		}
+		if (radius < 0) {
+			throw new IllegalArgumentException("Negative radius: " + radius);
+		}
+		this.max = max;
+		this.shapeName = shapeName;
+		this.radius = radius;
+	}
+
+	/**
+	 * Parse a filter specification.
+	 *
+	 * @param spec
+	 *            e.g. "min:3" or "max:sphere:2"
+	 * @return the filter
+	 */
+	public static FilterSpec parse(final String spec) {
+		final String[] parts = spec.split(":");
+		if (parts.length < 2 || parts.length > 3) {
+			throw new IllegalArgumentException("Expected op[:shape]:radius, got "
+					+ spec);
+		}
+
+		final boolean max;
+		if ("max".equals(parts[0])) {
+			max = true;
+		} else if ("min".equals(parts[0])) {
+			max = false;
+		} else {
+			throw new IllegalArgumentException("Unknown operation: " + parts[0]);
+		}
+
+		return new FilterSpec(max, (parts.length == 3) ? parts[1]
+				: "rectangle", Integer.parseInt(parts[parts.length - 1]));
+	}
+
+	/**
+	 * @return the shape of the filter
+	 */
+	public Shape getShape() {
+		if ("sphere".equals(shapeName)) {
+			return new HyperSphereShape(radius);
+		} else if ("diamond".equals(shapeName)) {
+			return new DiamondShape(radius);
+		}
+		return new RectangleShape(radius, false);
+	}
+
+	/**
+	 * Filter an image.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source
+	 */
+	public void apply(final RandomAccessibleInterval<FloatType> source,
+			final RandomAccessibleInterval<FloatType> target) {
+		final OutOfBoundsMirrorFactory<FloatType, RandomAccessibleInterval<FloatType>> mirror = new OutOfBoundsMirrorFactory<FloatType, RandomAccessibleInterval<FloatType>>(
+				Boundary.SINGLE);
+
+		if ("rectangle".equals(shapeName)) {
+			if (max) {
+				SeparableMorphology.dilate(source, target, getShape(), mirror);
+			} else {
+				SeparableMorphology.erode(source, target, getShape(), mirror);
+			}
+		} else {
+			if (max) {
+				DecomposedMorphology.dilate(source, target, getShape(), mirror,
+						false);
+			} else {
+				DecomposedMorphology.erode(source, target, getShape(), mirror,
+						false);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return (max ? "max" : "min") + ":" + shapeName + ":" + radius;
+	}
+}
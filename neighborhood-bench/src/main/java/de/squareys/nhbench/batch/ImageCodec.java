@@ -0,0 +1,45 @@
+package de.squareys.nhbench.batch;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Reads and writes the images of a batch. Implementations must be thread
+ * safe, since several decoding and encoding threads share one codec.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public interface ImageCodec {
+
+	/**
+	 * Read an image, converting its pixels to float.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the image
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	Img<FloatType> decode(File file) throws IOException;
+
+	/**
+	 * Write an image.
+	 *
+	 * @param img
+	 *            the image to write
+	 * @param file
+	 *            the file to write to, the format may be chosen by its
+	 *            extension
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	void encode(Img<FloatType> img, File file) throws IOException;
+
+	/**
+	 * @return file extension of written files, e.g. ".tif"
+	 */
+	String getExtension();
+}
@@ -0,0 +1,62 @@
+package de.squareys.nhbench.batch;
+
+import io.scif.SCIFIO;
+import io.scif.img.ImgIOException;
+import io.scif.img.ImgOpener;
+import io.scif.img.ImgSaver;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * {@link ImageCodec} reading any format supported by SCIFIO and writing TIFF
+ * files. All threads share one SCIFIO context.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class ScifioImageCodec implements ImageCodec {
+
+	private final SCIFIO scifio;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param scifio
+	 *            SCIFIO gateway to share
+	 */
+	public ScifioImageCodec(final SCIFIO scifio) {
+		this.scifio = scifio;
+	}
+
+	@Override
+	public Img<FloatType> decode(final File file) throws IOException {
+		try {
+			return new ImgOpener(scifio.getContext()).openImg(
+					file.getAbsolutePath(), new FloatType()).getImg();
+		} catch (final ImgIOException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void encode(final Img<FloatType> img, final File file)
+			throws IOException {
+		try {
+			new ImgSaver(scifio.getContext()).saveImg(file.getAbsolutePath(),
+					img);
+		} catch (final ImgIOException e) {
+			throw new IOException(e);
+		} catch (final IncompatibleTypeException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public String getExtension() {
+		return ".tif";
+	}
+}
@@ -0,0 +1,206 @@
+package de.squareys.nhbench.hyperstack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.CenteredRectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.neighborhood.NeighborhoodReducer;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+import de.squareys.nhbench.neighborhood.ParallelNeighborhoodExecutor;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+import de.squareys.nhbench.plan.FilterPlan;
+
+/**
+ * Filters multi-channel and time-lapse hyperstacks one hyperslice at a time,
+ * in parallel.
+ *
+ * An axis is non-spatial for a filter if the structuring element does not
+ * span it, e.g. channel and time for a {@link CenteredRectangleShape} with
+ * span 0 along those axes. Every combination of positions along the
+ * non-spatial axes, e.g. every (c, t) volume of an XYZCT image, is then an
+ * independent hyperslice and is submitted as its own task to a shared
+ * {@link ParallelNeighborhoodExecutor} pool. Many small tasks keep all
+ * threads busy until the last slices.
+ *
+ * Every task reads its hyperslice from the source and writes directly into
+ * the matching hyperslice of the target, without copies of the pixels. Like
+ * the slabs of the {@link ParallelNeighborhoodExecutor}, every task of
+ * {@link #reduce} uses its own copy of the reducer, so no state is left behind
+ * in the threads of the pool.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class HyperSliceExecutor {
+
+	private final ParallelNeighborhoodExecutor executor;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor
+	 *            executor whose thread pool runs the slices
+	 */
+	public HyperSliceExecutor(final ParallelNeighborhoodExecutor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Find the axes the structuring element of a shape does not span.
+	 *
+	 * @param shape
+	 *            the shape
+	 * @param n
+	 *            dimensionality of the images
+	 * @return for every axis, whether it is non-spatial
+	 */
+	public static boolean[] nonSpatialAxes(final Shape shape, final int n) {
+		final Interval box = StructuringElements.boundingBox(shape, n);
+
+		final boolean[] nonSpatial = new boolean[n];
+		for (int d = 0; d < n; ++d) {
+			nonSpatial[d] = box.min(d) == 0 && box.max(d) == 0;
+		}
+		return nonSpatial;
+	}
+
+	/**
+	 * Split an interval into hyperslices.
+	 *
+	 * @param interval
+	 *            interval of the image
+	 * @param nonSpatial
+	 *            axes to slice along, see {@link #nonSpatialAxes(Shape, int)}
+	 * @return the hyperslices, size 1 along the non-spatial axes
+	 */
+	public static List<Interval> slices(final Interval interval,
+			final boolean[] nonSpatial) {
+		final int n = interval.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		interval.min(min);
+		interval.max(max);
+
+		// iterate over the positions along the non-spatial axes only
+		final long[] posMax = max.clone();
+		for (int d = 0; d < n; ++d) {
+			if (!nonSpatial[d]) {
+				posMax[d] = min[d];
+			}
+		}
+
+		final List<Interval> slices = new ArrayList<Interval>();
+		final IntervalIterator positions = new IntervalIterator(min, posMax);
+		while (positions.hasNext()) {
+			positions.fwd();
+
+			final long[] sliceMin = min.clone();
+			final long[] sliceMax = max.clone();
+			for (int d = 0; d < n; ++d) {
+				if (nonSpatial[d]) {
+					sliceMin[d] = sliceMax[d] = positions.getLongPosition(d);
+				}
+			}
+			slices.add(new FinalInterval(sliceMin, sliceMax));
+		}
+		return slices;
+	}
+
+	/**
+	 * Execute a prepared {@link FilterPlan} for every hyperslice.
+	 *
+	 * @param source
+	 *            input image with the interval of the plan
+	 * @param target
+	 *            output image with the interval of the plan
+	 * @param plan
+	 *            plan of the filter, shared by all threads
+	 */
+	public <T extends RealType<T>> void filter(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final FilterPlan<T> plan) {
+		run(source, target,
+				nonSpatialAxes(plan.getShape(), source.numDimensions()),
+				new SliceFilter<T>() {
+
+					@Override
+					public void filter(final RandomAccessibleInterval<T> in,
+							final RandomAccessibleInterval<T> out,
+							final Interval slice) {
+						plan.execute(in, out, slice);
+					}
+				});
+	}
+
+	/**
+	 * Reduce the neighborhoods of every hyperslice.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param reducer
+	 *            reducer to apply, copied for every hyperslice
+	 */
+	public <T> void reduce(final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final NeighborhoodReducer<T, T> reducer) {
+		final RandomAccessible<T> extended = Views.extend(source, outOfBounds);
+
+		run(source, target, nonSpatialAxes(shape, source.numDimensions()),
+				new SliceFilter<T>() {
+
+					@Override
+					public void filter(final RandomAccessibleInterval<T> in,
+							final RandomAccessibleInterval<T> out,
+							final Interval slice) {
+						NeighborhoodReduction.reduce(extended, out, slice,
+								shape, reducer.copy());
+					}
+				});
+	}
+
+	/**
+	 * Apply a filter to every hyperslice.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source
+	 * @param nonSpatial
+	 *            axes to slice along, see {@link #nonSpatialAxes(Shape, int)}
+	 * @param filter
+	 *            filter for a single hyperslice
+	 */
+	public <T> void run(final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target,
+			final boolean[] nonSpatial, final SliceFilter<T> filter) {
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final Interval slice : slices(source, nonSpatial)) {
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					filter.filter(source, target, slice);
+					return null;
+				}
+			});
+		}
+
+		executor.invokeAll(tasks);
+	}
+}
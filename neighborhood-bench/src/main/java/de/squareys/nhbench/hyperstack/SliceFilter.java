@@ -0,0 +1,29 @@
+package de.squareys.nhbench.hyperstack;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+
+/**
+ * Filter applied to every hyperslice of an image by the
+ * {@link HyperSliceExecutor}.
+ *
+ * @param <T>
+ *            pixel type
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public interface SliceFilter<T> {
+
+	/**
+	 * Filter one hyperslice, writing directly into the target. Called by
+	 * several threads at once, for different slices.
+	 *
+	 * @param source
+	 *            complete input image
+	 * @param target
+	 *            complete output image
+	 * @param slice
+	 *            the hyperslice to compute, size 1 along the non-spatial axes
+	 */
+	void filter(RandomAccessibleInterval<T> source,
+			RandomAccessibleInterval<T> target, Interval slice);
+}
@@ -0,0 +1,160 @@
+package de.squareys.nhbench.imagej;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.Dataset;
+import net.imagej.ImageJ;
+import net.imagej.ops.map.neighborhood.array.MapNeighborhoodWithCenterNativeType;
+import net.imagej.ops.threshold.localMean.LocalMean;
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.util.Pair;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.threshold.IntegralImageThreshold;
+import de.squareys.nhbench.threshold.LocalThresholdMethod;
+
+/**
+ * Benchmark for local thresholding, comparing the imagej-ops
+ * {@link MapNeighborhoodWithCenterNativeType} path, which sums every window,
+ * with {@link IntegralImageThreshold}.
+ * 
+ * @param radius
+ *            Radius of the neighborhood
+ * @param library
+ *            "imagej-ops" for {@link LocalMean} via imagej-ops, "integral-*"
+ *            for the respective method via integral images
+ * 
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class LocalThresholdBenchmark {
+
+	final static ImageJ ij = new ImageJ();
+
+	/**
+	 * State which holds the input and output images.
+	 * 
+	 * @author Jonathan Hale (University of Konstanz)
+	 */
+	@State(Scope.Benchmark)
+	public static class ImageState {
+		public static String fileName = "./lena_grey.jpeg";
+
+		public Img<UnsignedByteType> image;
+		public Img<BitType> output;
+
+		/* Size of a synthetic input image or "file" for the input file */
+		@Param({ BenchmarkInput.FILE, "256x256", "1024x1024", "2048x2048" })
+		public String size;
+
+		/* Content of the synthetic input image */
+		@Param({ "noise" })
+		public String content;
+
+		@Setup
+		public void setup() throws IOException {
+			if (BenchmarkInput.isFile(size)) {
+				Dataset ds = (Dataset) ij.io().open(fileName);
+
+				Img<UnsignedByteType> planarin = (Img<UnsignedByteType>) ds
+						.getImgPlus().getImg();
+				image = new ArrayImgFactory<UnsignedByteType>().create(planarin,
+						planarin.firstElement());
+
+				Cursor<UnsignedByteType> c1 = planarin.cursor();
+				Cursor<UnsignedByteType> c2 = image.cursor();
+
+				while (c1.hasNext()) {
+					c2.next().set(c1.next());
+				}
+			} else {
+				image = BenchmarkInput.create(size, new UnsignedByteType(),
+						content);
+			}
+
+			output = new ArrayImgFactory<BitType>().create(image,
+					new BitType());
+		}
+	}
+
+	@Param({ "1", "2", "4", "8", "16", "32" })
+	private String radius;
+	private int radius_i;
+
+	@Param({ "imagej-ops", "integral-mean", "integral-niblack",
+			"integral-sauvola", "integral-phansalkar" })
+	private String library;
+
+	private LocalThresholdMethod method;
+
+	/**
+	 * Setup the state of this benchmark.
+	 * 
+	 * @param imgState
+	 */
+	@Setup
+	public void setup(ImageState imgState) {
+		radius_i = Integer.parseInt(radius);
+
+		if ("integral-mean".equals(library)) {
+			method = new LocalThresholdMethod.Mean(0.0);
+		} else if ("integral-niblack".equals(library)) {
+			method = new LocalThresholdMethod.Niblack(0.2, 0.0);
+		} else if ("integral-sauvola".equals(library)) {
+			method = new LocalThresholdMethod.Sauvola(0.5, 128.0);
+		} else if ("integral-phansalkar".equals(library)) {
+			method = new LocalThresholdMethod.Phansalkar(0.25, 0.5, 2.0, 10.0,
+					255.0);
+		}
+	}
+
+	/**
+	 * Threshold the image.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void localThreshold(ImageState state) {
+		if ("imagej-ops".equals(library)) {
+			ij.op().run(MapNeighborhoodWithCenterNativeType.class,
+					state.output, state.image,
+					ij.op().op(LocalMean.class, BitType.class, Pair.class, 0.0),
+					radius_i);
+		} else {
+			IntegralImageThreshold.apply(state.image, state.output,
+					new RectangleShape(radius_i, false), method);
+		}
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 * 
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(LocalThresholdBenchmark.class
+				.getSimpleName());
+	}
+}
@@ -20,6 +20,7 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.infra.Blackhole;
 import org.openjdk.jmh.runner.RunnerException;
 
@@ -35,6 +36,7 @@ import de.squareys.nhbench.main.NeighborhoodBenchmarks;
  *
  */
 @State(Scope.Benchmark)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
 public class CreateShapeBenchmark {
 
 	/*
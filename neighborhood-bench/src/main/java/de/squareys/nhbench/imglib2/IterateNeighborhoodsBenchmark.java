@@ -1,8 +1,8 @@
 package de.squareys.nhbench.imglib2;
 
-import java.util.Iterator;
 import java.util.concurrent.TimeUnit;
 
+import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
@@ -10,19 +10,26 @@ import net.imglib2.algorithm.neighborhood.Neighborhood;
 import net.imglib2.algorithm.neighborhood.RectangleShape;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.runner.RunnerException;
 
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.AllocationMeter;
 import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.OffsetNeighborhood;
 
 /**
  * Benchmark for iterating through a {@link IterableInterval}<
@@ -31,7 +38,10 @@ import de.squareys.nhbench.main.NeighborhoodBenchmarks;
  * @param useOutOfBounds
  *            (true/false) extend the created image with a border
  * @param iterationType
- *            (foreach/while) iterate with foreach or while(hasNext)
+ *            (foreach/while/offsets) iterate with foreach, while(hasNext)
+ *            on reused cursors, or with an {@link OffsetNeighborhood}. The
+ *            offsets variant allocates nothing per pixel, which is checked
+ *            at the end of every trial with {@link AllocationMeter}.
  * @param iteratorType
  *            (safe/unsafe) type of the neighborhoods iterator
  * 
@@ -39,13 +49,11 @@ import de.squareys.nhbench.main.NeighborhoodBenchmarks;
  *
  */
 @State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
 public class IterateNeighborhoodsBenchmark {
 
 	public static final int SPAN = 3;
 
-	@Param({ "true", "false" })
-	private String optimized;
-
 	/**
 	 * State which creates holds an image. It is Thread Scope, since the pixels
 	 * are incremented during the benchmark, which may result in the JIT
@@ -60,27 +68,39 @@ public class IterateNeighborhoodsBenchmark {
 		@Param({ "false", "true" })
 		private String useOutOfBounds;
 
+		/* Size of the iterated area */
+		@Param({ "100x100", "512x512", "2048x2048" })
+		private String size;
+
 		@Setup
 		public void setup() {
 			// for non-outOfBounds, we need to make sure, all iterated pixel can
 			// be accessed.
-			final long[] iteratedAreaSize = { 100, 100 };
+			final long[] iteratedAreaSize = BenchmarkInput.parseSize(size);
+			final int n = iteratedAreaSize.length;
 
 			if (Boolean.parseBoolean(useOutOfBounds)) {
+				final long[] max = new long[n];
+				for (int d = 0; d < n; ++d) {
+					max[d] = iteratedAreaSize[d] - 1;
+				}
+
 				img = Views.interval(Views
 						.extendBorder(new ArrayImgFactory<FloatType>().create(
 								iteratedAreaSize, new FloatType())),
-						new long[] { 0, 0 }, iteratedAreaSize);
+						new long[n], max);
 			} else {
-				final long[] size = new long[] {
-						iteratedAreaSize[0] + 2 * SPAN,
-						iteratedAreaSize[1] + 2 * SPAN };
-				final long[] min = new long[] { SPAN, SPAN };
-				final long[] max = new long[] { size[0] - SPAN - 1,
-						size[1] - SPAN - 1 };
+				final long[] paddedSize = new long[n];
+				final long[] min = new long[n];
+				final long[] max = new long[n];
+				for (int d = 0; d < n; ++d) {
+					paddedSize[d] = iteratedAreaSize[d] + 2 * SPAN;
+					min[d] = SPAN;
+					max[d] = paddedSize[d] - SPAN - 1;
+				}
 
 				img = Views.interval(new ArrayImgFactory<FloatType>().create(
-						size, new FloatType()), min, max);
+						paddedSize, new FloatType()), min, max);
 			}
 
 		}
@@ -88,6 +108,17 @@ public class IterateNeighborhoodsBenchmark {
 
 	private IterableInterval<Neighborhood<FloatType>> neighborhoods;
 
+	@Param({ "foreach", "while", "offsets" })
+	private String iterationType;
+
+	/* reused by the while and offsets variants */
+	private Cursor<Neighborhood<FloatType>> neighborhoodCursor;
+	private Neighborhood<FloatType> neighborhood;
+	private Cursor<FloatType> neighborhoodPixels;
+	private Cursor<FloatType> centers;
+	private OffsetNeighborhood<FloatType> offsetNeighborhood;
+	private long numPixels;
+
 	@Param({ "safe", "unsafe" })
 	private String iteratorType;
 
@@ -101,30 +132,18 @@ public class IterateNeighborhoodsBenchmark {
 	 */
 	@Setup
 	public void setup(ImageState imgState) {
-		if ("safe".equals(iteratorType)) {
+		final RectangleShape shape = new RectangleShape(SPAN,
+				Boolean.parseBoolean(skipCenter));
 
-			if ("true".equals(optimized)) {
-				neighborhoods = new RectangleShape(SPAN,
-						Boolean.parseBoolean(skipCenter))
-						.neighborhoodsSafe(imgState.img);
-			} else {
-//				neighborhoods = new net.imglib2.algorithm.neighborhood.old.RectangleShape(SPAN,
-//						Boolean.parseBoolean(skipCenter))
-//						.neighborhoodsSafe(imgState.img);
-			}
-			
+		numPixels = Intervals.numElements(imgState.img);
+		centers = Views.flatIterable(imgState.img).localizingCursor();
+		offsetNeighborhood = new OffsetNeighborhood<FloatType>(imgState.img,
+				shape);
+
+		if ("safe".equals(iteratorType)) {
+			neighborhoods = shape.neighborhoodsSafe(imgState.img);
 		} else {
-			
-			if ("true".equals(optimized)) {
-				neighborhoods = new RectangleShape(SPAN,
-						Boolean.parseBoolean(skipCenter))
-						.neighborhoods(imgState.img);
-			} else {
-//				neighborhoods = new net.imglib2.algorithm.neighborhood.old.RectangleShape(SPAN,
-//						Boolean.parseBoolean(skipCenter))
-//						.neighborhoods(imgState.img);
-			}
-			
+			neighborhoods = shape.neighborhoods(imgState.img);
 		}
 	}
 
@@ -136,6 +155,16 @@ public class IterateNeighborhoodsBenchmark {
 	@BenchmarkMode(Mode.AverageTime)
 	@OutputTimeUnit(TimeUnit.MILLISECONDS)
 	public void iterateThroughNeighborhood() {
+		if ("offsets".equals(iterationType)) {
+			iterateOffsets();
+		} else if ("while".equals(iterationType)) {
+			iterateWhile();
+		} else {
+			iterateForeach();
+		}
+	}
+
+	private void iterateForeach() {
 		for (Neighborhood<FloatType> s : neighborhoods) {
 			for (FloatType t : s) {
 				t.set(t.get() + 1.0f);
@@ -143,6 +172,63 @@ public class IterateNeighborhoodsBenchmark {
 		}
 	}
 
+	private void iterateWhile() {
+		if (neighborhoodCursor == null) {
+			neighborhoodCursor = neighborhoods.cursor();
+		}
+		neighborhoodCursor.reset();
+
+		while (neighborhoodCursor.hasNext()) {
+			// the neighborhood is a flyweight moved by the cursor, so its
+			// cursor only needs a reset to iterate the next neighborhood
+			final Neighborhood<FloatType> next = neighborhoodCursor.next();
+			if (next != neighborhood) {
+				neighborhood = next;
+				neighborhoodPixels = next.cursor();
+			} else {
+				neighborhoodPixels.reset();
+			}
+
+			while (neighborhoodPixels.hasNext()) {
+				final FloatType t = neighborhoodPixels.next();
+				t.set(t.get() + 1.0f);
+			}
+		}
+	}
+
+	private void iterateOffsets() {
+		centers.reset();
+
+		while (centers.hasNext()) {
+			centers.fwd();
+			offsetNeighborhood.setPosition(centers);
+			while (offsetNeighborhood.hasNext()) {
+				final FloatType t = offsetNeighborhood.next();
+				t.set(t.get() + 1.0f);
+			}
+		}
+	}
+
+	/**
+	 * Fail the trial if the offsets variant, which is meant to be allocation
+	 * free, allocates per pixel once it is warmed up.
+	 */
+	@TearDown(Level.Trial)
+	public void checkAllocations() {
+		if (!"offsets".equals(iterationType)) {
+			return;
+		}
+
+		AllocationMeter.assertAllocationFree(
+				IterateNeighborhoodsBenchmark.class.getSimpleName() + "["
+						+ iterationType + "]", new Runnable() {
+					@Override
+					public void run() {
+						iterateOffsets();
+					}
+				}, numPixels);
+	}
+
 	/**
 	 * Run this benchmark separately.
 	 * 
@@ -0,0 +1,118 @@
+package de.squareys.nhbench.imglib2;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.Boundaries;
+import de.squareys.nhbench.neighborhood.Shapes;
+
+/**
+ * Benchmark for iterating all neighborhoods of an image, for every
+ * combination of shape, out of bounds strategy, neighborhood iterable
+ * (neighborhoods vs. neighborhoodsSafe) and radius.
+ * 
+ * Every neighbor is read and summed up, the image is not modified.
+ * 
+ * @author Jonathan Hale (University of Konstanz)
+ *
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class NeighborhoodBoundaryBenchmark {
+
+	@Param({ "RectangleShape", "CenteredRectangleShape", "RectangleShapeSC",
+			"CenteredRectangleShapeSC", "DiamondShape", "DiamondTipsShape",
+			"HorizontalLineShape", "HorizontalLineShapeSC", "HyperSphereShape",
+			"PairOfPointsShape", "PeriodicLineShape" })
+	private String shapeType;
+
+	@Param({ Boundaries.MIRROR_SINGLE, Boundaries.MIRROR_DOUBLE,
+			Boundaries.BORDER, Boundaries.ZERO, Boundaries.PERIODIC })
+	private String boundary;
+
+	@Param({ "safe", "unsafe" })
+	private String iteratorType;
+
+	@Param({ "1", "3", "8" })
+	private String radius;
+
+	/* Size of the synthetic input image */
+	@Param({ "512x512" })
+	private String size;
+
+	private IterableInterval<Neighborhood<FloatType>> neighborhoods;
+
+	/**
+	 * Setup the state of this benchmark.
+	 */
+	@Setup
+	public void setup() {
+		final Img<FloatType> img = BenchmarkInput.create(size,
+				new FloatType(), "noise");
+
+		final IntervalView<FloatType> extended = Views.interval(Views.extend(
+				img, Boundaries.factory(boundary, new FloatType())), img);
+
+		final Shape shape = Shapes.create(shapeType,
+				Integer.parseInt(radius), img.numDimensions());
+
+		neighborhoods = "safe".equals(iteratorType) ? shape
+				.neighborhoodsSafe(extended) : shape.neighborhoods(extended);
+	}
+
+	/**
+	 * Sum up the neighbors of all pixels.
+	 * 
+	 * @return the sum, to avoid dead code elimination
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public float iterateNeighborhoods() {
+		float sum = 0;
+
+		final Cursor<Neighborhood<FloatType>> c = neighborhoods.cursor();
+		while (c.hasNext()) {
+			final Cursor<FloatType> n = c.next().cursor();
+			while (n.hasNext()) {
+				sum += n.next().get();
+			}
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 * 
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(NeighborhoodBoundaryBenchmark.class
+				.getSimpleName());
+	}
+}
@@ -0,0 +1,272 @@
+package de.squareys.nhbench.input;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Deterministic, synthetic benchmark inputs of arbitrary dimensionality, size
+ * and pixel type, generated in memory.
+ *
+ * Benchmarks take the size as a String @Param like "512x512" or
+ * "256x256x256", where {@link #FILE} selects the benchmark's original input
+ * file instead. Values only depend on the position and the seed, so every
+ * run, fork and image layout sees exactly the same image.
+ *
+ * Images with up to 2^31 - 1 pixels are {@link net.imglib2.img.array.ArrayImg
+ * ArrayImg}s, larger ones {@link net.imglib2.img.cell.CellImg CellImg}s.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class BenchmarkInput {
+
+	/** Size parameter value for using the benchmark's input file. */
+	public static final String FILE = "file";
+
+	/**
+	 * Selects the benchmark's original input file, memory mapped instead of
+	 * decoded and copied, see {@link de.squareys.nhbench.io.MappedImages}.
+	 */
+	public static final String MAPPED_FILE = "mapped-file";
+
+	/** Seed used if none is given. */
+	public static final long DEFAULT_SEED = 42;
+
+	/** Fraction of foreground pixels for {@link Content#SPARSE}. */
+	public static final double SPARSE_DENSITY = 0.01;
+
+	/** Size of the cells of images too large for an ArrayImg. */
+	public static final int CELL_SIZE = 64;
+
+	/**
+	 * Content of a synthetic image.
+	 */
+	public enum Content {
+		/** Uniform white noise over the value range. */
+		NOISE,
+		/** Sum of a few low frequency waves. */
+		SMOOTH,
+		/** Binary image with few foreground pixels. */
+		SPARSE;
+
+		/**
+		 * Parse a content parameter, case insensitive.
+		 *
+		 * @param name
+		 *            "noise", "smooth" or "sparse"
+		 * @return the content
+		 */
+		public static Content parse(final String name) {
+			return valueOf(name.toUpperCase());
+		}
+	}
+
+	private BenchmarkInput() {
+		// utility class
+	}
+
+	/**
+	 * @return whether the size parameter selects the original input file
+	 */
+	public static boolean isFile(final String size) {
+		return FILE.equals(size) || MAPPED_FILE.equals(size);
+	}
+
+	/**
+	 * @return whether the size parameter selects the memory mapped original
+	 *         input file
+	 */
+	public static boolean isMappedFile(final String size) {
+		return MAPPED_FILE.equals(size);
+	}
+
+	/**
+	 * Parse a size parameter like "512x512" or "256x256x256".
+	 *
+	 * @param size
+	 *            extents separated by 'x'
+	 * @return the dimensions
+	 * @throws IllegalArgumentException
+	 *             if an extent is not positive or the number of pixels
+	 *             overflows
+	 */
+	public static long[] parseSize(final String size) {
+		final String[] parts = size.trim().split("x");
+		final long[] dims = new long[parts.length];
+
+		for (int d = 0; d < parts.length; ++d) {
+			dims[d] = Long.parseLong(parts[d].trim());
+			if (dims[d] < 1) {
+				throw new IllegalArgumentException("Invalid size: " + size);
+			}
+		}
+		numElements(dims);
+
+		return dims;
+	}
+
+	/**
+	 * Number of pixels of an image.
+	 *
+	 * @param dims
+	 *            dimensions of the image
+	 * @return the product of the dimensions
+	 * @throws IllegalArgumentException
+	 *             if the product does not fit into a long
+	 */
+	public static long numElements(final long[] dims) {
+		long numElements = 1;
+		for (final long dim : dims) {
+			if (numElements != 0 && dim > Long.MAX_VALUE / numElements) {
+				throw new IllegalArgumentException("Size overflows: "
+						+ Arrays.toString(dims));
+			}
+			numElements *= dim;
+		}
+		return numElements;
+	}
+
+	/**
+	 * Create a synthetic image with the default seed.
+	 *
+	 * @param size
+	 *            size parameter, see {@link #parseSize(String)}
+	 * @param type
+	 *            pixel type
+	 * @param content
+	 *            content parameter, see {@link Content#parse(String)}
+	 * @return the image
+	 */
+	public static <T extends RealType<T> & NativeType<T>> Img<T> create(
+			final String size, final T type, final String content) {
+		return create(parseSize(size), type, Content.parse(content),
+				DEFAULT_SEED);
+	}
+
+	/**
+	 * Create a synthetic image.
+	 *
+	 * @param dims
+	 *            dimensions of the image
+	 * @param type
+	 *            pixel type
+	 * @param content
+	 *            what to fill the image with
+	 * @param seed
+	 *            seed for the content
+	 * @return the image
+	 */
+	public static <T extends RealType<T> & NativeType<T>> Img<T> create(
+			final long[] dims, final T type, final Content content,
+			final long seed) {
+		final long numElements = numElements(dims);
+
+		final ImgFactory<T> factory = (numElements < Integer.MAX_VALUE) ? new ArrayImgFactory<T>()
+				: new CellImgFactory<T>(CELL_SIZE);
+		final Img<T> img = factory.create(dims, type);
+
+		fill(img, content, seed);
+
+		return img;
+	}
+
+	/**
+	 * Fill an image with synthetic content.
+	 *
+	 * @param img
+	 *            image to fill
+	 * @param content
+	 *            what to fill the image with
+	 * @param seed
+	 *            seed for the content
+	 */
+	public static <T extends RealType<T>> void fill(final Img<T> img,
+			final Content content, final long seed) {
+		final int n = img.numDimensions();
+		final T type = img.firstElement();
+
+		// integer types use their full range, floats [0, 1]
+		final boolean isFloat = type instanceof FloatType;
+		final double min = isFloat ? 0.0 : type.getMinValue();
+		final double max = isFloat ? 1.0 : type.getMaxValue();
+
+		// frequencies and phases for smooth content
+		final int numWaves = 4;
+		final double[][] frequencies = new double[numWaves][n];
+		final double[] phases = new double[numWaves];
+		final Random random = new Random(seed);
+		for (int w = 0; w < numWaves; ++w) {
+			for (int d = 0; d < n; ++d) {
+				// periods between 16 and 256 pixels
+				frequencies[w][d] = 2 * Math.PI
+						/ (16 + random.nextDouble() * 240);
+			}
+			phases[w] = random.nextDouble() * 2 * Math.PI;
+		}
+
+		final Cursor<T> c = img.localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+
+			final double v;
+			switch (content) {
+			case NOISE:
+				v = unit(hash(c, seed));
+				break;
+			case SMOOTH:
+				double sum = 0;
+				for (int w = 0; w < numWaves; ++w) {
+					double arg = phases[w];
+					for (int d = 0; d < n; ++d) {
+						arg += frequencies[w][d] * c.getLongPosition(d);
+					}
+					sum += Math.sin(arg);
+				}
+				v = 0.5 + 0.5 * sum / numWaves;
+				break;
+			default:
+				v = (unit(hash(c, seed)) < SPARSE_DENSITY) ? 1.0 : 0.0;
+				break;
+			}
+
+			final double value = min + v * (max - min);
+			c.get().setReal(isFloat ? value : Math.floor(value + 0.5));
+		}
+	}
+
+	/**
+	 * Hash of a position, independent of the iteration order.
+	 */
+	private static long hash(final Cursor<?> c, final long seed) {
+		long h = seed;
+		for (int d = 0; d < c.numDimensions(); ++d) {
+			h = mix(h ^ c.getLongPosition(d));
+		}
+		return h;
+	}
+
+	/**
+	 * SplitMix64 finalizer.
+	 */
+	private static long mix(long z) {
+		z += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return the upper 53 bits of h as a double in [0, 1)
+	 */
+	private static double unit(final long h) {
+		return (h >>> 11) * 0x1.0p-53;
+	}
+}
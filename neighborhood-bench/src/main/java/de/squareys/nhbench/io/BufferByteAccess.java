@@ -0,0 +1,57 @@
+package de.squareys.nhbench.io;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.img.basictypeaccess.ByteAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * {@link ByteAccess} backed by a {@link ByteBuffer}, e.g. a view of a memory mapped
+ * file. Pixels are read from and written to the buffer directly, without
+ * copying them into a byte[].
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class BufferByteAccess implements ByteAccess,
+		ArrayDataAccess<BufferByteAccess> {
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param buffer
+	 *            buffer holding the pixels, accessed with absolute indices
+	 *            starting at 0
+	 */
+	public BufferByteAccess(final ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public byte getValue(final int index) {
+		return buffer.get(index);
+	}
+
+	@Override
+	public void setValue(final int index, final byte value) {
+		buffer.put(index, value);
+	}
+
+	/**
+	 * Creates a heap buffer, used by imglib2 to create new images of the
+	 * same kind.
+	 */
+	@Override
+	public BufferByteAccess createArray(final int numEntities) {
+		return new BufferByteAccess(ByteBuffer.allocate(numEntities));
+	}
+
+	/**
+	 * @return the {@link ByteBuffer}
+	 */
+	@Override
+	public ByteBuffer getCurrentStorageArray() {
+		return buffer;
+	}
+}
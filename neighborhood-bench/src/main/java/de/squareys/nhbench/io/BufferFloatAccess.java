@@ -0,0 +1,57 @@
+package de.squareys.nhbench.io;
+
+import java.nio.FloatBuffer;
+
+import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * {@link FloatAccess} backed by a {@link FloatBuffer}, e.g. a view of a memory mapped
+ * file. Pixels are read from and written to the buffer directly, without
+ * copying them into a float[].
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class BufferFloatAccess implements FloatAccess,
+		ArrayDataAccess<BufferFloatAccess> {
+
+	private final FloatBuffer buffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param buffer
+	 *            buffer holding the pixels, accessed with absolute indices
+	 *            starting at 0
+	 */
+	public BufferFloatAccess(final FloatBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public float getValue(final int index) {
+		return buffer.get(index);
+	}
+
+	@Override
+	public void setValue(final int index, final float value) {
+		buffer.put(index, value);
+	}
+
+	/**
+	 * Creates a heap buffer, used by imglib2 to create new images of the
+	 * same kind.
+	 */
+	@Override
+	public BufferFloatAccess createArray(final int numEntities) {
+		return new BufferFloatAccess(FloatBuffer.allocate(numEntities));
+	}
+
+	/**
+	 * @return the {@link FloatBuffer}
+	 */
+	@Override
+	public FloatBuffer getCurrentStorageArray() {
+		return buffer;
+	}
+}
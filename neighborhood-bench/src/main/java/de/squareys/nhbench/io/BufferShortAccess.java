@@ -0,0 +1,57 @@
+package de.squareys.nhbench.io;
+
+import java.nio.ShortBuffer;
+
+import net.imglib2.img.basictypeaccess.ShortAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * {@link ShortAccess} backed by a {@link ShortBuffer}, e.g. a view of a memory mapped
+ * file. Pixels are read from and written to the buffer directly, without
+ * copying them into a short[].
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class BufferShortAccess implements ShortAccess,
+		ArrayDataAccess<BufferShortAccess> {
+
+	private final ShortBuffer buffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param buffer
+	 *            buffer holding the pixels, accessed with absolute indices
+	 *            starting at 0
+	 */
+	public BufferShortAccess(final ShortBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public short getValue(final int index) {
+		return buffer.get(index);
+	}
+
+	@Override
+	public void setValue(final int index, final short value) {
+		buffer.put(index, value);
+	}
+
+	/**
+	 * Creates a heap buffer, used by imglib2 to create new images of the
+	 * same kind.
+	 */
+	@Override
+	public BufferShortAccess createArray(final int numEntities) {
+		return new BufferShortAccess(ShortBuffer.allocate(numEntities));
+	}
+
+	/**
+	 * @return the {@link ShortBuffer}
+	 */
+	@Override
+	public ShortBuffer getCurrentStorageArray() {
+		return buffer;
+	}
+}
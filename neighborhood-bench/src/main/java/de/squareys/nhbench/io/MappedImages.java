@@ -0,0 +1,265 @@
+package de.squareys.nhbench.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Opens raw and uncompressed TIFF files as imglib2 images backed by memory
+ * mapped buffers.
+ *
+ * Nothing is read or copied when opening: the operating system pages the
+ * pixel data in as it is accessed, so opening a multi gigabyte stack takes
+ * milliseconds and does not occupy heap. Images of up to 2^31 - 1 bytes are
+ * opened as {@link ArrayImg}, larger ones as {@link PlanarImg} with one
+ * mapping per plane.
+ *
+ * Supported types are {@link UnsignedByteType}, {@link UnsignedShortType} and
+ * {@link FloatType}.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class MappedImages {
+
+	private MappedImages() {
+		// utility class
+	}
+
+	/**
+	 * Open an uncompressed TIFF file read only.
+	 *
+	 * @see #openTiff(File, NativeType, MapMode)
+	 */
+	public static <T extends NativeType<T> & RealType<T>> Img<T> openTiff(
+			final File file, final T type) throws IOException {
+		return openTiff(file, type, MapMode.READ_ONLY);
+	}
+
+	/**
+	 * Open an uncompressed TIFF file.
+	 *
+	 * @param file
+	 *            the TIFF file, see {@link TiffLayout} for the supported
+	 *            layouts
+	 * @param type
+	 *            expected pixel type
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE} to
+	 *            write changes to the file, or {@link MapMode#PRIVATE} for
+	 *            copy on write
+	 * @return the mapped image
+	 * @throws IOException
+	 *             if the file cannot be mapped or the pixel type differs
+	 */
+	public static <T extends NativeType<T> & RealType<T>> Img<T> openTiff(
+			final File file, final T type, final MapMode mode)
+			throws IOException {
+		final RandomAccessFile raf = open(file, mode);
+		try {
+			final TiffLayout layout = TiffLayout.read(raf.getChannel());
+
+			final boolean isFloat = layout.getSampleFormat() == TiffLayout.SAMPLE_FORMAT_FLOAT;
+			if (layout.getBitsPerSample() != bitsPerSample(type)
+					|| isFloat != (type instanceof FloatType)) {
+				throw new IOException("TIFF has " + layout.getBitsPerSample()
+						+ (isFloat ? " bit float" : " bit integer")
+						+ " pixels, expected " + type.getClass().getSimpleName());
+			}
+
+			return map(raf.getChannel(), layout.getOffset(),
+					layout.getDimensions(), type, layout.getByteOrder(), mode);
+		} finally {
+			// the mappings stay valid after closing the file
+			raf.close();
+		}
+	}
+
+	/**
+	 * Open a raw file read only.
+	 *
+	 * @see #openRaw(File, long, long[], NativeType, ByteOrder, MapMode)
+	 */
+	public static <T extends NativeType<T> & RealType<T>> Img<T> openRaw(
+			final File file, final long offset, final long[] dims,
+			final T type, final ByteOrder order) throws IOException {
+		return openRaw(file, offset, dims, type, order, MapMode.READ_ONLY);
+	}
+
+	/**
+	 * Open a raw file, i.e. pixels stored contiguously in dimension 0 fastest
+	 * order.
+	 *
+	 * @param file
+	 *            the raw file
+	 * @param offset
+	 *            offset of the first pixel in the file, e.g. the size of a
+	 *            header
+	 * @param dims
+	 *            dimensions of the image
+	 * @param type
+	 *            pixel type
+	 * @param order
+	 *            byte order of the pixels
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE} to
+	 *            write changes to the file, or {@link MapMode#PRIVATE} for
+	 *            copy on write
+	 * @return the mapped image
+	 * @throws IOException
+	 *             if the file is too small or cannot be mapped
+	 */
+	public static <T extends NativeType<T> & RealType<T>> Img<T> openRaw(
+			final File file, final long offset, final long[] dims,
+			final T type, final ByteOrder order, final MapMode mode)
+			throws IOException {
+		final RandomAccessFile raf = open(file, mode);
+		try {
+			return map(raf.getChannel(), offset, dims, type, order, mode);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static RandomAccessFile open(final File file, final MapMode mode)
+			throws IOException {
+		// private (copy on write) mappings require a writable channel, too
+		return new RandomAccessFile(file, (mode == MapMode.READ_ONLY) ? "r"
+				: "rw");
+	}
+
+	private static <T extends NativeType<T> & RealType<T>> Img<T> map(
+			final FileChannel channel, final long offset, final long[] dims,
+			final T type, final ByteOrder order, final MapMode mode)
+			throws IOException {
+		final int bytesPerPixel = bitsPerSample(type) / 8;
+
+		long numPixels = 1;
+		for (final long dim : dims) {
+			numPixels *= dim;
+		}
+		final long numBytes = numPixels * bytesPerPixel;
+
+		if (channel.size() < offset + numBytes) {
+			throw new IOException("File is smaller than " + numBytes
+					+ " bytes of pixel data");
+		}
+
+		if (numBytes <= Integer.MAX_VALUE) {
+			final MappedByteBuffer buffer = channel.map(mode, offset, numBytes);
+			return arrayImg(access(buffer, order, type), dims, type);
+		}
+
+		// one mapping per plane
+		final long planeBytes = dims[0] * ((dims.length > 1) ? dims[1] : 1)
+				* bytesPerPixel;
+		if (planeBytes > Integer.MAX_VALUE) {
+			throw new IOException("Plane of " + planeBytes
+					+ " bytes is too large to map");
+		}
+
+		final long numPlanes = numBytes / planeBytes;
+		final List<ArrayDataAccess<?>> planes = new ArrayList<ArrayDataAccess<?>>();
+		for (long p = 0; p < numPlanes; ++p) {
+			final MappedByteBuffer buffer = channel.map(mode, offset + p
+					* planeBytes, planeBytes);
+			planes.add(access(buffer, order, type));
+		}
+		return planarImg(planes, dims, type);
+	}
+
+	private static ArrayDataAccess<?> access(final ByteBuffer buffer,
+			final ByteOrder order, final Object type) {
+		buffer.order(order);
+		if (type instanceof UnsignedByteType) {
+			return new BufferByteAccess(buffer);
+		} else if (type instanceof UnsignedShortType) {
+			return new BufferShortAccess(buffer.asShortBuffer());
+		} else {
+			return new BufferFloatAccess(buffer.asFloatBuffer());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends NativeType<T>> Img<T> arrayImg(
+			final ArrayDataAccess<?> access, final long[] dims, final T type) {
+		if (type instanceof UnsignedByteType) {
+			final ArrayImg<UnsignedByteType, BufferByteAccess> img = new ArrayImg<UnsignedByteType, BufferByteAccess>(
+					(BufferByteAccess) access, dims, new Fraction());
+			img.setLinkedType(new UnsignedByteType(img));
+			return (Img<T>) img;
+		} else if (type instanceof UnsignedShortType) {
+			final ArrayImg<UnsignedShortType, BufferShortAccess> img = new ArrayImg<UnsignedShortType, BufferShortAccess>(
+					(BufferShortAccess) access, dims, new Fraction());
+			img.setLinkedType(new UnsignedShortType(img));
+			return (Img<T>) img;
+		} else {
+			final ArrayImg<FloatType, BufferFloatAccess> img = new ArrayImg<FloatType, BufferFloatAccess>(
+					(BufferFloatAccess) access, dims, new Fraction());
+			img.setLinkedType(new FloatType(img));
+			return (Img<T>) img;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends NativeType<T>> Img<T> planarImg(
+			final List<ArrayDataAccess<?>> planes, final long[] dims,
+			final T type) {
+		if (type instanceof UnsignedByteType) {
+			final PlanarImg<UnsignedByteType, BufferByteAccess> img = new PlanarImg<UnsignedByteType, BufferByteAccess>(
+					dims, new Fraction());
+			setPlanes(img, (List<BufferByteAccess>) (List<?>) planes);
+			img.setLinkedType(new UnsignedByteType(img));
+			return (Img<T>) img;
+		} else if (type instanceof UnsignedShortType) {
+			final PlanarImg<UnsignedShortType, BufferShortAccess> img = new PlanarImg<UnsignedShortType, BufferShortAccess>(
+					dims, new Fraction());
+			setPlanes(img, (List<BufferShortAccess>) (List<?>) planes);
+			img.setLinkedType(new UnsignedShortType(img));
+			return (Img<T>) img;
+		} else {
+			final PlanarImg<FloatType, BufferFloatAccess> img = new PlanarImg<FloatType, BufferFloatAccess>(
+					dims, new Fraction());
+			setPlanes(img, (List<BufferFloatAccess>) (List<?>) planes);
+			img.setLinkedType(new FloatType(img));
+			return (Img<T>) img;
+		}
+	}
+
+	private static <T extends NativeType<T>, A extends ArrayDataAccess<A>> void setPlanes(
+			final PlanarImg<T, A> img, final List<A> planes) {
+		// the public constructor of PlanarImg leaves all planes unset
+		for (int i = 0; i < planes.size(); ++i) {
+			img.setPlane(i, planes.get(i));
+		}
+	}
+
+	private static int bitsPerSample(final Object type) {
+		if (type instanceof UnsignedByteType) {
+			return 8;
+		} else if (type instanceof UnsignedShortType) {
+			return 16;
+		} else if (type instanceof FloatType) {
+			return 32;
+		}
+		throw new IllegalArgumentException("Unsupported type: "
+				+ type.getClass().getSimpleName());
+	}
+}
@@ -0,0 +1,266 @@
+package de.squareys.nhbench.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Location and format of the pixel data of an uncompressed, single channel
+ * TIFF file, as needed for memory mapping it.
+ *
+ * Only the tags describing the pixel data are read. The file is mappable if
+ * the strips of all planes (one IFD per plane, as written by ImageJ) form one
+ * contiguous block, which is the case for files saved by ImageJ and most
+ * acquisition software without compression.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class TiffLayout {
+
+	private static final int IMAGE_WIDTH = 256;
+	private static final int IMAGE_LENGTH = 257;
+	private static final int BITS_PER_SAMPLE = 258;
+	private static final int COMPRESSION = 259;
+	private static final int STRIP_OFFSETS = 273;
+	private static final int SAMPLES_PER_PIXEL = 277;
+	private static final int STRIP_BYTE_COUNTS = 279;
+	private static final int SAMPLE_FORMAT = 339;
+
+	private static final int TYPE_SHORT = 3;
+	private static final int TYPE_LONG = 4;
+
+	/** SampleFormat value of IEEE floating point data */
+	public static final int SAMPLE_FORMAT_FLOAT = 3;
+
+	private final ByteOrder order;
+	private final long width;
+	private final long height;
+	private final long planes;
+	private final int bitsPerSample;
+	private final int sampleFormat;
+	private final long offset;
+
+	private TiffLayout(final ByteOrder order, final long width,
+			final long height, final long planes, final int bitsPerSample,
+			final int sampleFormat, final long offset) {
+		this.order = order;
+		this.width = width;
+		this.height = height;
+		this.planes = planes;
+		this.bitsPerSample = bitsPerSample;
+		this.sampleFormat = sampleFormat;
+		this.offset = offset;
+	}
+
+	/**
+	 * Read the layout of a TIFF file.
+	 *
+	 * @param channel
+	 *            channel of the file
+	 * @return the layout
+	 * @throws IOException
+	 *             if the file is not a TIFF file or its pixel data cannot be
+	 *             mapped (compressed, multi channel, or not contiguous)
+	 */
+	public static TiffLayout read(final FileChannel channel) throws IOException {
+		final ByteBuffer header = read(channel, 0, 8, ByteOrder.BIG_ENDIAN);
+		final ByteOrder order;
+		if (header.get(0) == 'I' && header.get(1) == 'I') {
+			order = ByteOrder.LITTLE_ENDIAN;
+		} else if (header.get(0) == 'M' && header.get(1) == 'M') {
+			order = ByteOrder.BIG_ENDIAN;
+		} else {
+			throw new IOException("Not a TIFF file");
+		}
+		header.order(order);
+		if (header.getShort(2) != 42) {
+			throw new IOException("Unsupported TIFF version (BigTIFF?)");
+		}
+
+		long ifd = header.getInt(4) & 0xffffffffL;
+
+		long width = -1;
+		long height = -1;
+		int bitsPerSample = 1;
+		int sampleFormat = 1;
+		long planeBytes = -1;
+		long first = -1;
+		long planes = 0;
+
+		while (ifd != 0) {
+			final ByteBuffer count = read(channel, ifd, 2, order);
+			final int numEntries = count.getShort(0) & 0xffff;
+			final ByteBuffer entries = read(channel, ifd + 2,
+					numEntries * 12 + 4, order);
+
+			long planeWidth = -1;
+			long planeHeight = -1;
+			long[] stripOffsets = null;
+			long[] stripByteCounts = null;
+
+			for (int i = 0; i < numEntries; ++i) {
+				final int entry = i * 12;
+				final int tag = entries.getShort(entry) & 0xffff;
+
+				switch (tag) {
+				case IMAGE_WIDTH:
+					planeWidth = value(entries, entry);
+					break;
+				case IMAGE_LENGTH:
+					planeHeight = value(entries, entry);
+					break;
+				case BITS_PER_SAMPLE:
+					bitsPerSample = (int) value(entries, entry);
+					break;
+				case COMPRESSION:
+					if (value(entries, entry) != 1) {
+						throw new IOException("Compressed TIFF cannot be mapped");
+					}
+					break;
+				case SAMPLES_PER_PIXEL:
+					if (value(entries, entry) != 1) {
+						throw new IOException(
+								"Multi channel TIFF cannot be mapped");
+					}
+					break;
+				case SAMPLE_FORMAT:
+					sampleFormat = (int) value(entries, entry);
+					break;
+				case STRIP_OFFSETS:
+					stripOffsets = values(channel, entries, entry, order);
+					break;
+				case STRIP_BYTE_COUNTS:
+					stripByteCounts = values(channel, entries, entry, order);
+					break;
+				default:
+					// not relevant for the pixel data
+				}
+			}
+
+			if (planeWidth < 0 || planeHeight < 0 || stripOffsets == null
+					|| stripByteCounts == null) {
+				throw new IOException("IFD " + planes
+						+ " misses required tags");
+			}
+
+			if (planes == 0) {
+				width = planeWidth;
+				height = planeHeight;
+				planeBytes = planeWidth * planeHeight * (bitsPerSample / 8);
+				first = stripOffsets[0];
+			} else if (planeWidth != width || planeHeight != height) {
+				throw new IOException("Planes differ in size");
+			}
+
+			// strips of this plane must directly follow the previous plane
+			long expected = first + planes * planeBytes;
+			for (int s = 0; s < stripOffsets.length; ++s) {
+				if (stripOffsets[s] != expected) {
+					throw new IOException("Pixel data is not contiguous");
+				}
+				expected += stripByteCounts[s];
+			}
+			if (expected != first + (planes + 1) * planeBytes) {
+				throw new IOException("Unexpected strip byte counts");
+			}
+
+			++planes;
+			ifd = entries.getInt(numEntries * 12) & 0xffffffffL;
+		}
+
+		if (bitsPerSample % 8 != 0) {
+			throw new IOException("Unsupported bits per sample: "
+					+ bitsPerSample);
+		}
+
+		return new TiffLayout(order, width, height, planes, bitsPerSample,
+				sampleFormat, first);
+	}
+
+	/**
+	 * @return byte order of the pixel data
+	 */
+	public ByteOrder getByteOrder() {
+		return order;
+	}
+
+	/**
+	 * @return dimensions of the image, 3D if there is more than one plane
+	 */
+	public long[] getDimensions() {
+		return (planes > 1) ? new long[] { width, height, planes }
+				: new long[] { width, height };
+	}
+
+	public int getBitsPerSample() {
+		return bitsPerSample;
+	}
+
+	public int getSampleFormat() {
+		return sampleFormat;
+	}
+
+	/**
+	 * @return offset of the first pixel in the file
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	private static ByteBuffer read(final FileChannel channel,
+			final long position, final int length, final ByteOrder order)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of TIFF file");
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Value of a SHORT or LONG entry with count 1.
+	 */
+	private static long value(final ByteBuffer entries, final int entry) {
+		final int type = entries.getShort(entry + 2) & 0xffff;
+		return (type == TYPE_SHORT) ? entries.getShort(entry + 8) & 0xffff
+				: entries.getInt(entry + 8) & 0xffffffffL;
+	}
+
+	/**
+	 * Values of a SHORT or LONG entry with arbitrary count.
+	 */
+	private static long[] values(final FileChannel channel,
+			final ByteBuffer entries, final int entry, final ByteOrder order)
+			throws IOException {
+		final int type = entries.getShort(entry + 2) & 0xffff;
+		final int count = entries.getInt(entry + 4);
+		final int size = (type == TYPE_SHORT) ? 2 : (type == TYPE_LONG) ? 4
+				: -1;
+		if (size < 0) {
+			throw new IOException("Unexpected type of strip tag: " + type);
+		}
+
+		// values fit into the entry itself, or the entry points to them
+		final ByteBuffer data;
+		final int start;
+		if (count * size <= 4) {
+			data = entries;
+			start = entry + 8;
+		} else {
+			data = read(channel, entries.getInt(entry + 8) & 0xffffffffL,
+					count * size, order);
+			start = 0;
+		}
+
+		final long[] values = new long[count];
+		for (int i = 0; i < count; ++i) {
+			values[i] = (size == 2) ? data.getShort(start + 2 * i) & 0xffff
+					: data.getInt(start + 4 * i) & 0xffffffffL;
+		}
+		return values;
+	}
+}
@@ -0,0 +1,380 @@
+package de.squareys.nhbench.kernels;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer for class files with a default constructor and one method.
+ *
+ * Writes class file version 49, which needs no stack map frames, so branches
+ * can simply be patched once their targets are known. Only the instructions
+ * the {@link KernelGenerator} emits are supported.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+final class ClassFileWriter {
+
+	static final int ICONST_0 = 0x03;
+	static final int BIPUSH = 0x10;
+	static final int SIPUSH = 0x11;
+	static final int LDC = 0x12;
+	static final int LDC_W = 0x13;
+	static final int ILOAD = 0x15;
+	static final int FLOAD = 0x17;
+	static final int ALOAD = 0x19;
+	static final int FALOAD = 0x30;
+	static final int BALOAD = 0x33;
+	static final int ISTORE = 0x36;
+	static final int FSTORE = 0x38;
+	static final int FASTORE = 0x51;
+	static final int BASTORE = 0x54;
+	static final int IADD = 0x60;
+	static final int IAND = 0x7e;
+	static final int IINC = 0x84;
+	static final int I2B = 0x91;
+	static final int FCMPL = 0x95;
+	static final int FCMPG = 0x96;
+	static final int IFGE = 0x9c;
+	static final int IFLE = 0x9e;
+	static final int IF_ICMPGE = 0xa2;
+	static final int IF_ICMPLE = 0xa4;
+	static final int GOTO = 0xa7;
+	static final int RETURN = 0xb1;
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final int TAG_UTF8 = 1;
+	private static final int TAG_INTEGER = 3;
+	private static final int TAG_FLOAT = 4;
+	private static final int TAG_CLASS = 7;
+	private static final int TAG_METHODREF = 10;
+	private static final int TAG_NAME_AND_TYPE = 12;
+
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final DataOutputStream poolOut = new DataOutputStream(pool);
+	private final Map<String, Integer> poolIndices = new HashMap<String, Integer>();
+	private int poolSize = 1;
+
+	private final Code code = new Code();
+
+	private final String name;
+	private final String iface;
+
+	/**
+	 * @param name
+	 *            internal name of the class, e.g. "a/b/C"
+	 * @param iface
+	 *            internal name of the single interface it implements
+	 */
+	ClassFileWriter(final String name, final String iface) {
+		this.name = name;
+		this.iface = iface;
+	}
+
+	/**
+	 * @return the code of the method, to emit instructions into
+	 */
+	Code code() {
+		return code;
+	}
+
+	/**
+	 * Write the class file.
+	 *
+	 * @param method
+	 *            name of the method
+	 * @param descriptor
+	 *            descriptor of the method
+	 * @param maxStack
+	 *            maximum operand stack depth of the method
+	 * @param maxLocals
+	 *            number of local variable slots of the method
+	 * @return the class file
+	 */
+	byte[] toByteArray(final String method, final String descriptor,
+			final int maxStack, final int maxLocals) {
+		try {
+			final int thisClass = classRef(name);
+			final int superClass = classRef("java/lang/Object");
+			final int ifaceClass = classRef(iface);
+			final int init = utf8("<init>");
+			final int voidDescriptor = utf8("()V");
+			final int superInit = methodRef(superClass, init, voidDescriptor);
+			final int methodName = utf8(method);
+			final int methodDescriptor = utf8(descriptor);
+			final int codeAttribute = utf8("Code");
+			final byte[] body = code.toByteArray();
+
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xcafebabe);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(poolSize);
+			poolOut.flush();
+			pool.writeTo(out);
+
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(ifaceClass);
+			out.writeShort(0); // fields
+			out.writeShort(2); // methods
+
+			// public <init>() { super(); }
+			writeMethod(out, init, voidDescriptor, codeAttribute, 1, 1,
+					new byte[] { 0x2a, (byte) 0xb7, (byte) (superInit >> 8),
+							(byte) superInit, (byte) RETURN });
+			writeMethod(out, methodName, methodDescriptor, codeAttribute,
+					maxStack, maxLocals, body);
+
+			out.writeShort(0); // attributes
+			out.flush();
+			return bytes.toByteArray();
+		} catch (final IOException e) {
+			// cannot happen writing to memory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeMethod(final DataOutputStream out,
+			final int name, final int descriptor, final int codeAttribute,
+			final int maxStack, final int maxLocals, final byte[] body)
+			throws IOException {
+		out.writeShort(ACC_PUBLIC);
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1);
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + body.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(body.length);
+		out.write(body);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // attributes
+	}
+
+	int intConstant(final int value) {
+		final String key = "I" + value;
+		Integer index = poolIndices.get(key);
+		if (index == null) {
+			index = add(key);
+			poolByte(TAG_INTEGER);
+			poolInt(value);
+		}
+		return index;
+	}
+
+	int floatConstant(final float value) {
+		final int bits = Float.floatToIntBits(value);
+		final String key = "F" + bits;
+		Integer index = poolIndices.get(key);
+		if (index == null) {
+			index = add(key);
+			poolByte(TAG_FLOAT);
+			poolInt(bits);
+		}
+		return index;
+	}
+
+	private int utf8(final String value) {
+		final String key = "U" + value;
+		Integer index = poolIndices.get(key);
+		if (index == null) {
+			index = add(key);
+			poolByte(TAG_UTF8);
+			try {
+				poolOut.writeUTF(value);
+			} catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return index;
+	}
+
+	private int classRef(final String className) {
+		final int utf8 = utf8(className);
+		final String key = "C" + className;
+		Integer index = poolIndices.get(key);
+		if (index == null) {
+			index = add(key);
+			poolByte(TAG_CLASS);
+			poolShort(utf8);
+		}
+		return index;
+	}
+
+	private int methodRef(final int owner, final int methodName,
+			final int descriptor) {
+		final int nameAndType = add("N" + methodName + ":" + descriptor);
+		poolByte(TAG_NAME_AND_TYPE);
+		poolShort(methodName);
+		poolShort(descriptor);
+
+		final int index = add("M" + owner + ":" + nameAndType);
+		poolByte(TAG_METHODREF);
+		poolShort(owner);
+		poolShort(nameAndType);
+		return index;
+	}
+
+	private int add(final String key) {
+		final int index = poolSize++;
+		poolIndices.put(key, index);
+		return index;
+	}
+
+	private void poolByte(final int b) {
+		try {
+			poolOut.writeByte(b);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void poolShort(final int s) {
+		try {
+			poolOut.writeShort(s);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void poolInt(final int i) {
+		try {
+			poolOut.writeInt(i);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Position in the code a branch can jump to.
+	 */
+	static final class Label {
+
+		private int position = -1;
+		private final List<int[]> branches = new ArrayList<int[]>();
+	}
+
+	/**
+	 * Bytecode of the method.
+	 */
+	final class Code {
+
+		private byte[] bytes = new byte[256];
+		private int length;
+
+		/**
+		 * @return number of bytes emitted so far
+		 */
+		int length() {
+			return length;
+		}
+
+		void op(final int opcode) {
+			u1(opcode);
+		}
+
+		/**
+		 * Emit an instruction with a local variable index, e.g. ILOAD.
+		 */
+		void var(final int opcode, final int local) {
+			if (local > 0xff) {
+				throw new IllegalArgumentException("Local " + local
+						+ " needs a wide instruction");
+			}
+			u1(opcode);
+			u1(local);
+		}
+
+		void iinc(final int local, final int increment) {
+			u1(IINC);
+			u1(local);
+			u1(increment);
+		}
+
+		/**
+		 * Push an int constant with the shortest instruction.
+		 */
+		void pushInt(final int value) {
+			if (value >= -1 && value <= 5) {
+				u1(ICONST_0 + value);
+			} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				u1(BIPUSH);
+				u1(value);
+			} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+				u1(SIPUSH);
+				u2(value);
+			} else {
+				ldc(intConstant(value));
+			}
+		}
+
+		void pushFloat(final float value) {
+			ldc(floatConstant(value));
+		}
+
+		private void ldc(final int index) {
+			if (index <= 0xff) {
+				u1(LDC);
+				u1(index);
+			} else {
+				u1(LDC_W);
+				u2(index);
+			}
+		}
+
+		void jump(final int opcode, final Label target) {
+			final int at = length;
+			u1(opcode);
+			if (target.position >= 0) {
+				u2(target.position - at);
+			} else {
+				target.branches.add(new int[] { at, length });
+				u2(0);
+			}
+		}
+
+		void bind(final Label label) {
+			label.position = length;
+			for (final int[] branch : label.branches) {
+				patch(branch[1], label.position - branch[0]);
+			}
+		}
+
+		byte[] toByteArray() {
+			final byte[] result = new byte[length];
+			System.arraycopy(bytes, 0, result, 0, length);
+			return result;
+		}
+
+		private void patch(final int at, final int offset) {
+			bytes[at] = (byte) (offset >> 8);
+			bytes[at + 1] = (byte) offset;
+		}
+
+		private void u1(final int b) {
+			if (length == bytes.length) {
+				final byte[] grown = new byte[2 * bytes.length];
+				System.arraycopy(bytes, 0, grown, 0, length);
+				bytes = grown;
+			}
+			bytes[length++] = (byte) b;
+		}
+
+		private void u2(final int s) {
+			u1(s >> 8);
+			u1(s);
+		}
+	}
+}
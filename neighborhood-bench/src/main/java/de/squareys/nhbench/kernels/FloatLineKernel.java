@@ -0,0 +1,26 @@
+package de.squareys.nhbench.kernels;
+
+/**
+ * Neighborhood reduction specialized for one structuring element and
+ * reduction, applied to a line of a flat float array.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ * @see SpecializedKernels
+ */
+public interface FloatLineKernel {
+
+	/**
+	 * Filter a line of pixels. The complete neighborhood of every pixel of the
+	 * line must lie inside of the image.
+	 *
+	 * @param in
+	 *            input image data
+	 * @param out
+	 *            output image data, must not be the same as in
+	 * @param start
+	 *            array index of the first pixel of the line
+	 * @param length
+	 *            number of pixels in the line
+	 */
+	void apply(float[] in, float[] out, int start, int length);
+}
@@ -0,0 +1,356 @@
+package de.squareys.nhbench.kernels;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.squareys.nhbench.kernels.ClassFileWriter.Code;
+import de.squareys.nhbench.kernels.ClassFileWriter.Label;
+
+/**
+ * Generates line kernels with the neighborhood loop fully unrolled at
+ * runtime.
+ *
+ * Every linear offset of the structuring element becomes a constant in the
+ * bytecode, so the JIT compiles a kernel without any loop over the offsets or
+ * any load of an offset array. For boxes, the kernel keeps the minimum or
+ * maximum of every column of the window in a local variable and shifts them
+ * along the line, so every pixel only reads one new column.
+ *
+ * Generated classes are cached by pixel type, reduction and offsets. The
+ * offsets depend on the width of the image, so the cache only keeps the
+ * {@link #MAX_CLASSES} least recently used classes. Every class is defined by
+ * a loader of its own, which lets an evicted class be unloaded once its
+ * kernels are no longer referenced. Kernels whose method would exceed the
+ * size HotSpot still compiles (8000 bytes of bytecode) or would need more
+ * than 256 local variables are not generated.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+final class KernelGenerator {
+
+	/* HotSpot does not compile methods with more bytecode (HugeMethodLimit) */
+	private static final int MAX_CODE_LENGTH = 8000;
+
+	private static final String PACKAGE = "de/squareys/nhbench/kernels/";
+
+	/* locals of apply(in, out, start, length) */
+	private static final int IN = 1;
+	private static final int OUT = 2;
+	private static final int START = 3;
+	private static final int LENGTH = 4;
+	private static final int INDEX = 5;
+	private static final int END = 6;
+	private static final int ACC = 7;
+	private static final int VALUE = 8;
+	private static final int COLUMNS = 9;
+
+	/** Maximum number of cached kernel classes */
+	static final int MAX_CLASSES = 64;
+
+	private static final Map<String, Class<?>> CLASSES = new LinkedHashMap<String, Class<?>>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<String, Class<?>> eldest) {
+			return size() > MAX_CLASSES;
+		}
+	};
+	private static int numClasses = 0;
+
+	private final boolean isFloat;
+	private final boolean max;
+
+	private KernelGenerator(final boolean isFloat, final boolean max) {
+		this.isFloat = isFloat;
+		this.max = max;
+	}
+
+	/**
+	 * Generate a kernel reducing an arbitrary set of offsets.
+	 *
+	 * @param isFloat
+	 *            true for a {@link FloatLineKernel}, false for a
+	 *            {@link ByteLineKernel} on unsigned bytes
+	 * @param max
+	 *            true for a maximum filter, false for a minimum filter
+	 * @param offsets
+	 *            linear offsets of the structuring element
+	 * @return the kernel or null if it would be too large
+	 */
+	static Object offsets(final boolean isFloat, final boolean max,
+			final int[] offsets) {
+		final String key = (isFloat ? "F" : "B") + (max ? "max" : "min")
+				+ Arrays.toString(offsets);
+		return instance(key, new KernelGenerator(isFloat, max), offsets, 0, 0,
+				null);
+	}
+
+	/**
+	 * Generate a sliding column kernel for a box.
+	 *
+	 * @param isFloat
+	 *            true for a {@link FloatLineKernel}, false for a
+	 *            {@link ByteLineKernel} on unsigned bytes
+	 * @param max
+	 *            true for a maximum filter, false for a minimum filter
+	 * @param xMin
+	 *            minimum of the box along the line
+	 * @param xMax
+	 *            maximum of the box along the line
+	 * @param column
+	 *            linear offsets of the column of the box at x = 0
+	 * @return the kernel or null if it would be too large
+	 */
+	static Object box(final boolean isFloat, final boolean max,
+			final int xMin, final int xMax, final int[] column) {
+		final String key = (isFloat ? "F" : "B") + (max ? "max" : "min")
+				+ "[" + xMin + ", " + xMax + "]" + Arrays.toString(column);
+		return instance(key, new KernelGenerator(isFloat, max), null, xMin,
+				xMax, column);
+	}
+
+	private static synchronized Object instance(final String key,
+			final KernelGenerator generator, final int[] offsets,
+			final int xMin, final int xMax, final int[] column) {
+		Class<?> kernelClass = CLASSES.get(key);
+
+		if (kernelClass == null && !CLASSES.containsKey(key)) {
+			final String name = PACKAGE + "GeneratedKernel" + numClasses++;
+			final byte[] bytes = (column == null) ? generator
+					.generateOffsets(name, offsets) : generator.generateBox(
+					name, xMin, xMax, column);
+
+			kernelClass = (bytes == null) ? null : new KernelLoader(
+					KernelGenerator.class.getClassLoader()).define(
+					name.replace('/', '.'), bytes);
+			CLASSES.put(key, kernelClass);
+		}
+
+		if (kernelClass == null) {
+			return null;
+		}
+
+		try {
+			return kernelClass.newInstance();
+		} catch (final InstantiationException e) {
+			throw new IllegalStateException(e);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * out[i] = reduction of in[i + o] over all offsets o.
+	 */
+	private byte[] generateOffsets(final String name, final int[] offsets) {
+		final ClassFileWriter writer = writer(name);
+		final Code code = writer.code();
+
+		final Label top = new Label();
+		final Label done = new Label();
+		loopHeader(code, top, done);
+
+		initAccumulator(code, ACC);
+		for (final int offset : offsets) {
+			loadPixel(code, offset);
+			select(code, ACC);
+		}
+		storePixel(code, ACC);
+
+		loopFooter(code, top, done);
+		return finish(writer, ACC + 2);
+	}
+
+	/**
+	 * Sliding columns: the locals COLUMNS + j hold the reduction of the column
+	 * at x = i + xMin + j.
+	 */
+	private byte[] generateBox(final String name, final int xMin,
+			final int xMax, final int[] column) {
+		final int width = xMax - xMin + 1;
+		if (COLUMNS + width > 0x100) {
+			return null;
+		}
+
+		final ClassFileWriter writer = writer(name);
+		final Code code = writer.code();
+		final Label top = new Label();
+		final Label done = new Label();
+
+		// the columns left of the first new one, for the first pixel
+		code.var(ClassFileWriter.ILOAD, LENGTH);
+		code.jump(ClassFileWriter.IFLE, done);
+		code.var(ClassFileWriter.ILOAD, START);
+		code.var(ClassFileWriter.ISTORE, INDEX);
+		for (int j = 0; j < width - 1; ++j) {
+			reduceColumn(code, COLUMNS + j, xMin + j, column);
+		}
+
+		loopHeader(code, top, done);
+
+		final int last = COLUMNS + width - 1;
+		reduceColumn(code, last, xMax, column);
+
+		code.var(load(), COLUMNS);
+		code.var(store(), ACC);
+		for (int j = 1; j < width; ++j) {
+			code.var(load(), COLUMNS + j);
+			select(code, ACC);
+		}
+		storePixel(code, ACC);
+
+		for (int j = 0; j < width - 1; ++j) {
+			code.var(load(), COLUMNS + j + 1);
+			code.var(store(), COLUMNS + j);
+		}
+
+		loopFooter(code, top, done);
+		return finish(writer, COLUMNS + width);
+	}
+
+	private ClassFileWriter writer(final String name) {
+		return new ClassFileWriter(name, PACKAGE
+				+ (isFloat ? "FloatLineKernel" : "ByteLineKernel"));
+	}
+
+	private byte[] finish(final ClassFileWriter writer, final int maxLocals) {
+		if (writer.code().length() >= MAX_CODE_LENGTH) {
+			return null;
+		}
+		return writer.toByteArray("apply", isFloat ? "([F[FII)V"
+				: "([B[BII)V", 4, maxLocals);
+	}
+
+	/**
+	 * for (index = start, end = start + length; index < end; ...)
+	 */
+	private static void loopHeader(final Code code, final Label top,
+			final Label done) {
+		code.var(ClassFileWriter.ILOAD, START);
+		code.var(ClassFileWriter.ISTORE, INDEX);
+		code.var(ClassFileWriter.ILOAD, START);
+		code.var(ClassFileWriter.ILOAD, LENGTH);
+		code.op(ClassFileWriter.IADD);
+		code.var(ClassFileWriter.ISTORE, END);
+
+		code.bind(top);
+		code.var(ClassFileWriter.ILOAD, INDEX);
+		code.var(ClassFileWriter.ILOAD, END);
+		code.jump(ClassFileWriter.IF_ICMPGE, done);
+	}
+
+	/**
+	 * ++index and the end of the loop and method.
+	 */
+	private static void loopFooter(final Code code, final Label top,
+			final Label done) {
+		code.iinc(INDEX, 1);
+		code.jump(ClassFileWriter.GOTO, top);
+		code.bind(done);
+		code.op(ClassFileWriter.RETURN);
+	}
+
+	private void reduceColumn(final Code code, final int local,
+			final int x, final int[] column) {
+		initAccumulator(code, local);
+		for (final int offset : column) {
+			loadPixel(code, x + offset);
+			select(code, local);
+		}
+	}
+
+	/**
+	 * Initialize an accumulator like CompiledStructuringElement does, so
+	 * the results are the same, including for NaN.
+	 */
+	private void initAccumulator(final Code code, final int local) {
+		if (isFloat) {
+			code.pushFloat(max ? -Float.MAX_VALUE : Float.MAX_VALUE);
+		} else {
+			code.pushInt(max ? 0 : 0xff);
+		}
+		code.var(store(), local);
+	}
+
+	/**
+	 * Push in[index + offset], widened to int for unsigned bytes.
+	 */
+	private void loadPixel(final Code code, final int offset) {
+		code.var(ClassFileWriter.ALOAD, IN);
+		code.var(ClassFileWriter.ILOAD, INDEX);
+		if (offset != 0) {
+			code.pushInt(offset);
+			code.op(ClassFileWriter.IADD);
+		}
+		if (isFloat) {
+			code.op(ClassFileWriter.FALOAD);
+		} else {
+			code.op(ClassFileWriter.BALOAD);
+			code.pushInt(0xff);
+			code.op(ClassFileWriter.IAND);
+		}
+	}
+
+	/**
+	 * Pop a value and replace the accumulator with it if it is smaller
+	 * (larger for max). NaN never replaces the accumulator.
+	 */
+	private void select(final Code code, final int accumulator) {
+		final Label skip = new Label();
+
+		code.var(store(), VALUE);
+		code.var(load(), VALUE);
+		code.var(load(), accumulator);
+		if (isFloat) {
+			// fcmpg yields 1 for NaN, fcmpl yields -1
+			code.op(max ? ClassFileWriter.FCMPL : ClassFileWriter.FCMPG);
+			code.jump(max ? ClassFileWriter.IFLE : ClassFileWriter.IFGE, skip);
+		} else {
+			code.jump(max ? ClassFileWriter.IF_ICMPLE
+					: ClassFileWriter.IF_ICMPGE, skip);
+		}
+		code.var(load(), VALUE);
+		code.var(store(), accumulator);
+		code.bind(skip);
+	}
+
+	/**
+	 * out[index] = accumulator
+	 */
+	private void storePixel(final Code code, final int accumulator) {
+		code.var(ClassFileWriter.ALOAD, OUT);
+		code.var(ClassFileWriter.ILOAD, INDEX);
+		code.var(load(), accumulator);
+		if (isFloat) {
+			code.op(ClassFileWriter.FASTORE);
+		} else {
+			code.op(ClassFileWriter.I2B);
+			code.op(ClassFileWriter.BASTORE);
+		}
+	}
+
+	private int load() {
+		return isFloat ? ClassFileWriter.FLOAD : ClassFileWriter.ILOAD;
+	}
+
+	private int store() {
+		return isFloat ? ClassFileWriter.FSTORE : ClassFileWriter.ISTORE;
+	}
+
+	/**
+	 * Class loader defining a single generated kernel.
+	 */
+	private static final class KernelLoader extends ClassLoader {
+
+		KernelLoader(final ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(final String name, final byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
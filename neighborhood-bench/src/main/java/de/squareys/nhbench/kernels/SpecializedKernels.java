@@ -0,0 +1,109 @@
+package de.squareys.nhbench.kernels;
+
+import java.util.Arrays;
+
+import net.imglib2.Interval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.iterator.IntervalIterator;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+import de.squareys.nhbench.primitive.CompiledStructuringElement;
+
+/**
+ * Provides kernels specialized for a structuring element, pixel type and
+ * reduction, generated at runtime by {@link KernelGenerator}.
+ *
+ * Every combination gets its own final class with the neighborhood loop fully
+ * unrolled and the linear offsets as constants. Boxes of any size and
+ * dimensionality get a kernel which slides the extrema of the columns of the
+ * window along the line; any other structuring element, e.g. a diamond or
+ * sphere, gets a kernel reducing its offsets. A caller that selects its
+ * kernel once and keeps it only ever sees a single implementation at its call
+ * site, which the JIT can then inline.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class SpecializedKernels {
+
+	private SpecializedKernels() {
+		// utility class
+	}
+
+	/**
+	 * Get a kernel for float images.
+	 *
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param img
+	 *            interval of the flat image the kernel will be applied to
+	 * @param max
+	 *            true for a maximum filter, false for a minimum filter
+	 * @return the kernel or null if the structuring element is too large to
+	 *         unroll
+	 */
+	public static FloatLineKernel floatKernel(final Shape shape,
+			final Interval img, final boolean max) {
+		return (FloatLineKernel) kernel(shape, img, true, max);
+	}
+
+	/**
+	 * Get a kernel for unsigned byte images.
+	 *
+	 * @see #floatKernel(Shape, Interval, boolean)
+	 */
+	public static ByteLineKernel unsignedByteKernel(final Shape shape,
+			final Interval img, final boolean max) {
+		return (ByteLineKernel) kernel(shape, img, false, max);
+	}
+
+	private static Object kernel(final Shape shape, final Interval img,
+			final boolean isFloat, final boolean max) {
+		final int n = img.numDimensions();
+
+		if (StructuringElements.isBox(shape, n)) {
+			final Interval box = StructuringElements.boundingBox(shape, n);
+			final Object kernel = KernelGenerator.box(isFloat, max,
+					(int) box.min(0), (int) box.max(0), column(box, img));
+			if (kernel != null) {
+				return kernel;
+			}
+		}
+
+		return KernelGenerator.offsets(isFloat, max, CompiledStructuringElement
+				.compile(shape, img).getOffsets());
+	}
+
+	/**
+	 * @return sorted linear offsets of the column of a box at x = 0
+	 */
+	private static int[] column(final Interval box, final Interval img) {
+		final int n = box.numDimensions();
+		final long[] strides = CompiledStructuringElement.strides(img);
+
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		box.min(min);
+		box.max(max);
+		min[0] = max[0] = 0;
+
+		int size = 1;
+		for (int d = 1; d < n; ++d) {
+			size *= (int) box.dimension(d);
+		}
+
+		final IntervalIterator positions = new IntervalIterator(min, max);
+		final int[] column = new int[size];
+		int i = 0;
+		while (positions.hasNext()) {
+			positions.fwd();
+
+			long offset = 0;
+			for (int d = 1; d < n; ++d) {
+				offset += positions.getLongPosition(d) * strides[d];
+			}
+			column[i++] = (int) offset;
+		}
+
+		Arrays.sort(column);
+		return column;
+	}
+}
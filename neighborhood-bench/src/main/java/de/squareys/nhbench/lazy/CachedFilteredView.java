@@ -0,0 +1,247 @@
+package de.squareys.nhbench.lazy;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.neighborhood.NeighborhoodReducer;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+
+/**
+ * {@link RandomAccessibleInterval} of a neighborhood filtered image, which
+ * computes the filtered values lazily in cells.
+ *
+ * The interval of the source is divided into a grid of cells, e.g. 64x64x64
+ * pixels. A cell is computed the first time a {@link RandomAccess} reads one
+ * of its pixels and kept in a {@link CellCache}, so browsing a viewport of a
+ * huge image only costs the cells which are actually visible. Random accesses
+ * hold on to the cell they are in, so moving within a cell does not touch the
+ * cache.
+ *
+ * Several threads may read the view at once, each with its own random
+ * access. Different cells are then computed concurrently, every cell only
+ * once.
+ *
+ * @param <T>
+ *            pixel type
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class CachedFilteredView<T extends NativeType<T> & RealType<T>>
+		extends AbstractInterval implements RandomAccessibleInterval<T> {
+
+	/** Default side length of the cells */
+	public static final int DEFAULT_CELL_SIZE = 64;
+
+	private final RandomAccessibleInterval<T> source;
+	private final Shape shape;
+	private final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds;
+	private final NeighborhoodReducer<T, T> reducer;
+	private final T type;
+
+	private final int[] cellSize;
+	private final long[] numCells;
+	private final CellCache<Img<T>> cache;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source
+	 *            image to filter
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param reducer
+	 *            reducer computing the filtered values, copied for every cell
+	 * @param cellSize
+	 *            side length of the cells in every dimension
+	 * @param capacity
+	 *            maximum number of cached cells
+	 */
+	public CachedFilteredView(final RandomAccessibleInterval<T> source,
+			final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final NeighborhoodReducer<T, T> reducer, final int[] cellSize,
+			final int capacity) {
+		super(source);
+		this.source = source;
+		this.shape = shape;
+		this.outOfBounds = outOfBounds;
+		this.reducer = reducer;
+		this.type = source.randomAccess().get().createVariable();
+		this.cellSize = cellSize.clone();
+
+		numCells = new long[n];
+		for (int d = 0; d < n; ++d) {
+			numCells[d] = (dimension(d) + cellSize[d] - 1) / cellSize[d];
+		}
+
+		cache = new CellCache<Img<T>>(capacity) {
+
+			@Override
+			protected Img<T> compute(final long index) {
+				return computeCell(index);
+			}
+		};
+	}
+
+	/**
+	 * Constructor with cells of {@link #DEFAULT_CELL_SIZE} and
+	 * {@link CellCache#DEFAULT_CAPACITY}.
+	 *
+	 * @see #CachedFilteredView(RandomAccessibleInterval, Shape,
+	 *      OutOfBoundsFactory, NeighborhoodReducer, int[], int)
+	 */
+	public CachedFilteredView(final RandomAccessibleInterval<T> source,
+			final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final NeighborhoodReducer<T, T> reducer) {
+		this(source, shape, outOfBounds, reducer, uniform(
+				source.numDimensions(), DEFAULT_CELL_SIZE),
+				CellCache.DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public RandomAccess<T> randomAccess() {
+		return new CellRandomAccess();
+	}
+
+	@Override
+	public RandomAccess<T> randomAccess(final Interval interval) {
+		return randomAccess();
+	}
+
+	/**
+	 * @return the cache of computed cells
+	 */
+	public CellCache<Img<T>> getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return interval of the cell with the given index
+	 */
+	private Interval cellInterval(final long index) {
+		final long[] cellMin = new long[n];
+		final long[] cellMax = new long[n];
+
+		long rest = index;
+		for (int d = 0; d < n; ++d) {
+			final long cell = rest % numCells[d];
+			rest /= numCells[d];
+
+			cellMin[d] = min(d) + cell * cellSize[d];
+			cellMax[d] = Math.min(cellMin[d] + cellSize[d] - 1, max(d));
+		}
+
+		return new FinalInterval(cellMin, cellMax);
+	}
+
+	/**
+	 * @return index of the cell containing position
+	 */
+	private long cellIndex(final long[] position) {
+		long index = 0;
+		for (int d = n - 1; d >= 0; --d) {
+			index = index * numCells[d] + (position[d] - min(d)) / cellSize[d];
+		}
+		return index;
+	}
+
+	private Img<T> computeCell(final long index) {
+		final Interval interval = cellInterval(index);
+		final long[] dims = new long[n];
+		final long[] offset = new long[n];
+		interval.dimensions(dims);
+		interval.min(offset);
+
+		final Img<T> cell = new ArrayImgFactory<T>().create(dims, type);
+		NeighborhoodReduction.reduce(Views.extend(source, outOfBounds),
+				Views.translate(cell, offset), interval, shape,
+				reducer.copy());
+
+		return cell;
+	}
+
+	private static int[] uniform(final int n, final int size) {
+		final int[] sizes = new int[n];
+		for (int d = 0; d < n; ++d) {
+			sizes[d] = size;
+		}
+		return sizes;
+	}
+
+	/**
+	 * Random access which keeps the cell it is in, and its random access into
+	 * that cell.
+	 */
+	private final class CellRandomAccess extends Point implements
+			RandomAccess<T> {
+
+		/* strong reference, so the current cell is not collected */
+		private Img<T> cell;
+		private RandomAccess<T> cellAccess;
+		private final long[] cellMin;
+		private final long[] cellMax;
+		private final long[] local;
+
+		CellRandomAccess() {
+			super(CachedFilteredView.this.n);
+			cellMin = new long[n];
+			cellMax = new long[n];
+			local = new long[n];
+			// force a lookup on the first get()
+			cellMin[0] = 1;
+			cellMax[0] = 0;
+		}
+
+		@Override
+		public T get() {
+			if (!inCell()) {
+				final long index = cellIndex(position);
+				cell = cache.get(index);
+				cellAccess = cell.randomAccess();
+				cellInterval(index).min(cellMin);
+				for (int d = 0; d < n; ++d) {
+					cellMax[d] = cellMin[d] + cell.dimension(d) - 1;
+				}
+			}
+
+			for (int d = 0; d < n; ++d) {
+				local[d] = position[d] - cellMin[d];
+			}
+			cellAccess.setPosition(local);
+			return cellAccess.get();
+		}
+
+		private boolean inCell() {
+			for (int d = 0; d < n; ++d) {
+				if (position[d] < cellMin[d] || position[d] > cellMax[d]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public CellRandomAccess copy() {
+			return copyRandomAccess();
+		}
+
+		@Override
+		public CellRandomAccess copyRandomAccess() {
+			final CellRandomAccess copy = new CellRandomAccess();
+			copy.setPosition(this);
+			return copy;
+		}
+	}
+}
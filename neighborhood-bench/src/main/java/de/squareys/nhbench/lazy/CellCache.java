@@ -0,0 +1,163 @@
+package de.squareys.nhbench.lazy;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Bounded, least recently used cache of cells computed on demand, safe for use
+ * by several threads.
+ *
+ * At most capacity cells are kept, and only through {@link SoftReference}s,
+ * so the garbage collector may drop cells before the bound is reached if
+ * memory runs low. A cell which is not cached is computed by the first thread
+ * requesting it; other threads requesting the same cell wait for that result
+ * instead of computing it again, while different cells are computed
+ * concurrently.
+ *
+ * @param <V>
+ *            type of the cells
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public abstract class CellCache<V> {
+
+	/** Default maximum number of cached cells */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final Map<Long, SoftReference<V>> cells;
+	private final Map<Long, FutureTask<V>> pending;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity
+	 *            maximum number of cached cells
+	 */
+	public CellCache(final int capacity) {
+		cells = new LinkedHashMap<Long, SoftReference<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<Long, SoftReference<V>> eldest) {
+				return size() > capacity;
+			}
+		};
+		pending = new HashMap<Long, FutureTask<V>>();
+	}
+
+	/**
+	 * Compute a cell. Called at most once at a time for every index.
+	 *
+	 * @param index
+	 *            index of the cell
+	 * @return the cell
+	 */
+	protected abstract V compute(long index);
+
+	/**
+	 * Get a cell, computing it if it is not cached.
+	 *
+	 * @param index
+	 *            index of the cell
+	 * @return the cell
+	 */
+	public V get(final long index) {
+		final Long key = index;
+		final FutureTask<V> task;
+		boolean owner = false;
+
+		synchronized (this) {
+			final SoftReference<V> ref = cells.get(key);
+			final V cell = (ref == null) ? null : ref.get();
+			if (cell != null) {
+				++hits;
+				return cell;
+			}
+
+			final FutureTask<V> running = pending.get(key);
+			if (running != null) {
+				++hits;
+				task = running;
+			} else {
+				++misses;
+				task = new FutureTask<V>(new Callable<V>() {
+					@Override
+					public V call() {
+						return compute(index);
+					}
+				});
+				pending.put(key, task);
+				owner = true;
+			}
+		}
+
+		if (owner) {
+			// compute outside of the lock, other cells need not wait for this
+			task.run();
+		}
+
+		try {
+			final V cell = task.get();
+			if (owner) {
+				synchronized (this) {
+					cells.put(key, new SoftReference<V>(cell));
+				}
+			}
+			return cell;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for cell "
+					+ index, e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException("Computing cell " + index
+					+ " failed", cause);
+		} finally {
+			if (owner) {
+				synchronized (this) {
+					pending.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of cached cells, including cells already cleared by the
+	 *         garbage collector
+	 */
+	public synchronized int size() {
+		return cells.size();
+	}
+
+	/**
+	 * @return number of requests which found a cached or pending cell
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of requests which computed a cell
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Drop all cached cells.
+	 */
+	public synchronized void clear() {
+		cells.clear();
+	}
+}
@@ -0,0 +1,120 @@
+package de.squareys.nhbench.main;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the bytes allocated by the current thread, using the HotSpot
+ * specific {@link com.sun.management.ThreadMXBean}.
+ *
+ * This complements the JMH GC profiler (see
+ * {@link NeighborhoodBenchmarks#createDefaultOptionsBuilder(String, boolean)}
+ * ), which reports allocations per operation, with a check that can fail a
+ * benchmark whose per pixel path is supposed to allocate nothing.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class AllocationMeter {
+
+	/** Returned if allocation measurement is not supported by the JVM */
+	public static final long UNSUPPORTED = -1;
+
+	/**
+	 * Bytes a call of an allocation free operation may still allocate, e.g.
+	 * for an iterator escape analysis did not remove
+	 */
+	public static final long MAX_BYTES_PER_CALL = 256;
+
+	private static final int NUM_MEASUREMENTS = 3;
+
+	private AllocationMeter() {
+		// utility class
+	}
+
+	/**
+	 * @return whether the JVM supports measuring allocated bytes per thread
+	 */
+	public static boolean isSupported() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		return bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean)
+						.isThreadAllocatedMemorySupported()
+				&& ((com.sun.management.ThreadMXBean) bean)
+						.isThreadAllocatedMemoryEnabled();
+	}
+
+	/**
+	 * @return total bytes allocated by the current thread so far, or
+	 *         {@link #UNSUPPORTED}
+	 */
+	public static long allocatedBytes() {
+		if (!isSupported()) {
+			return UNSUPPORTED;
+		}
+		return ((com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean()).getThreadAllocatedBytes(Thread
+				.currentThread().getId());
+	}
+
+	/**
+	 * Measure the bytes allocated by running an operation once in the current
+	 * thread, corrected by the allocations of the measurement itself.
+	 *
+	 * @param operation
+	 *            operation to measure, should be warmed up already
+	 * @return allocated bytes, or {@link #UNSUPPORTED}
+	 */
+	public static long measure(final Runnable operation) {
+		if (!isSupported()) {
+			return UNSUPPORTED;
+		}
+
+		// overhead of the measurement itself
+		final long start = allocatedBytes();
+		final long overhead = allocatedBytes() - start;
+
+		final long before = allocatedBytes();
+		operation.run();
+		final long after = allocatedBytes();
+
+		return Math.max(0, after - before - overhead);
+	}
+
+	/**
+	 * Check that an operation does not allocate per processed pixel.
+	 *
+	 * Any allocation per pixel costs at least an object header for every pixel,
+	 * which exceeds {@link #MAX_BYTES_PER_CALL} already for small images. The
+	 * operation is measured a few times and the smallest result is checked, so
+	 * one-off allocations like class initialization are not reported.
+	 *
+	 * @param name
+	 *            name of the operation for the error message
+	 * @param operation
+	 *            operation to check, should be warmed up already
+	 * @param pixels
+	 *            number of pixels processed by one run of the operation
+	 * @throws IllegalStateException
+	 *             if the operation allocates more than
+	 *             {@link #MAX_BYTES_PER_CALL} bytes
+	 */
+	public static void assertAllocationFree(final String name,
+			final Runnable operation, final long pixels) {
+		long bytes = Long.MAX_VALUE;
+		for (int i = 0; i < NUM_MEASUREMENTS; ++i) {
+			bytes = Math.min(bytes, measure(operation));
+		}
+
+		if (bytes == UNSUPPORTED) {
+			System.err.println("Allocation measurement unsupported, "
+					+ "skipping check for " + name);
+			return;
+		}
+
+		if (bytes > MAX_BYTES_PER_CALL) {
+			throw new IllegalStateException(name + " allocated " + bytes
+					+ " bytes for " + pixels + " pixels ("
+					+ ((double) bytes / pixels) + " bytes per pixel)");
+		}
+	}
+}
@@ -1,10 +1,16 @@
 package de.squareys.nhbench.main;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.List;
 
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.results.format.ResultFormatType;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -14,6 +20,12 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import de.squareys.nhbench.minfilter.MinimumFilterBenchmark;
 import de.squareys.nhbench.minfilter.MinimumFilterBenchmark2D;
+import de.squareys.nhbench.minfilter.ParallelMinimumFilterBenchmark;
+import de.squareys.nhbench.minfilter.RankFilterBenchmark2D;
+import de.squareys.nhbench.results.RegressionReport;
+import de.squareys.nhbench.results.ResultRecord;
+import de.squareys.nhbench.results.ResultStore;
+import de.squareys.nhbench.results.RunMetadata;
 
 /**
  * Main class, contains main function and is responsible for running the
@@ -32,12 +44,31 @@ public class NeighborhoodBenchmarks {
 	public static List<String> benchmarks = Arrays.asList(
 //			IterateNeighborhoodsBenchmark.class.getSimpleName(),
 			MinimumFilterBenchmark.class.getSimpleName(),
-			MinimumFilterBenchmark2D.class.getSimpleName()
+			MinimumFilterBenchmark2D.class.getSimpleName(),
+			ParallelMinimumFilterBenchmark.class.getSimpleName(),
+			RankFilterBenchmark2D.class.getSimpleName()
 			/* CreateShapeBenchmark.class.getSimpleName() */);
 
+	/**
+	 * Number of JMH threads of the benchmarks which do not start threads of
+	 * their own, see {@link org.openjdk.jmh.annotations.Threads}. The options
+	 * of {@link #createDefaultOptionsBuilder(String)} leave the number of
+	 * threads to the benchmarks, since options would override the annotations.
+	 */
+	public static final int DEFAULT_THREADS = 4;
+
+	/**
+	 * System property which enables the GC profiler in
+	 * {@link #createDefaultOptionsBuilder(String)}, e.g. "-Dnhbench.profileGC=true"
+	 */
+	public static final String PROFILE_GC_PROPERTY = "nhbench.profileGC";
+
 	/**
 	 * Creates a OptionsBuilder with default settings: warmupIterations = 5
-	 * forks = 1 threads = 4 result = <resultsFilename>.csv
+	 * forks = 1 result = <resultsFilename>.csv
+	 * 
+	 * The GC profiler is added if the system property
+	 * {@link #PROFILE_GC_PROPERTY} is "true".
 	 * 
 	 * @param resultsFilename
 	 *            Name of the file to write the output to, without file
@@ -46,25 +77,79 @@ public class NeighborhoodBenchmarks {
 	 */
 	public static ChainedOptionsBuilder createDefaultOptionsBuilder(
 			String resultsFilename) {
-		return new OptionsBuilder()
+		return createDefaultOptionsBuilder(resultsFilename,
+				Boolean.getBoolean(PROFILE_GC_PROPERTY));
+	}
+
+	/**
+	 * Creates a OptionsBuilder with default settings, optionally in
+	 * allocation profiling mode.
+	 * 
+	 * In allocation profiling mode the JMH {@link GCProfiler} is added, which
+	 * reports allocation rate, bytes allocated per operation and the number
+	 * and time of garbage collections as secondary results of every benchmark.
+	 * 
+	 * @param resultsFilename
+	 *            Name of the file to write the output to, without file
+	 *            extension
+	 * @param profileGC
+	 *            whether to add the GC profiler
+	 * @return {@link ChainedOptionsBuilder} with some default settings
+	 */
+	public static ChainedOptionsBuilder createDefaultOptionsBuilder(
+			String resultsFilename, boolean profileGC) {
+		ChainedOptionsBuilder builder = new OptionsBuilder()
 			.warmupIterations(5)
 			.forks(1)
-			.threads(4)
 			.result(resultsFilename + ".csv")
 			.resultFormat(ResultFormatType.CSV);
+
+		if (profileGC) {
+			builder.addProfiler(GCProfiler.class);
+		}
+
+		return builder;
 	}
 
 	/**
 	 * Main function.
 	 * 
+	 * The results are stored in the {@link ResultStore} at
+	 * {@link ResultStore#DEFAULT_DIRECTORY} together with the environment
+	 * they were measured in.
+	 * 
 	 * @param args
-	 *            do nothing
+	 *            optional: "--baseline &lt;run id or csv&gt;" to compare the
+	 *            run against a baseline, "--fail-on-regression" to exit with
+	 *            status 1 if any benchmark got significantly slower,
+	 *            "--profile-gc" to report allocations and GC counts
 	 * @throws RunnerException
 	 *             thrown when jmh runs into trouble
+	 * @throws IOException
+	 *             thrown when the results could not be stored or the
+	 *             baseline could not be read
 	 */
-	public static void main(String[] args) throws RunnerException {
-		ChainedOptionsBuilder builder = createDefaultOptionsBuilder(
-				NeighborhoodBenchmarks.class.getSimpleName() + "_" + timestamp());
+	public static void main(String[] args) throws RunnerException, IOException {
+		String baseline = null;
+		boolean failOnRegression = false;
+		boolean profileGC = Boolean.getBoolean(PROFILE_GC_PROPERTY);
+
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].equals("--baseline") && i + 1 < args.length) {
+				baseline = args[++i];
+			} else if (args[i].equals("--fail-on-regression")) {
+				failOnRegression = true;
+			} else if (args[i].equals("--profile-gc")) {
+				profileGC = true;
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + args[i]);
+			}
+		}
+
+		final String runId = NeighborhoodBenchmarks.class.getSimpleName() + "_"
+				+ timestamp();
+		ChainedOptionsBuilder builder = createDefaultOptionsBuilder(runId,
+				profileGC);
 
 		for (String benchmarkName : benchmarks) {
 			builder.include(benchmarkName);
@@ -72,7 +157,43 @@ public class NeighborhoodBenchmarks {
 
 		Options opt = builder.build();
 
-		new Runner(opt).run();
+		Collection<RunResult> results = new Runner(opt).run();
+
+		ResultStore store = new ResultStore(new File(
+				ResultStore.DEFAULT_DIRECTORY));
+		ResultStore.Run run = toRun(runId, results);
+		System.out.println("Stored results in " + store.save(run));
+
+		if (baseline != null) {
+			RegressionReport report = new RegressionReport(store.load(baseline),
+					run);
+			report.print(System.out);
+
+			if (failOnRegression && report.hasRegressions()) {
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Convert JMH results to a run of the {@link ResultStore}, collecting the
+	 * metadata of the current environment.
+	 * 
+	 * @param runId
+	 *            identifier of the run
+	 * @param results
+	 *            results returned by {@link Runner#run()}
+	 * @return the run
+	 */
+	public static ResultStore.Run toRun(String runId,
+			Collection<RunResult> results) {
+		List<ResultRecord> records = new ArrayList<ResultRecord>();
+		for (RunResult result : results) {
+			records.add(ResultRecord.fromRunResult(result));
+		}
+
+		return new ResultStore.Run(RunMetadata.collect(runId, DEFAULT_THREADS),
+				records);
 	}
 
 	/**
@@ -0,0 +1,143 @@
+package de.squareys.nhbench.minfilter;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.ImageJ;
+import net.imagej.ops.Op;
+import net.imagej.ops.Ops;
+import net.imagej.ops.map.neighborhood.array.MapNeighborhoodNativeType;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.img.Img;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.Boundaries;
+import de.squareys.nhbench.plan.FilterPlan;
+import de.squareys.nhbench.plan.FilterPlan.Operation;
+import de.squareys.nhbench.plan.FilterPlanCache;
+import de.squareys.nhbench.primitive.PrimitiveMinimumFilter;
+
+/**
+ * Benchmark separating the per call setup cost of a minimum filter from its
+ * per pixel cost, on small images where setup dominates.
+ * 
+ * @param library
+ *            "imglib2-primitive" compiles the structuring element on every
+ *            call, "plan-cached" looks the {@link FilterPlan} up in a
+ *            {@link FilterPlanCache} on every call, "plan-prepared" only
+ *            executes a plan prepared in setup. "imagej-ops" matches the ops
+ *            on every call, "imagej-ops-prepared" only runs an op matched in
+ *            setup.
+ * 
+ * The plans are not specialized, so like "imglib2-primitive" they loop over
+ * the offsets of the compiled structuring element and mostly differ in their
+ * setup cost.
+ * 
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class FilterPlanBenchmark {
+
+	final static ImageJ ij = new ImageJ();
+
+	/* shared by all threads, like a cache in an application would be */
+	final static FilterPlanCache cache = new FilterPlanCache();
+
+	@Param({ "16x16", "64x64", "256x256" })
+	private String size;
+
+	@Param({ "1", "2" })
+	private String sigma;
+	private int sigma_i;
+
+	@Param({ "imglib2-primitive", "plan-cached", "plan-prepared",
+			"imagej-ops", "imagej-ops-prepared" })
+	private String library;
+
+	private Img<UnsignedByteType> image;
+	private Img<UnsignedByteType> output;
+
+	private FilterPlan<UnsignedByteType> plan;
+	private Op op;
+
+	/**
+	 * Setup the state of this benchmark.
+	 */
+	@Setup
+	public void setup() {
+		sigma_i = Integer.parseInt(sigma);
+
+		image = BenchmarkInput.create(size, new UnsignedByteType(), "noise");
+		output = image.factory().create(image, new UnsignedByteType());
+
+		plan = new FilterPlan<UnsignedByteType>(new RectangleShape(sigma_i,
+				false), new UnsignedByteType(), image,
+				Boundaries.factory(Boundaries.MIRROR_SINGLE,
+						new UnsignedByteType()), Operation.MIN, false);
+
+		op = resolveOp();
+	}
+
+	/**
+	 * Minimum filter the image.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void minimumFilter() {
+		if ("imglib2-primitive".equals(library)) {
+			PrimitiveMinimumFilter.minimum(image, output, new RectangleShape(
+					sigma_i, false),
+					new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+							Boundary.SINGLE));
+		} else if ("plan-cached".equals(library)) {
+			cache.get("RectangleShape", sigma_i, new UnsignedByteType(), image,
+					Boundaries.MIRROR_SINGLE, Operation.MIN, false).execute(
+					image, output);
+		} else if ("plan-prepared".equals(library)) {
+			plan.execute(image, output);
+		} else if ("imagej-ops".equals(library)) {
+			resolveOp().run();
+		} else if ("imagej-ops-prepared".equals(library)) {
+			op.run();
+		}
+	}
+
+	private Op resolveOp() {
+		return ij.op().op(
+				MapNeighborhoodNativeType.class,
+				output,
+				image,
+				ij.op().op(Ops.Stats.Min.class, output.firstElement(),
+						Iterable.class), sigma_i);
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 * 
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(FilterPlanBenchmark.class
+				.getSimpleName());
+	}
+}
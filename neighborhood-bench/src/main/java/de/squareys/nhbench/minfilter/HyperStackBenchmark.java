@@ -0,0 +1,155 @@
+package de.squareys.nhbench.minfilter;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.algorithm.neighborhood.CenteredRectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.hyperstack.HyperSliceExecutor;
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.Boundaries;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.neighborhood.ParallelNeighborhoodExecutor;
+import de.squareys.nhbench.plan.FilterPlan;
+import de.squareys.nhbench.plan.FilterPlan.Operation;
+
+/**
+ * Benchmark for the 3D minimum filter of every channel and time point of an
+ * XYZCT hyperstack.
+ *
+ * "block" runs one {@link FilterPlan} on the complete hyperstack in a single
+ * thread. "parallel" runs the libraries with a thread pool, see
+ * {@link ParallelState}. Both use the same plan, prepared in setup. The pools
+ * start their own threads, so the benchmark runs on a single JMH thread.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(1)
+public class HyperStackBenchmark {
+
+	@Param({ "128x128x16x2x25", "128x128x16x2x100" })
+	private String size;
+
+	@Param({ "1", "2" })
+	private String sigma;
+
+	private Img<UnsignedByteType> image;
+	private Img<UnsignedByteType> output;
+	private Shape shape;
+	private FilterPlan<UnsignedByteType> plan;
+
+	/**
+	 * State of the multi-threaded libraries. Only "parallel" uses it, so the
+	 * single threaded "block" is not repeated for every thread count.
+	 *
+	 * @param library
+	 *            "slab-parallel" splits the hyperstack into slabs for the
+	 *            {@link ParallelNeighborhoodExecutor}, "plane-parallel"
+	 *            executes the plan for every (c, t) volume as a task of the
+	 *            {@link HyperSliceExecutor}
+	 * @param threads
+	 *            number of threads of the pool
+	 */
+	@State(Scope.Thread)
+	public static class ParallelState {
+
+		@Param({ "slab-parallel", "plane-parallel" })
+		private String library;
+
+		@Param({ "1", "2", "4", "8" })
+		private String threads;
+
+		private ParallelNeighborhoodExecutor executor;
+		private HyperSliceExecutor sliceExecutor;
+
+		@Setup
+		public void setup() {
+			executor = new ParallelNeighborhoodExecutor(
+					Integer.parseInt(threads));
+			sliceExecutor = new HyperSliceExecutor(executor);
+		}
+
+		/**
+		 * Release the threads of the executor.
+		 */
+		@TearDown
+		public void tearDown() {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Setup the state of this benchmark.
+	 */
+	@Setup
+	public void setup() {
+		image = BenchmarkInput.create(size, new UnsignedByteType(), "noise");
+		output = image.factory().create(image, new UnsignedByteType());
+
+		// spatial neighborhood, neither channel nor time are spanned
+		final int s = Integer.parseInt(sigma);
+		shape = new CenteredRectangleShape(new int[] { s, s, s, 0, 0 }, false);
+
+		plan = new FilterPlan<UnsignedByteType>(shape, new UnsignedByteType(),
+				image, Boundaries.factory(Boundaries.MIRROR_SINGLE,
+						new UnsignedByteType()), Operation.MIN);
+	}
+
+	/**
+	 * Filter the hyperstack in a single thread.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void block() {
+		plan.execute(image, output);
+	}
+
+	/**
+	 * Filter the hyperstack with a thread pool.
+	 *
+	 * @param state
+	 *            library and threads
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void parallel(final ParallelState state) {
+		if ("slab-parallel".equals(state.library)) {
+			state.executor.run(image, output, shape, Boundaries.factory(
+					Boundaries.MIRROR_SINGLE, new UnsignedByteType()),
+					new MinimumReducer<UnsignedByteType>(new UnsignedByteType()));
+		} else if ("plane-parallel".equals(state.library)) {
+			state.sliceExecutor.filter(image, output, plan);
+		}
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 *
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(HyperStackBenchmark.class
+				.getSimpleName());
+	}
+}
@@ -0,0 +1,120 @@
+package de.squareys.nhbench.minfilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.Boundaries;
+import de.squareys.nhbench.plan.FilterPlan.Operation;
+import de.squareys.nhbench.plan.IncrementalFilter;
+
+/**
+ * Benchmark for updating a minimum filtered image after a few tiles of the
+ * input changed, recomputing the complete output against recomputing only
+ * the affected pixels with {@link IncrementalFilter}.
+ *
+ * @param tiles
+ *            number of changed tiles, placed at random with a fixed seed
+ * @param library
+ *            "full" recomputes the complete output, "incremental" only the
+ *            pixels affected by the changed tiles
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class IncrementalFilterBenchmark {
+
+	/* side length of a changed tile */
+	private static final int TILE_SIZE = 64;
+
+	@Param({ "2048x2048" })
+	private String size;
+
+	@Param({ "1", "4" })
+	private String sigma;
+
+	@Param({ "1", "16" })
+	private String tiles;
+
+	@Param({ "full", "incremental" })
+	private String library;
+
+	private Img<UnsignedByteType> image;
+	private Img<UnsignedByteType> output;
+
+	private IncrementalFilter<UnsignedByteType> filter;
+	private List<Interval> changed;
+
+	/**
+	 * Setup the state of this benchmark.
+	 */
+	@Setup
+	public void setup() {
+		image = BenchmarkInput.create(size, new UnsignedByteType(), "noise");
+		output = image.factory().create(image, new UnsignedByteType());
+
+		filter = new IncrementalFilter<UnsignedByteType>(new RectangleShape(
+				Integer.parseInt(sigma), false), new UnsignedByteType(), image,
+				Boundaries.factory(Boundaries.MIRROR_SINGLE,
+						new UnsignedByteType()), Operation.MIN);
+		filter.execute(image, output);
+
+		final Random random = new Random(BenchmarkInput.DEFAULT_SEED);
+		final int numTiles = Integer.parseInt(tiles);
+		changed = new ArrayList<Interval>(numTiles);
+		for (int i = 0; i < numTiles; ++i) {
+			final long x = random.nextInt((int) image.dimension(0) - TILE_SIZE);
+			final long y = random.nextInt((int) image.dimension(1) - TILE_SIZE);
+			changed.add(new FinalInterval(new long[] { x, y }, new long[] {
+					x + TILE_SIZE - 1, y + TILE_SIZE - 1 }));
+		}
+	}
+
+	/**
+	 * Bring the output up to date with the changed input.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void minimumFilter() {
+		if ("full".equals(library)) {
+			filter.execute(image, output);
+		} else if ("incremental".equals(library)) {
+			filter.update(image, output, changed);
+		}
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 *
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(IncrementalFilterBenchmark.class
+				.getSimpleName());
+	}
+}
@@ -0,0 +1,140 @@
+package de.squareys.nhbench.minfilter;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.lazy.CachedFilteredView;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.Boundaries;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.plan.FilterPlan;
+import de.squareys.nhbench.plan.FilterPlan.Operation;
+
+/**
+ * Benchmark for reading a small viewport of a minimum filtered large image,
+ * filtering the complete image eagerly against computing only the visible
+ * cells with a {@link CachedFilteredView}.
+ *
+ * @param library
+ *            "eager" filters the complete image with a {@link FilterPlan},
+ *            "lazy" reads the viewport from a new view, "lazy-cached" reads it
+ *            from a view shared by all invocations, like panning back to a
+ *            region already seen
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class LazyFilterViewBenchmark {
+
+	@Param({ "4096x4096" })
+	private String size;
+
+	@Param({ "512" })
+	private String viewport;
+
+	@Param({ "eager", "lazy", "lazy-cached" })
+	private String library;
+
+	private Img<UnsignedByteType> image;
+	private Img<UnsignedByteType> output;
+	private Shape shape;
+	private FinalInterval view;
+
+	private FilterPlan<UnsignedByteType> plan;
+	private CachedFilteredView<UnsignedByteType> cached;
+
+	/**
+	 * Setup the state of this benchmark.
+	 */
+	@Setup
+	public void setup() {
+		image = BenchmarkInput.create(size, new UnsignedByteType(), "noise");
+		shape = new RectangleShape(1, false);
+
+		// viewport in the center of the image
+		final int v = Integer.parseInt(viewport);
+		final long x = (image.dimension(0) - v) / 2;
+		final long y = (image.dimension(1) - v) / 2;
+		view = new FinalInterval(new long[] { x, y }, new long[] { x + v - 1,
+				y + v - 1 });
+
+		if ("eager".equals(library)) {
+			output = image.factory().create(image, new UnsignedByteType());
+			plan = new FilterPlan<UnsignedByteType>(shape,
+					new UnsignedByteType(), image, Boundaries.factory(
+							Boundaries.MIRROR_SINGLE, new UnsignedByteType()),
+					Operation.MIN);
+		}
+
+		cached = createView();
+	}
+
+	/**
+	 * Read the viewport of the filtered image.
+	 *
+	 * @return sum of the viewport, so the reads are not eliminated
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long readViewport() {
+		if ("eager".equals(library)) {
+			plan.execute(image, output);
+			return sum(output);
+		} else if ("lazy".equals(library)) {
+			return sum(createView());
+		} else {
+			return sum(cached);
+		}
+	}
+
+	private CachedFilteredView<UnsignedByteType> createView() {
+		return new CachedFilteredView<UnsignedByteType>(image, shape,
+				Boundaries.factory(Boundaries.MIRROR_SINGLE,
+						new UnsignedByteType()),
+				new MinimumReducer<UnsignedByteType>(new UnsignedByteType()));
+	}
+
+	private long sum(final RandomAccessibleInterval<UnsignedByteType> img) {
+		long sum = 0;
+		final Cursor<UnsignedByteType> c = Views.interval(img, view).cursor();
+		while (c.hasNext()) {
+			sum += c.next().get();
+		}
+		return sum;
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 *
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(LazyFilterViewBenchmark.class
+				.getSimpleName());
+	}
+}
@@ -1,13 +1,26 @@
 
 package de.squareys.nhbench.minfilter;
 
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.io.MappedImages;
 import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.morphology.SeparableMorphology;
+import de.squareys.nhbench.neighborhood.InteriorBorderExecutor;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.primitive.BoundaryMode;
+import de.squareys.nhbench.primitive.PrimitiveMinimumFilter;
+import de.squareys.nhbench.stream.ImgPlaneSink;
+import de.squareys.nhbench.stream.ImgPlaneSource;
+import de.squareys.nhbench.stream.ScifioPlaneSource;
+import de.squareys.nhbench.stream.StreamingMorphology3D;
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.Prefs;
 import ij.plugin.Filters3D;
+import io.scif.SCIFIO;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
@@ -20,6 +33,7 @@ import net.imagej.ops.map.neighborhood.array.MapNeighborhoodNativeTypeExtended;
 import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.neighborhood.Neighborhood;
 import net.imglib2.algorithm.neighborhood.RectangleShape;
 import net.imglib2.algorithm.neighborhood.Shape;
@@ -41,6 +55,7 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.runner.RunnerException;
 
 import sandbox.MinimumFilter;
@@ -54,6 +69,7 @@ import sandbox.MinimumFilter;
  * @author Jonathan Hale (University of Konstanz)
  */
 @State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
 public class MinimumFilterBenchmark {
 
 	final static ImageJ ij = new ImageJ();
@@ -62,6 +78,11 @@ public class MinimumFilterBenchmark {
 	final static String IMAGEJ_OPS_EXTENDED = "imagej-ops-extended";
 	final static String IMGLIB2 = "imglib2";
 	final static String IMAGEJ1 = "imagej";
+	final static String IMGLIB2_VHGW = "imglib2-vhgw";
+	final static String IMGLIB2_NOOB = "imglib2-noob";
+	final static String IMGLIB2_PRIMITIVE = "imglib2-primitive";
+	final static String IMGLIB2_PRIMITIVE_PADDED = "imglib2-primitive-padded";
+	final static String IMGLIB2_STREAMING = "imglib2-streaming";
 
 	/**
 	 * State which creates holds an image. It is Thread Scope, since the pixels
@@ -79,29 +100,44 @@ public class MinimumFilterBenchmark {
 
 		public Img<FloatType> output;
 
+		/* Size of a synthetic input image or "file" for the input file */
+		@Param({ BenchmarkInput.FILE, BenchmarkInput.MAPPED_FILE,
+				"128x128x128", "256x256x256" })
+		public String size;
+
+		/* Content of the synthetic input image */
+		@Param({ "noise" })
+		public String content;
+
 		@Setup
 		public void setup() throws IOException {
-			// open the image file
-			Dataset ds = (Dataset) ij.io().open(filename);
-			Img<FloatType> planarin = (Img<FloatType>) ds
-					.getImgPlus().getImg();
-			image = new ArrayImgFactory<FloatType>().create(planarin,
-					planarin.firstElement());
-
-			Cursor<FloatType> c1 = planarin.cursor();
-			Cursor<FloatType> c2 = image.cursor();
-
-			while (c1.hasNext()) {
-				c2.next().set(c1.next());
-			}
+			if (BenchmarkInput.isMappedFile(size)) {
+				// map the pixels of the file, nothing is decoded or copied
+				image = MappedImages.openTiff(new File(filename),
+						new FloatType());
+			} else if (BenchmarkInput.isFile(size)) {
+				// open the image file
+				Dataset ds = (Dataset) ij.io().open(filename);
+				Img<FloatType> planarin = (Img<FloatType>) ds
+						.getImgPlus().getImg();
+				image = new ArrayImgFactory<FloatType>().create(planarin,
+						planarin.firstElement());
+
+				Cursor<FloatType> c1 = planarin.cursor();
+				Cursor<FloatType> c2 = image.cursor();
+
+				while (c1.hasNext()) {
+					c2.next().set(c1.next());
+				}
 
-			output = image.factory().create(image, new FloatType());
+				IJ.openImage(MinimumFilter.fileName);
+			} else {
+				image = BenchmarkInput.create(size, new FloatType(), content);
+			}
 
 			// create a new Image with the same properties
 			output = image.factory().create(image, image.firstElement());
 
-			IJ.openImage(MinimumFilter.fileName);
-
 			im = ImageJFunctions.wrap(image, "input");
 		}
 	}
@@ -110,7 +146,9 @@ public class MinimumFilterBenchmark {
 	private String sigma;
 	private int sigma_i;
 
-	@Param({ IMAGEJ_OPS_EXTENDED, IMAGEJ_OPS,	IMGLIB2 })
+	@Param({ IMAGEJ_OPS_EXTENDED, IMAGEJ_OPS,	IMGLIB2, IMGLIB2_VHGW,
+		IMGLIB2_NOOB, IMGLIB2_PRIMITIVE, IMGLIB2_PRIMITIVE_PADDED,
+		IMGLIB2_STREAMING })
 	private String library;
 
 	/**
@@ -121,6 +159,19 @@ public class MinimumFilterBenchmark {
 	@Setup
 	public void setup(ImageState imgState) {
 		sigma_i = Integer.parseInt(sigma);
+
+		// do not report the generic fallback under the name of the primitive
+		// filter, e.g. for images mapped from a file
+		final BoundaryMode mode = IMGLIB2_PRIMITIVE_PADDED.equals(library)
+			? BoundaryMode.PADDED : BoundaryMode.OUT_OF_BOUNDS;
+		if ((IMGLIB2_PRIMITIVE.equals(library) || IMGLIB2_PRIMITIVE_PADDED
+			.equals(library)) &&
+			!PrimitiveMinimumFilter.isPrimitive(imgState.image, imgState.output,
+				mode))
+		{
+			throw new IllegalArgumentException(library +
+				" would fall back to the generic path for size=" + imgState.size);
+		}
 	}
 
 	/**
@@ -130,7 +181,7 @@ public class MinimumFilterBenchmark {
 	@Benchmark
 	@BenchmarkMode(Mode.AverageTime)
 	@OutputTimeUnit(TimeUnit.MILLISECONDS)
-	public void minimumFilter(ImageState state) {
+	public void minimumFilter(ImageState state) throws IOException {
 		if (IMGLIB2.equals(library)) {
 			// get mirror view
 			final IntervalView<FloatType> infinite =
@@ -210,6 +261,56 @@ public class MinimumFilterBenchmark {
 			}
 		}
 
+		if (IMGLIB2_NOOB.equals(library)) {
+			InteriorBorderExecutor.run(state.image, state.output,
+				new RectangleShape(sigma_i, false),
+				new OutOfBoundsMirrorFactory<FloatType, RandomAccessibleInterval<FloatType>>(
+					Boundary.SINGLE), new MinimumReducer<FloatType>(new FloatType()));
+		}
+
+		if (IMGLIB2_PRIMITIVE.equals(library)) {
+			PrimitiveMinimumFilter.minimum(state.image, state.output,
+				new RectangleShape(sigma_i, false),
+				new OutOfBoundsMirrorFactory<FloatType, RandomAccessibleInterval<FloatType>>(
+					Boundary.SINGLE));
+		}
+
+		if (IMGLIB2_PRIMITIVE_PADDED.equals(library)) {
+			// copies the input into a padded buffer on every call
+			PrimitiveMinimumFilter.minimum(state.image, state.output,
+				new RectangleShape(sigma_i, false),
+				new OutOfBoundsMirrorFactory<FloatType, RandomAccessibleInterval<FloatType>>(
+					Boundary.SINGLE), BoundaryMode.PADDED);
+		}
+
+		if (IMGLIB2_STREAMING.equals(library)) {
+			if (BenchmarkInput.isFile(state.size)) {
+				// reads the file plane by plane instead of using the loaded image
+				final ScifioPlaneSource source =
+					new ScifioPlaneSource(new SCIFIO(ij.getContext()),
+						ImageState.filename);
+				try {
+					new StreamingMorphology3D(sigma_i, sigma_i, sigma_i, false).run(
+						source, new ImgPlaneSink<FloatType>(state.output));
+				}
+				finally {
+					source.close();
+				}
+			}
+			else {
+				new StreamingMorphology3D(sigma_i, sigma_i, sigma_i, false).run(
+					new ImgPlaneSource<FloatType>(state.image),
+					new ImgPlaneSink<FloatType>(state.output));
+			}
+		}
+
+		if (IMGLIB2_VHGW.equals(library)) {
+			SeparableMorphology.erode(state.image, state.output,
+				new RectangleShape(sigma_i, false),
+				new OutOfBoundsMirrorFactory<FloatType, RandomAccessibleInterval<FloatType>>(
+					Boundary.SINGLE));
+		}
+
 		if (IMAGEJ_OPS.equals(library)) {
 			final Op op =
 				ij.op().op(
@@ -1,6 +1,13 @@
 package de.squareys.nhbench.minfilter;
 
+import de.squareys.nhbench.input.BenchmarkInput;
 import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.morphology.RowMorphology;
+import de.squareys.nhbench.morphology.SeparableMorphology;
+import de.squareys.nhbench.neighborhood.InteriorBorderExecutor;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.primitive.BoundaryMode;
+import de.squareys.nhbench.primitive.PrimitiveMinimumFilter;
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
@@ -18,6 +25,7 @@ import net.imagej.ops.map.neighborhood.array.MapNeighborhoodNativeType;
 import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.neighborhood.Neighborhood;
 import net.imglib2.algorithm.neighborhood.RectangleShape;
 import net.imglib2.algorithm.neighborhood.Shape;
@@ -25,6 +33,8 @@ import net.imglib2.img.ImagePlusAdapter;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.display.imagej.ImageJFunctions;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.view.IntervalView;
@@ -38,6 +48,7 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.runner.RunnerException;
 
 import sandbox.MinimumFilter;
@@ -57,6 +68,7 @@ import sandbox.MinimumFilter;
  *
  */
 @State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
 public class MinimumFilterBenchmark2D {
 	final static ImageJ ij = new ImageJ();
 
@@ -76,23 +88,36 @@ public class MinimumFilterBenchmark2D {
 
 		public Img<UnsignedByteType> output;
 
-		@Setup
-		public void setup() throws IOException {
-			// define the file to open
-			final File file = new File(fileName);
-
-			// open the image file
-			Dataset ds = (Dataset) ij.io().open("lena_grey.jpeg");
-			Img<UnsignedByteType> planarin = (Img<UnsignedByteType>) ds
-					.getImgPlus().getImg();
-			image = new ArrayImgFactory<UnsignedByteType>().create(planarin,
-					planarin.firstElement());
+		/* Size of a synthetic input image or "file" for the input file */
+		@Param({ BenchmarkInput.FILE, "256x256", "1024x1024", "2048x2048" })
+		public String size;
 
-			Cursor<UnsignedByteType> c1 = planarin.cursor();
-			Cursor<UnsignedByteType> c2 = image.cursor();
+		/* Content of the synthetic input image */
+		@Param({ "noise" })
+		public String content;
 
-			while (c1.hasNext()) {
-				c2.next().set(c1.next());
+		@Setup
+		public void setup() throws IOException {
+			if (BenchmarkInput.isFile(size)) {
+				// define the file to open
+				final File file = new File(fileName);
+
+				// open the image file
+				Dataset ds = (Dataset) ij.io().open("lena_grey.jpeg");
+				Img<UnsignedByteType> planarin = (Img<UnsignedByteType>) ds
+						.getImgPlus().getImg();
+				image = new ArrayImgFactory<UnsignedByteType>().create(planarin,
+						planarin.firstElement());
+
+				Cursor<UnsignedByteType> c1 = planarin.cursor();
+				Cursor<UnsignedByteType> c2 = image.cursor();
+
+				while (c1.hasNext()) {
+					c2.next().set(c1.next());
+				}
+			} else {
+				image = BenchmarkInput.create(size, new UnsignedByteType(),
+						content);
 			}
 
 			output = image.factory().create(image, new UnsignedByteType());
@@ -110,7 +135,9 @@ public class MinimumFilterBenchmark2D {
 	private String sigma;
 	private int sigma_i;
 
-	@Param({ "imagej-ops", "imagej1", "imglib2-optimized", "imglib2", })
+	@Param({ "imagej-ops", "imagej1", "imglib2-optimized", "imglib2",
+			"imglib2-vhgw", "imglib2-noob", "imglib2-primitive",
+			"imglib2-primitive-padded", "imglib2-rows" })
 	private String library;
 
 	/**
@@ -198,6 +225,29 @@ public class MinimumFilterBenchmark2D {
 				ra.setPosition(neighborhood);
 				ra.get().set(min);
 			}
+		} else if ("imglib2-vhgw".equals(library)) {
+			SeparableMorphology.erode(state.image, state.output,
+					new RectangleShape(sigma_i, false));
+		} else if ("imglib2-rows".equals(library)) {
+			RowMorphology.erode(state.image, state.output,
+					new RectangleShape(sigma_i, false));
+		} else if ("imglib2-noob".equals(library)) {
+			InteriorBorderExecutor.run(state.image, state.output,
+					new RectangleShape(sigma_i, false),
+					new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+							Boundary.SINGLE),
+					new MinimumReducer<UnsignedByteType>(
+							new UnsignedByteType()));
+		} else if ("imglib2-primitive".equals(library)) {
+			PrimitiveMinimumFilter.minimum(state.image, state.output,
+					new RectangleShape(sigma_i, false),
+					new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+							Boundary.SINGLE));
+		} else if ("imglib2-primitive-padded".equals(library)) {
+			PrimitiveMinimumFilter.minimum(state.image, state.output,
+					new RectangleShape(sigma_i, false),
+					new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+							Boundary.SINGLE), BoundaryMode.PADDED);
 		} else if ("imagej-ops".equals(library)) {
 			final Op op = ij.op().op(
 					MapNeighborhoodNativeType.class,
@@ -0,0 +1,200 @@
+package de.squareys.nhbench.minfilter;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.morphology.DecomposedMorphology;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+import de.squareys.nhbench.neighborhood.Shapes;
+import de.squareys.nhbench.primitive.BoundaryMode;
+import de.squareys.nhbench.primitive.CompiledStructuringElement;
+import de.squareys.nhbench.primitive.PrimitiveMinimumFilter;
+import de.squareys.nhbench.tuning.AutoTunedFilter;
+import de.squareys.nhbench.tuning.Calibration;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.Dataset;
+import net.imagej.ImageJ;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Benchmark for minimum filtering a 2D image with non-rectangular shapes,
+ * comparing the per-Shape neighborhood cursors with the
+ * {@link CompiledStructuringElement} offsets and structuring element
+ * decomposition.
+ * 
+ * @param sigma
+ *            Radius of the shape
+ * @param shapeType
+ *            Type of the shape, see
+ *            {@link de.squareys.nhbench.imglib2.CreateShapeBenchmark}
+ * @param library
+ *            "imglib2" for the neighborhood cursors, "imglib2-primitive" for
+ *            the compiled offsets, "imglib2-primitive-padded" for the compiled
+ *            offsets on a padded copy of the image (run with --profile-gc to
+ *            see the memory cost of the copy), "imglib2-decomposed" for the
+ *            {@link DecomposedMorphology} (approximates HyperSphereShape by an
+ *            octagon), "imglib2-auto" for the algorithm chosen by the
+ *            {@link AutoTunedFilter}, with a profile calibrated beforehand
+ *            with {@link Calibration#main(String[])} or else in the setup of
+ *            the first fork
+ * 
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class MinimumFilterShapesBenchmark2D {
+	final static ImageJ ij = new ImageJ();
+
+	/**
+	 * State which holds the input and output images.
+	 * 
+	 * @author Jonathan Hale (University of Konstanz)
+	 */
+	@State(Scope.Benchmark)
+	public static class ImageState {
+		public static String fileName = "./lena_grey.jpeg";
+
+		public Img<UnsignedByteType> image;
+		public Img<UnsignedByteType> output;
+
+		/* Size of a synthetic input image or "file" for the input file */
+		@Param({ BenchmarkInput.FILE, "256x256", "1024x1024", "2048x2048" })
+		public String size;
+
+		/* Content of the synthetic input image */
+		@Param({ "noise" })
+		public String content;
+
+		@Setup
+		public void setup() throws IOException {
+			if (BenchmarkInput.isFile(size)) {
+				// open the image file
+				Dataset ds = (Dataset) ij.io().open(fileName);
+				Img<UnsignedByteType> planarin = (Img<UnsignedByteType>) ds
+						.getImgPlus().getImg();
+				image = new ArrayImgFactory<UnsignedByteType>().create(planarin,
+						planarin.firstElement());
+
+				Cursor<UnsignedByteType> c1 = planarin.cursor();
+				Cursor<UnsignedByteType> c2 = image.cursor();
+
+				while (c1.hasNext()) {
+					c2.next().set(c1.next());
+				}
+			} else {
+				image = BenchmarkInput.create(size, new UnsignedByteType(),
+						content);
+			}
+
+			// create a new Image with the same properties
+			output = image.factory().create(image, image.firstElement());
+		}
+	}
+
+	@Param({ "1", "2", "4", "8", "20" })
+	private String sigma;
+
+	@Param({ "RectangleShape", "DiamondShape", "DiamondTipsShape",
+			"HorizontalLineShape", "HyperSphereShape", "PeriodicLineShape" })
+	private String shapeType;
+
+	@Param({ "imglib2", "imglib2-primitive", "imglib2-primitive-padded",
+			"imglib2-decomposed", "imglib2-auto" })
+	private String library;
+
+	private Shape shape;
+
+	private AutoTunedFilter autoTuned;
+
+	/* reused, the auto tuned filter caches its plans by identity */
+	private OutOfBoundsFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>> outOfBounds;
+
+	/**
+	 * Setup the state of this benchmark.
+	 * 
+	 * @param imgState
+	 */
+	@Setup
+	public void setup(ImageState imgState) {
+		shape = Shapes.create(shapeType, Integer.parseInt(sigma),
+				imgState.image.numDimensions());
+
+		if ("imglib2-auto".equals(library)) {
+			try {
+				autoTuned = AutoTunedFilter.getCalibrated();
+			} catch (final IllegalStateException e) {
+				// calibrates once and saves the profile for later forks
+				System.err.println(e.getMessage()
+						+ ", calibrating in setup instead");
+				autoTuned = AutoTunedFilter.getDefault();
+			}
+			outOfBounds = new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+					Boundary.SINGLE);
+		}
+	}
+
+	/**
+	 * Minimum filter the image.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void minimumFilter(ImageState state) {
+		if ("imglib2".equals(library)) {
+			NeighborhoodReduction.reduce(
+					Views.extendMirrorSingle(state.image), state.output,
+					state.image, shape, new MinimumReducer<UnsignedByteType>(
+							new UnsignedByteType()));
+		} else if ("imglib2-primitive".equals(library)) {
+			PrimitiveMinimumFilter.minimum(state.image, state.output, shape,
+					new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+							Boundary.SINGLE));
+		} else if ("imglib2-primitive-padded".equals(library)) {
+			PrimitiveMinimumFilter.minimum(state.image, state.output, shape,
+					new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+							Boundary.SINGLE), BoundaryMode.PADDED);
+		} else if ("imglib2-decomposed".equals(library)) {
+			DecomposedMorphology.erode(state.image, state.output, shape,
+					new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+							Boundary.SINGLE), true);
+		} else if ("imglib2-auto".equals(library)) {
+			autoTuned.minimum(state.image, state.output, shape, outOfBounds);
+		}
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 * 
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(MinimumFilterShapesBenchmark2D.class
+				.getSimpleName());
+	}
+}
@@ -0,0 +1,129 @@
+
+package de.squareys.nhbench.minfilter;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.Prefs;
+import ij.plugin.Filters3D;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.img.ImagePlusAdapter;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.minfilter.MinimumFilterBenchmark.ImageState;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.neighborhood.ParallelNeighborhoodExecutor;
+
+/**
+ * Benchmark for the 3D minimum filter of the multi-threaded libraries with a
+ * varying number of threads. The single threaded libraries are in
+ * {@link MinimumFilterBenchmark}, so they are not repeated for every thread
+ * count.
+ *
+ * The libraries start their own threads, so the benchmark runs on a single
+ * JMH thread.
+ *
+ * @param sigma Size of the neighborhood
+ * @param library Library to perform the minimum filter with
+ * @param threads Number of threads the library may use
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(1)
+public class ParallelMinimumFilterBenchmark {
+
+	final static String IMAGEJ1 = MinimumFilterBenchmark.IMAGEJ1;
+	final static String IMGLIB2_PARALLEL = "imglib2-parallel";
+
+	@Param({ "1", "2", "4" })
+	private String sigma;
+	private int sigma_i;
+
+	@Param({ IMAGEJ1, IMGLIB2_PARALLEL })
+	private String library;
+
+	@Param({ "1", "2", "4", "8", "16", "32" })
+	private String threads;
+	private int threads_i;
+
+	private ParallelNeighborhoodExecutor executor;
+
+	/**
+	 * Setup the state of this benchmark.
+	 */
+	@Setup
+	public void setup() {
+		sigma_i = Integer.parseInt(sigma);
+		threads_i = Integer.parseInt(threads);
+
+		if (IMGLIB2_PARALLEL.equals(library)) {
+			executor = new ParallelNeighborhoodExecutor(threads_i);
+		}
+	}
+
+	/**
+	 * Release the threads of the executor.
+	 */
+	@TearDown
+	public void tearDown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Compute the minimum filter of the image with the given number of threads.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void minimumFilter(ImageState state) {
+		if (IMAGEJ1.equals(library)) { /* ImageJ1 */
+			Prefs.setThreads(threads_i);
+
+			final ImageStack is =
+				Filters3D.filter(state.im.getImageStack(), Filters3D.MIN, sigma_i,
+					sigma_i, sigma_i);
+
+			final ImagePlus ip = new ImagePlus("Minimum_sigma=" + sigma_i, is);
+			state.output = ImagePlusAdapter.wrap(ip);
+		}
+
+		if (IMGLIB2_PARALLEL.equals(library)) {
+			executor.run(state.image, state.output, new RectangleShape(sigma_i,
+				false),
+				new OutOfBoundsMirrorFactory<FloatType, RandomAccessibleInterval<FloatType>>(
+					Boundary.SINGLE), new MinimumReducer<FloatType>(new FloatType()));
+		}
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 *
+	 * @param args do nothing
+	 * @throws RunnerException thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(ParallelMinimumFilterBenchmark.class
+			.getSimpleName());
+	}
+}
@@ -0,0 +1,142 @@
+package de.squareys.nhbench.minfilter;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.ImageJ;
+import net.imagej.ops.Op;
+import net.imagej.ops.Ops;
+import net.imagej.ops.map.neighborhood.array.MapNeighborhoodNativeType;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.Boundaries;
+import de.squareys.nhbench.primitive.PrimitiveNeighborhoodMap;
+import de.squareys.nhbench.reduce.PrimitiveReducer;
+import de.squareys.nhbench.reduce.PrimitiveReducers;
+
+/**
+ * Benchmark for mapping neighborhoods with the statistics ops, which walk
+ * every neighborhood as an Iterable, against {@link PrimitiveReducer}s fed
+ * directly by {@link PrimitiveNeighborhoodMap}.
+ *
+ * @param reducer
+ *            statistic to compute, see {@link PrimitiveReducers#NAMES}
+ * @param library
+ *            "imagej-ops" runs {@link MapNeighborhoodNativeType} with the
+ *            matching Ops.Stats op, "imglib2-reducer" runs
+ *            {@link PrimitiveNeighborhoodMap}
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class PrimitiveReducerBenchmark {
+
+	final static ImageJ ij = new ImageJ();
+
+	@Param({ "1024x1024" })
+	private String size;
+
+	@Param({ "1", "2" })
+	private String sigma;
+	private int sigma_i;
+
+	@Param({ PrimitiveReducers.MIN, PrimitiveReducers.MAX,
+			PrimitiveReducers.SUM, PrimitiveReducers.MEAN,
+			PrimitiveReducers.VARIANCE, PrimitiveReducers.COUNT })
+	private String reducer;
+
+	@Param({ "imagej-ops", "imglib2-reducer" })
+	private String library;
+
+	private Img<FloatType> image;
+	private Img<FloatType> output;
+
+	private PrimitiveReducer primitiveReducer;
+	private Op op;
+
+	/**
+	 * Setup the state of this benchmark.
+	 */
+	@Setup
+	public void setup() {
+		sigma_i = Integer.parseInt(sigma);
+
+		image = BenchmarkInput.create(size, new FloatType(), "noise");
+		output = image.factory().create(image, new FloatType());
+
+		primitiveReducer = PrimitiveReducers.create(reducer);
+
+		if ("imagej-ops".equals(library)) {
+			op = ij.op().op(
+					MapNeighborhoodNativeType.class,
+					output,
+					image,
+					ij.op().op(statsOp(reducer), output.firstElement(),
+							Iterable.class), sigma_i);
+		}
+	}
+
+	/**
+	 * Map all neighborhoods of the image.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void mapNeighborhoods() {
+		if ("imagej-ops".equals(library)) {
+			op.run();
+		} else if ("imglib2-reducer".equals(library)) {
+			PrimitiveNeighborhoodMap.map(image, output, new RectangleShape(
+					sigma_i, false), Boundaries.factory(
+					Boundaries.MIRROR_SINGLE, new FloatType()),
+					primitiveReducer);
+		}
+	}
+
+	private static Class<? extends Op> statsOp(final String name) {
+		if (PrimitiveReducers.MIN.equals(name)) {
+			return Ops.Stats.Min.class;
+		}
+		if (PrimitiveReducers.MAX.equals(name)) {
+			return Ops.Stats.Max.class;
+		}
+		if (PrimitiveReducers.SUM.equals(name)) {
+			return Ops.Stats.Sum.class;
+		}
+		if (PrimitiveReducers.MEAN.equals(name)) {
+			return Ops.Stats.Mean.class;
+		}
+		if (PrimitiveReducers.VARIANCE.equals(name)) {
+			return Ops.Stats.Variance.class;
+		}
+		return Ops.Stats.Size.class;
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 *
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(PrimitiveReducerBenchmark.class
+				.getSimpleName());
+	}
+}
@@ -0,0 +1,165 @@
+package de.squareys.nhbench.minfilter;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+import de.squareys.nhbench.neighborhood.RankReducer;
+import de.squareys.nhbench.rank.RankFilter;
+import ij.ImagePlus;
+import ij.plugin.filter.RankFilters;
+import ij.process.ImageProcessor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.Dataset;
+import net.imagej.ImageJ;
+import net.imagej.ops.Op;
+import net.imagej.ops.Ops;
+import net.imagej.ops.map.neighborhood.array.MapNeighborhoodNativeType;
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.display.imagej.ImageJFunctions;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Benchmark for median filtering a 2D {@link UnsignedByteType} image.
+ * 
+ * @param sigma
+ *            Radius of the neighborhood
+ * @param library
+ *            Library to perform the median filter with. Note that ImageJ1 uses
+ *            a circular kernel.
+ * 
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class RankFilterBenchmark2D {
+	final static ImageJ ij = new ImageJ();
+
+	/**
+	 * State which holds the input and output images.
+	 * 
+	 * @author Jonathan Hale (University of Konstanz)
+	 */
+	@State(Scope.Benchmark)
+	public static class ImageState {
+		public static String fileName = "./lena_grey.jpeg";
+
+		public Img<UnsignedByteType> image;
+		public ImagePlus im;
+
+		public Img<UnsignedByteType> output;
+
+		/* Size of a synthetic input image or "file" for the input file */
+		@Param({ BenchmarkInput.FILE, "256x256", "1024x1024", "2048x2048" })
+		public String size;
+
+		/* Content of the synthetic input image */
+		@Param({ "noise" })
+		public String content;
+
+		@Setup
+		public void setup() throws IOException {
+			if (BenchmarkInput.isFile(size)) {
+				// open the image file
+				Dataset ds = (Dataset) ij.io().open(fileName);
+				Img<UnsignedByteType> planarin = (Img<UnsignedByteType>) ds
+						.getImgPlus().getImg();
+				image = new ArrayImgFactory<UnsignedByteType>().create(planarin,
+						planarin.firstElement());
+
+				Cursor<UnsignedByteType> c1 = planarin.cursor();
+				Cursor<UnsignedByteType> c2 = image.cursor();
+
+				while (c1.hasNext()) {
+					c2.next().set(c1.next());
+				}
+			} else {
+				image = BenchmarkInput.create(size, new UnsignedByteType(),
+						content);
+			}
+
+			// create a new Image with the same properties
+			output = image.factory().create(image, image.firstElement());
+
+			im = ImageJFunctions.wrap(image, "input");
+		}
+	}
+
+	@Param({ "1", "2", "4", "8", "16" })
+	private String sigma;
+	private int sigma_i;
+
+	@Param({ "imagej-ops", "imagej", "imglib2", "perreault-hebert" })
+	private String library;
+
+	/**
+	 * Setup the state of this benchmark.
+	 * 
+	 * @param imgState
+	 */
+	@Setup
+	public void setup(ImageState imgState) {
+		sigma_i = Integer.parseInt(sigma);
+	}
+
+	/**
+	 * Median filter the image.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void medianFilter(ImageState state) {
+		if ("imglib2".equals(library)) {
+			NeighborhoodReduction.reduce(
+					Views.extendMirrorSingle(state.image), state.output,
+					state.image, new RectangleShape(sigma_i, false),
+					new RankReducer<UnsignedByteType>(0.5));
+		} else if ("imagej".equals(library)) { /* ImageJ1 */
+			final ImageProcessor ip = state.im.getProcessor().duplicate();
+			new RankFilters().rank(ip, sigma_i, RankFilters.MEDIAN);
+		} else if ("perreault-hebert".equals(library)) {
+			RankFilter.median(state.image, state.output, new RectangleShape(
+					sigma_i, false));
+		} else if ("imagej-ops".equals(library)) {
+			final Op op = ij.op().op(
+					MapNeighborhoodNativeType.class,
+					state.output,
+					state.image,
+					ij.op().op(Ops.Stats.Median.class,
+							state.output.firstElement(), Iterable.class),
+					sigma_i);
+
+			op.run();
+		}
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 * 
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(RankFilterBenchmark2D.class
+				.getSimpleName());
+	}
+}
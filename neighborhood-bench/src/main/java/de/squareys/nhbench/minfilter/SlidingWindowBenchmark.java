@@ -0,0 +1,110 @@
+package de.squareys.nhbench.minfilter;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.Boundaries;
+import de.squareys.nhbench.primitive.PrimitiveNeighborhoodMap;
+import de.squareys.nhbench.reduce.PrimitiveReducer;
+import de.squareys.nhbench.reduce.PrimitiveReducers;
+import de.squareys.nhbench.sliding.InvertibleReducer;
+import de.squareys.nhbench.sliding.InvertibleReducers;
+import de.squareys.nhbench.sliding.SlidingWindowFilter;
+
+/**
+ * Benchmark for box mean and local variance, reading the full window for
+ * every pixel against sliding the window with {@link SlidingWindowFilter}.
+ *
+ * @param reducer
+ *            (mean/variance) statistic to compute
+ * @param library
+ *            "imglib2-reducer" runs {@link PrimitiveNeighborhoodMap},
+ *            "sliding-window" runs {@link SlidingWindowFilter}
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class SlidingWindowBenchmark {
+
+	@Param({ "1024x1024" })
+	private String size;
+
+	@Param({ "1", "4", "16" })
+	private String sigma;
+
+	@Param({ PrimitiveReducers.MEAN, PrimitiveReducers.VARIANCE })
+	private String reducer;
+
+	@Param({ "imglib2-reducer", "sliding-window" })
+	private String library;
+
+	private Img<FloatType> image;
+	private Img<FloatType> output;
+	private Shape shape;
+
+	private PrimitiveReducer primitiveReducer;
+	private InvertibleReducer invertibleReducer;
+
+	/**
+	 * Setup the state of this benchmark.
+	 */
+	@Setup
+	public void setup() {
+		image = BenchmarkInput.create(size, new FloatType(), "noise");
+		output = image.factory().create(image, new FloatType());
+		shape = new RectangleShape(Integer.parseInt(sigma), false);
+
+		primitiveReducer = PrimitiveReducers.create(reducer);
+		invertibleReducer = PrimitiveReducers.MEAN.equals(reducer) ? InvertibleReducers
+				.mean() : InvertibleReducers.variance();
+	}
+
+	/**
+	 * Filter the image.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void boxFilter() {
+		if ("imglib2-reducer".equals(library)) {
+			PrimitiveNeighborhoodMap.map(image, output, shape, Boundaries
+					.factory(Boundaries.MIRROR_SINGLE, new FloatType()),
+					primitiveReducer);
+		} else if ("sliding-window".equals(library)) {
+			SlidingWindowFilter.filter(image, output, shape, Boundaries
+					.factory(Boundaries.MIRROR_SINGLE, new FloatType()),
+					invertibleReducer);
+		}
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 *
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(SlidingWindowBenchmark.class
+				.getSimpleName());
+	}
+}
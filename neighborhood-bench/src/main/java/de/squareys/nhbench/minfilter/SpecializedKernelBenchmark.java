@@ -0,0 +1,150 @@
+package de.squareys.nhbench.minfilter;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.kernels.SpecializedKernels;
+import de.squareys.nhbench.main.NeighborhoodBenchmarks;
+import de.squareys.nhbench.neighborhood.Boundaries;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+import de.squareys.nhbench.neighborhood.Shapes;
+import de.squareys.nhbench.plan.FilterPlan;
+import de.squareys.nhbench.plan.FilterPlan.Operation;
+
+/**
+ * Benchmark for the generated kernels of {@link SpecializedKernels} against
+ * the flyweight neighborhood path and the compiled offset loops.
+ *
+ * @param shape
+ *            name of the shape, see {@link Shapes}; rectangles get sliding
+ *            column kernels, diamonds and spheres unrolled offsets
+ * @param library
+ *            "imglib2" iterates the flyweight neighborhoods of the shape,
+ *            "plan-offsets" executes a {@link FilterPlan} with the compiled
+ *            offset loops, "plan-specialized" executes a {@link FilterPlan}
+ *            with a generated kernel
+ * @param pixelType
+ *            (uint8/float32) type of the image
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+@State(Scope.Thread)
+@Threads(NeighborhoodBenchmarks.DEFAULT_THREADS)
+public class SpecializedKernelBenchmark {
+
+	@Param({ "1024x1024" })
+	private String size;
+
+	@Param({ "uint8", "float32" })
+	private String pixelType;
+
+	@Param({ "RectangleShape", "DiamondShape", "HyperSphereShape" })
+	private String shape;
+
+	@Param({ "1", "2", "3", "4" })
+	private String sigma;
+
+	@Param({ "imglib2", "plan-offsets", "plan-specialized" })
+	private String library;
+
+	private Filter<?> filter;
+
+	/**
+	 * Setup the state of this benchmark.
+	 */
+	@Setup
+	public void setup() {
+		final int sigma_i = Integer.parseInt(sigma);
+		final boolean specialize = "plan-specialized".equals(library);
+
+		if ("float32".equals(pixelType)) {
+			filter = new Filter<FloatType>(size, new FloatType(), shape,
+					sigma_i, specialize);
+		} else {
+			filter = new Filter<UnsignedByteType>(size,
+					new UnsignedByteType(), shape, sigma_i, specialize);
+		}
+	}
+
+	/**
+	 * Minimum filter the image.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void minimumFilter() {
+		if ("imglib2".equals(library)) {
+			filter.flyweight();
+		} else {
+			filter.plan();
+		}
+	}
+
+	/**
+	 * Image, output and prepared plan of one pixel type.
+	 */
+	private static class Filter<T extends RealType<T> & NativeType<T>> {
+
+		private final Img<T> image;
+		private final Img<T> output;
+		private final Shape shape;
+		private final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds;
+		private final MinimumReducer<T> reducer;
+		private final FilterPlan<T> plan;
+
+		public Filter(final String size, final T type, final String shapeName,
+				final int sigma, final boolean specialize) {
+			image = BenchmarkInput.create(size, type, "noise");
+			output = image.factory().create(image, type);
+			this.shape = Shapes.create(shapeName, sigma, 2);
+			outOfBounds = Boundaries.factory(Boundaries.MIRROR_SINGLE, type);
+			reducer = new MinimumReducer<T>(type);
+			plan = new FilterPlan<T>(this.shape, type, image, outOfBounds,
+					Operation.MIN, specialize);
+		}
+
+		public void flyweight() {
+			NeighborhoodReduction.reduce(Views.extend(image, outOfBounds),
+					output, image, shape, reducer);
+		}
+
+		public void plan() {
+			plan.execute(image, output);
+		}
+	}
+
+	/**
+	 * Run this benchmark separately.
+	 *
+	 * @param args
+	 *            do nothing
+	 * @throws RunnerException
+	 *             thrown when jmh runs into trouble
+	 */
+	public static void main(String[] args) throws RunnerException {
+		NeighborhoodBenchmarks.runBenchmark(SpecializedKernelBenchmark.class
+				.getSimpleName());
+	}
+}
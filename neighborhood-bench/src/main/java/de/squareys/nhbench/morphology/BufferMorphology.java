@@ -0,0 +1,213 @@
+package de.squareys.nhbench.morphology;
+
+/**
+ * Erosion and dilation steps on a flat, n-dimensional double[] buffer.
+ *
+ * Values outside of the buffer are ignored, i.e. treated as +infinity for
+ * erosions and -infinity for dilations. Callers pad the buffer by the extent
+ * of all steps they run, so that the pixels of interest are never affected.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class BufferMorphology {
+
+	private final int[] dims;
+	private final int[] strides;
+	private final int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dims
+	 *            dimensions of the buffer, dimension 0 varies fastest
+	 */
+	public BufferMorphology(final int[] dims) {
+		this.dims = dims.clone();
+		this.strides = new int[dims.length];
+
+		long s = 1;
+		for (int d = 0; d < dims.length; ++d) {
+			strides[d] = (int) s;
+			s *= dims[d];
+		}
+		if (s > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Buffer is too large");
+		}
+		this.size = (int) s;
+	}
+
+	/**
+	 * @return the number of elements of the buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Erode or dilate the buffer in place with the line
+	 * <code>{i * step : lo <= i <= hi}</code>, in constant time per pixel.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param step
+	 *            direction of the line
+	 * @param lo
+	 *            first multiple of step
+	 * @param hi
+	 *            last multiple of step
+	 * @param max
+	 *            dilation instead of erosion
+	 */
+	public void line(final double[] buffer, final long[] step, final int lo,
+			final int hi, final boolean max) {
+		final int n = dims.length;
+		final int window = hi - lo + 1;
+
+		boolean zero = true;
+		for (int d = 0; d < n; ++d) {
+			zero &= step[d] == 0;
+		}
+		if (zero || window < 1) {
+			throw new IllegalArgumentException("Invalid line");
+		}
+
+		int indexStep = 0;
+		for (int d = 0; d < n; ++d) {
+			indexStep += (int) step[d] * strides[d];
+		}
+
+		final double outside = max ? Double.NEGATIVE_INFINITY
+				: Double.POSITIVE_INFINITY;
+		final VanHerkGilWerman vhgw = new VanHerkGilWerman(window);
+
+		int maxLength = 1;
+		for (int d = 0; d < n; ++d) {
+			maxLength = Math.max(maxLength, dims[d]);
+		}
+		final double[] line = new double[maxLength];
+		final double[] in = new double[maxLength + window - 1];
+		final double[] out = new double[maxLength];
+
+		final int[] position = new int[n];
+		final int[] walk = new int[n];
+
+		for (int start = 0; start < size; ++start) {
+			// lines start at the pixels whose predecessor is outside
+			if (!isLineStart(position, step)) {
+				advance(position);
+				continue;
+			}
+
+			// collect the line
+			System.arraycopy(position, 0, walk, 0, n);
+			int length = 0;
+			int index = start;
+			while (inside(walk)) {
+				line[length++] = buffer[index];
+				index += indexStep;
+				for (int d = 0; d < n; ++d) {
+					walk[d] += step[d];
+				}
+			}
+
+			// pad the line, in[j] is element j + lo of the line
+			for (int j = 0; j < length + window - 1; ++j) {
+				final int i = j + lo;
+				in[j] = (i >= 0 && i < length) ? line[i] : outside;
+			}
+
+			if (max) {
+				vhgw.max(in, out, length);
+			} else {
+				vhgw.min(in, out, length);
+			}
+
+			index = start;
+			for (int i = 0; i < length; ++i) {
+				buffer[index] = out[i];
+				index += indexStep;
+			}
+
+			advance(position);
+		}
+	}
+
+	/**
+	 * Erode or dilate the buffer with an explicit set of offsets. Pixels with
+	 * neighbors outside of the buffer only consider the ones inside.
+	 *
+	 * @param buffer
+	 *            the buffer, overwritten with the result
+	 * @param scratch
+	 *            scratch buffer of the same size
+	 * @param offsets
+	 *            the offsets
+	 * @param max
+	 *            dilation instead of erosion
+	 */
+	public void offsets(final double[] buffer, final double[] scratch,
+			final long[][] offsets, final boolean max) {
+		final int n = dims.length;
+		final int[] linear = new int[offsets.length];
+		for (int i = 0; i < offsets.length; ++i) {
+			for (int d = 0; d < n; ++d) {
+				linear[i] += (int) offsets[i][d] * strides[d];
+			}
+		}
+
+		final int[] position = new int[n];
+		final int[] neighbor = new int[n];
+
+		for (int index = 0; index < size; ++index) {
+			double acc = max ? Double.NEGATIVE_INFINITY
+					: Double.POSITIVE_INFINITY;
+
+			for (int i = 0; i < offsets.length; ++i) {
+				for (int d = 0; d < n; ++d) {
+					neighbor[d] = position[d] + (int) offsets[i][d];
+				}
+				if (!inside(neighbor)) {
+					continue;
+				}
+
+				final double v = buffer[index + linear[i]];
+				if (max ? v > acc : v < acc) {
+					acc = v;
+				}
+			}
+
+			scratch[index] = acc;
+			advance(position);
+		}
+
+		System.arraycopy(scratch, 0, buffer, 0, size);
+	}
+
+	private boolean isLineStart(final int[] position, final long[] step) {
+		for (int d = 0; d < dims.length; ++d) {
+			final long p = position[d] - step[d];
+			if (p < 0 || p >= dims[d]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean inside(final int[] position) {
+		for (int d = 0; d < dims.length; ++d) {
+			if (position[d] < 0 || position[d] >= dims[d]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void advance(final int[] position) {
+		for (int d = 0; d < dims.length; ++d) {
+			if (++position[d] < dims[d]) {
+				return;
+			}
+			position[d] = 0;
+		}
+	}
+}
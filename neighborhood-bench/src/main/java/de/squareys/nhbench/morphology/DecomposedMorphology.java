@@ -0,0 +1,150 @@
+package de.squareys.nhbench.morphology;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.morphology.Decomposition.Component;
+import de.squareys.nhbench.morphology.Decomposition.Line;
+import de.squareys.nhbench.morphology.Decomposition.Offsets;
+
+/**
+ * Erosion and dilation with arbitrary shapes via a {@link Decomposition} of
+ * their structuring element into lines and small offset sets.
+ *
+ * The source is copied once into a double buffer which is padded by the
+ * extent of the structuring element and filled through the
+ * {@link OutOfBoundsFactory}. The components are then applied one after
+ * another on the buffer with {@link BufferMorphology}. Since the padding
+ * covers the complete Minkowski sum, the result within the image is exactly
+ * the erosion of the extended source, whatever the boundary.
+ *
+ * A 2D diamond of radius 20 costs two line passes and two elementary diamonds,
+ * about 16 comparisons per pixel instead of 841.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class DecomposedMorphology {
+
+	private DecomposedMorphology() {
+		// utility class
+	}
+
+	/**
+	 * Minimum filter.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param approximateSpheres
+	 *            approximate 2D hyper spheres by octagons
+	 */
+	public static <T extends RealType<T>> void erode(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final boolean approximateSpheres) {
+		filter(source, target, Decomposition.decompose(shape,
+				source.numDimensions(), approximateSpheres), outOfBounds,
+				false);
+	}
+
+	/**
+	 * Maximum filter.
+	 *
+	 * @see #erode(RandomAccessibleInterval, RandomAccessibleInterval, Shape,
+	 *      OutOfBoundsFactory, boolean)
+	 */
+	public static <T extends RealType<T>> void dilate(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final boolean approximateSpheres) {
+		filter(source, target, Decomposition.decompose(shape,
+				source.numDimensions(), approximateSpheres), outOfBounds, true);
+	}
+
+	/**
+	 * Minimum or maximum filter with a decomposed structuring element.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source
+	 * @param decomposition
+	 *            the decomposed structuring element
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param max
+	 *            maximum instead of minimum
+	 */
+	public static <T extends RealType<T>> void filter(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target,
+			final Decomposition decomposition,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final boolean max) {
+		final int n = source.numDimensions();
+		final Interval box = decomposition.boundingBox();
+
+		// pad symmetrically, components may be applied in any direction
+		final long[] min = new long[n];
+		final long[] maxPos = new long[n];
+		final int[] dims = new int[n];
+		final long[] pad = new long[n];
+		for (int d = 0; d < n; ++d) {
+			pad[d] = Math.max(-box.min(d), box.max(d));
+			min[d] = source.min(d) - pad[d];
+			maxPos[d] = source.max(d) + pad[d];
+			dims[d] = (int) (maxPos[d] - min[d] + 1);
+		}
+		final Interval padded = new FinalInterval(min, maxPos);
+
+		final BufferMorphology morphology = new BufferMorphology(dims);
+		final double[] buffer = new double[morphology.size()];
+
+		int i = 0;
+		for (final T t : Views.flatIterable(Views.interval(
+				Views.extend(source, outOfBounds), padded))) {
+			buffer[i++] = t.getRealDouble();
+		}
+
+		double[] scratch = null;
+		for (final Component c : decomposition.getComponents()) {
+			if (c instanceof Line) {
+				final Line line = (Line) c;
+				morphology.line(buffer, line.getStep(), line.getLo(),
+						line.getHi(), max);
+			} else {
+				if (scratch == null) {
+					scratch = new double[buffer.length];
+				}
+				morphology.offsets(buffer, scratch,
+						((Offsets) c).getOffsets(), max);
+			}
+		}
+
+		// copy the center back
+		final Cursor<T> cursor = Views.flatIterable(target).localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+
+			long index = 0;
+			long stride = 1;
+			for (int d = 0; d < n; ++d) {
+				index += (cursor.getLongPosition(d) - min[d]) * stride;
+				stride *= dims[d];
+			}
+			cursor.get().setReal(buffer[(int) index]);
+		}
+	}
+}
@@ -0,0 +1,374 @@
+package de.squareys.nhbench.morphology;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.algorithm.neighborhood.HyperSphereShape;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.algorithm.neighborhood.PeriodicLineShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.type.logic.BitType;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+
+/**
+ * Decomposition of a structuring element into a Minkowski sum of cheaper
+ * components, so that an erosion with the structuring element becomes a
+ * sequence of erosions with the components.
+ *
+ * Components are either lines, which can be eroded in constant time per
+ * pixel with {@link VanHerkGilWerman}, or small explicit sets of offsets.
+ *
+ * <ul>
+ * <li>Hyper rectangles and lines, including {@link PeriodicLineShape}, become
+ * one line per direction.</li>
+ * <li>2D {@link DiamondShape}s of radius r become a diagonal and an
+ * anti-diagonal line of r/2 steps each, plus one or two elementary diamonds of
+ * radius 1. In other dimensionalities, the elementary diamond is repeated r
+ * times.</li>
+ * <li>2D {@link HyperSphereShape}s are optionally approximated by a regular
+ * octagon, the sum of a horizontal, vertical, diagonal and anti-diagonal line.
+ * </li>
+ * <li>Everything else is a single component with all offsets of the shape.
+ * </li>
+ * </ul>
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class Decomposition {
+
+	/**
+	 * Component of a decomposition.
+	 */
+	public static abstract class Component {
+
+		/**
+		 * @return the bounding box of this component relative to the center
+		 */
+		public abstract Interval boundingBox();
+	}
+
+	/**
+	 * Line component: the offsets <code>i * step</code> for i in [lo, hi].
+	 */
+	public static class Line extends Component {
+
+		private final long[] step;
+		private final int lo;
+		private final int hi;
+
+		public Line(final long[] step, final int lo, final int hi) {
+			this.step = step.clone();
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		public long[] getStep() {
+			return step;
+		}
+
+		public int getLo() {
+			return lo;
+		}
+
+		public int getHi() {
+			return hi;
+		}
+
+		@Override
+		public Interval boundingBox() {
+			final int n = step.length;
+			final long[] min = new long[n];
+			final long[] max = new long[n];
+			for (int d = 0; d < n; ++d) {
+				min[d] = Math.min(lo * step[d], hi * step[d]);
+				max[d] = Math.max(lo * step[d], hi * step[d]);
+			}
+			return new FinalInterval(min, max);
+		}
+	}
+
+	/**
+	 * Explicit component: an arbitrary set of offsets.
+	 */
+	public static class Offsets extends Component {
+
+		private final long[][] offsets;
+
+		public Offsets(final long[][] offsets) {
+			this.offsets = offsets;
+		}
+
+		public long[][] getOffsets() {
+			return offsets;
+		}
+
+		@Override
+		public Interval boundingBox() {
+			final int n = offsets[0].length;
+			final long[] min = new long[n];
+			final long[] max = new long[n];
+			for (final long[] o : offsets) {
+				for (int d = 0; d < n; ++d) {
+					min[d] = Math.min(min[d], o[d]);
+					max[d] = Math.max(max[d], o[d]);
+				}
+			}
+			return new FinalInterval(min, max);
+		}
+	}
+
+	private final int numDimensions;
+	private final List<Component> components;
+
+	private Decomposition(final int numDimensions,
+			final List<Component> components) {
+		this.numDimensions = numDimensions;
+		this.components = Collections.unmodifiableList(components);
+	}
+
+	/**
+	 * @return the components, their Minkowski sum is the structuring element
+	 */
+	public List<Component> getComponents() {
+		return components;
+	}
+
+	/**
+	 * @return the bounding box of the Minkowski sum of all components
+	 */
+	public Interval boundingBox() {
+		final long[] min = new long[numDimensions];
+		final long[] max = new long[numDimensions];
+
+		for (final Component c : components) {
+			final Interval box = c.boundingBox();
+			for (int d = 0; d < numDimensions; ++d) {
+				min[d] += box.min(d);
+				max[d] += box.max(d);
+			}
+		}
+
+		return new FinalInterval(min, max);
+	}
+
+	/**
+	 * @return number of comparisons per pixel needed for a van Herk/Gil-Werman
+	 *         erosion with this decomposition, roughly
+	 */
+	public int cost() {
+		int cost = 0;
+		for (final Component c : components) {
+			if (c instanceof Line) {
+				cost += 3;
+			} else {
+				cost += ((Offsets) c).getOffsets().length;
+			}
+		}
+		return cost;
+	}
+
+	/**
+	 * Decompose the structuring element of a shape.
+	 *
+	 * @param shape
+	 *            the shape
+	 * @param numDimensions
+	 *            dimensionality of the images the shape will be used on
+	 * @param approximateSpheres
+	 *            whether to approximate 2D {@link HyperSphereShape}s by an
+	 *            octagon, otherwise they are used exactly as one component
+	 * @return the decomposition
+	 */
+	public static Decomposition decompose(final Shape shape,
+			final int numDimensions, final boolean approximateSpheres) {
+		final int n = numDimensions;
+		final List<Component> components = new ArrayList<Component>();
+		final long[][] offsets = offsets(shape, n);
+
+		if (StructuringElements.isBox(shape, n)) {
+			final Interval box = StructuringElements.boundingBox(shape, n);
+			for (int d = 0; d < n; ++d) {
+				if (box.dimension(d) > 1 || box.min(d) != 0) {
+					components.add(new Line(unit(n, d), (int) box.min(d),
+							(int) box.max(d)));
+				}
+			}
+		} else if (asLine(offsets) != null) {
+			components.add(asLine(offsets));
+		} else if (shape instanceof DiamondShape) {
+			final int r = (int) StructuringElements.boundingBox(shape, n)
+					.max(0);
+			decomposeDiamond(r, n, components);
+		} else if (shape instanceof HyperSphereShape && n == 2
+				&& approximateSpheres) {
+			final int r = (int) StructuringElements.boundingBox(shape, n)
+					.max(0);
+			decomposeDisk(r, components);
+		} else {
+			components.add(new Offsets(offsets));
+		}
+
+		return new Decomposition(n, components);
+	}
+
+	private static void decomposeDiamond(final int r, final int n,
+			final List<Component> components) {
+		final long[][] elementary = elementaryDiamond(n);
+
+		if (n != 2 || r < 3) {
+			for (int i = 0; i < r; ++i) {
+				components.add(new Offsets(elementary));
+			}
+			return;
+		}
+
+		/*
+		 * The sum of the diagonal and anti-diagonal lines with h steps in both
+		 * directions covers all points with even x + y within radius 2h. Adding
+		 * one elementary diamond fills the odd points and reaches radius 2h + 1,
+		 * adding two reaches radius 2h + 2.
+		 */
+		final int h = (r - 1) / 2;
+		components.add(new Line(new long[] { 1, 1 }, -h, h));
+		components.add(new Line(new long[] { 1, -1 }, -h, h));
+		for (int i = 2 * h; i < r; ++i) {
+			components.add(new Offsets(elementary));
+		}
+	}
+
+	private static void decomposeDisk(final int r,
+			final List<Component> components) {
+		/*
+		 * Regular octagon: the extent along the axes is a + 2b, along the
+		 * diagonals sqrt(2) * (a + b). Both should be r.
+		 */
+		final int b = (int) Math.round(r * (1.0 - Math.sqrt(0.5)));
+		final int a = r - 2 * b;
+
+		if (a > 0) {
+			components.add(new Line(new long[] { 1, 0 }, -a, a));
+			components.add(new Line(new long[] { 0, 1 }, -a, a));
+		}
+		if (b > 0) {
+			components.add(new Line(new long[] { 1, 1 }, -b, b));
+			components.add(new Line(new long[] { 1, -1 }, -b, b));
+		}
+	}
+
+	/**
+	 * @return the elementary diamond of radius 1: center and its 2n direct
+	 *         neighbors
+	 */
+	private static long[][] elementaryDiamond(final int n) {
+		final long[][] offsets = new long[2 * n + 1][n];
+		for (int d = 0; d < n; ++d) {
+			offsets[2 * d + 1][d] = -1;
+			offsets[2 * d + 2][d] = 1;
+		}
+		return offsets;
+	}
+
+	/**
+	 * @return the offsets as a line component, or null if they do not form a
+	 *         contiguous, evenly spaced line
+	 */
+	static Line asLine(final long[][] offsets) {
+		final int n = offsets[0].length;
+
+		// the increment is the shortest non-zero offset, made canonical
+		long[] step = null;
+		long stepNorm = Long.MAX_VALUE;
+		for (final long[] o : offsets) {
+			long norm = 0;
+			for (int d = 0; d < n; ++d) {
+				norm += Math.abs(o[d]);
+			}
+			if (norm != 0 && norm < stepNorm) {
+				stepNorm = norm;
+				step = o.clone();
+			}
+		}
+
+		if (step == null) {
+			// only the center
+			return null;
+		}
+
+		for (int d = 0; d < n; ++d) {
+			if (step[d] != 0) {
+				if (step[d] < 0) {
+					for (int i = 0; i < n; ++i) {
+						step[i] = -step[i];
+					}
+				}
+				break;
+			}
+		}
+
+		// every offset must be an integer multiple of step
+		int lo = Integer.MAX_VALUE;
+		int hi = Integer.MIN_VALUE;
+		final boolean[] seen = new boolean[2 * offsets.length + 1];
+		for (final long[] o : offsets) {
+			long k = Long.MIN_VALUE;
+			for (int d = 0; d < n; ++d) {
+				if (step[d] == 0) {
+					if (o[d] != 0) {
+						return null;
+					}
+				} else {
+					if (o[d] % step[d] != 0) {
+						return null;
+					}
+					final long kd = o[d] / step[d];
+					if (k != Long.MIN_VALUE && kd != k) {
+						return null;
+					}
+					k = kd;
+				}
+			}
+
+			if (Math.abs(k) > offsets.length) {
+				return null;
+			}
+			seen[(int) k + offsets.length] = true;
+			lo = Math.min(lo, (int) k);
+			hi = Math.max(hi, (int) k);
+		}
+
+		// no gaps
+		for (int k = lo; k <= hi; ++k) {
+			if (!seen[k + offsets.length]) {
+				return null;
+			}
+		}
+
+		return new Line(step, lo, hi);
+	}
+
+	private static long[][] offsets(final Shape shape, final int n) {
+		final Neighborhood<BitType> neighborhood = StructuringElements.probe(
+				shape, n);
+		final long[][] offsets = new long[(int) neighborhood.size()][n];
+
+		final Cursor<BitType> c = neighborhood.localizingCursor();
+		int i = 0;
+		while (c.hasNext()) {
+			c.fwd();
+			c.localize(offsets[i++]);
+		}
+
+		return offsets;
+	}
+
+	private static long[] unit(final int n, final int d) {
+		final long[] unit = new long[n];
+		unit[d] = 1;
+		return unit;
+	}
+}
@@ -0,0 +1,140 @@
+package de.squareys.nhbench.morphology;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+import de.squareys.nhbench.primitive.PrimitiveMinimumFilter;
+
+/**
+ * Separable erosion and dilation for rectangular shapes using the row kernels
+ * of {@link RowKernels}, with a mirror single boundary.
+ *
+ * The row kernels are used for {@link ArrayImg}s of {@link FloatType} and
+ * {@link UnsignedByteType} and windows containing the center pixel. In all
+ * other cases, this falls back to the generic {@link SeparableMorphology},
+ * which produces the same result.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class RowMorphology {
+
+	private RowMorphology() {
+		// utility class
+	}
+
+	/**
+	 * Minimum filter.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same dimensions as source
+	 * @param shape
+	 *            rectangular shape, e.g. {@link RectangleShape}
+	 */
+	public static <T extends RealType<T>> void erode(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape) {
+		filter(source, target, shape, false);
+	}
+
+	/**
+	 * Maximum filter.
+	 *
+	 * @see #erode(RandomAccessibleInterval, RandomAccessibleInterval, Shape)
+	 */
+	public static <T extends RealType<T>> void dilate(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape) {
+		filter(source, target, shape, true);
+	}
+
+	/**
+	 * @return whether the row kernels can be used for source and target
+	 */
+	public static boolean isSupported(final RandomAccessibleInterval<?> source,
+			final RandomAccessibleInterval<?> target) {
+		if (source == target) {
+			return false;
+		}
+		final boolean isFloat = PrimitiveMinimumFilter.isFloatArrayImg(source)
+				&& PrimitiveMinimumFilter.isFloatArrayImg(target);
+		final boolean isByte = PrimitiveMinimumFilter
+				.isUnsignedByteArrayImg(source)
+				&& PrimitiveMinimumFilter.isUnsignedByteArrayImg(target);
+
+		return (isFloat || isByte) && sameDimensions(source, target);
+	}
+
+	private static <T extends RealType<T>> void filter(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final boolean max) {
+		final int n = source.numDimensions();
+
+		if (!StructuringElements.isBox(shape, n)) {
+			throw new IllegalArgumentException(
+					"Shape is not a hyper rectangle: " + shape);
+		}
+
+		final Interval box = StructuringElements.boundingBox(shape, n);
+		if (!isSupported(source, target) || !containsCenter(box)) {
+			if (max) {
+				SeparableMorphology.dilate(source, target, shape);
+			} else {
+				SeparableMorphology.erode(source, target, shape);
+			}
+			return;
+		}
+
+		final int[] dims = new int[n];
+		final int[] boxMin = new int[n];
+		final int[] boxMax = new int[n];
+		for (int d = 0; d < n; ++d) {
+			dims[d] = (int) source.dimension(d);
+			boxMin[d] = (int) box.min(d);
+			boxMax[d] = (int) box.max(d);
+		}
+
+		final Object in = ((ArrayImg<?, ?>) source).update(null);
+		final Object out = ((ArrayImg<?, ?>) target).update(null);
+		if (in instanceof FloatArray) {
+			RowKernels.filter(((FloatArray) in).getCurrentStorageArray(),
+					((FloatArray) out).getCurrentStorageArray(), dims, boxMin,
+					boxMax, max);
+		} else {
+			RowKernels.filter(((ByteArray) in).getCurrentStorageArray(),
+					((ByteArray) out).getCurrentStorageArray(), dims, boxMin,
+					boxMax, max);
+		}
+	}
+
+	private static boolean containsCenter(final Interval box) {
+		for (int d = 0; d < box.numDimensions(); ++d) {
+			if (box.min(d) > 0 || box.max(d) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean sameDimensions(final Interval a, final Interval b) {
+		if (a.numDimensions() != b.numDimensions()) {
+			return false;
+		}
+		for (int d = 0; d < a.numDimensions(); ++d) {
+			if (a.dimension(d) != b.dimension(d)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
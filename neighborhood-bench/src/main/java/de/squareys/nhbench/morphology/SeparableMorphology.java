@@ -0,0 +1,245 @@
+package de.squareys.nhbench.morphology;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.CenteredRectangleShape;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+
+/**
+ * Separable, n-dimensional erosion (minimum filter) and dilation (maximum
+ * filter) for rectangular structuring elements like {@link RectangleShape} and
+ * {@link CenteredRectangleShape}.
+ *
+ * The rectangle is decomposed into one line per dimension. Every line is
+ * filtered with {@link VanHerkGilWerman}, which makes the cost per pixel
+ * O(d), independent of the radius.
+ *
+ * Out of bounds values are read through an {@link OutOfBoundsFactory}, the
+ * default is {@link OutOfBoundsMirrorFactory} with {@link Boundary#SINGLE},
+ * which is equivalent to {@link Views#extendMirrorSingle}. The result is
+ * identical to applying the filter on the extended source directly, since all
+ * of mirror, border and periodic extensions are separable themselves.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class SeparableMorphology {
+
+	private SeparableMorphology() {
+		// utility class
+	}
+
+	/**
+	 * Minimum filter with a mirror single boundary.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image, may be the same as source
+	 * @param shape
+	 *            rectangular shape
+	 */
+	public static <T extends RealType<T>> void erode(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape) {
+		erode(source, target, shape, mirrorSingle());
+	}
+
+	/**
+	 * Maximum filter with a mirror single boundary.
+	 *
+	 * @see #erode(RandomAccessibleInterval, RandomAccessibleInterval, Shape)
+	 */
+	public static <T extends RealType<T>> void dilate(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape) {
+		dilate(source, target, shape, mirrorSingle());
+	}
+
+	/**
+	 * Minimum filter.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image, may be the same as source
+	 * @param shape
+	 *            rectangular shape
+	 * @param outOfBounds
+	 *            factory for the values outside of the images
+	 */
+	public static <T extends RealType<T>> void erode(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds) {
+		filterShape(source, target, shape, outOfBounds, false);
+	}
+
+	/**
+	 * Maximum filter.
+	 *
+	 * @see #erode(RandomAccessibleInterval, RandomAccessibleInterval, Shape,
+	 *      OutOfBoundsFactory)
+	 */
+	public static <T extends RealType<T>> void dilate(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds) {
+		filterShape(source, target, shape, outOfBounds, true);
+	}
+
+	/**
+	 * Minimum or maximum filter with a hyper rectangle given by its offsets
+	 * relative to the center pixel.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image, may be the same as source
+	 * @param box
+	 *            offsets of the rectangle, e.g. [-r, r] in every dimension for
+	 *            a {@link RectangleShape} with span r
+	 * @param outOfBounds
+	 *            factory for the values outside of the images
+	 * @param max
+	 *            true for a maximum filter, false for a minimum filter
+	 */
+	public static <T extends RealType<T>> void filter(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Interval box,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final boolean max) {
+		final int n = source.numDimensions();
+
+		RandomAccessibleInterval<T> current = source;
+		for (int d = 0; d < n; ++d) {
+			if (box.dimension(d) == 1 && box.min(d) == 0) {
+				// nothing to do for this dimension
+				continue;
+			}
+
+			filterLines(Views.extend(current, outOfBounds), target, d,
+					box.min(d), (int) box.dimension(d), max);
+			current = target;
+		}
+
+		if (current == source && source != target) {
+			// box was a single pixel
+			copy(source, target);
+		}
+	}
+
+	private static <T extends RealType<T>> void filterShape(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final boolean max) {
+		final int n = source.numDimensions();
+
+		if (!StructuringElements.isBox(shape, n)) {
+			throw new IllegalArgumentException(
+					"Shape is not a hyper rectangle: " + shape);
+		}
+
+		filter(source, target, StructuringElements.boundingBox(shape, n),
+				outOfBounds, max);
+	}
+
+	/**
+	 * Filter all lines along dimension d.
+	 *
+	 * @param source
+	 *            extended source
+	 * @param target
+	 *            target, lines are buffered, so this may be the image
+	 *            underlying source
+	 * @param d
+	 *            dimension of the lines
+	 * @param offset
+	 *            offset of the first element of the window relative to the
+	 *            center
+	 * @param window
+	 *            size of the window
+	 * @param max
+	 *            maximum instead of minimum
+	 */
+	private static <T extends RealType<T>> void filterLines(
+			final RandomAccessible<T> source,
+			final RandomAccessibleInterval<T> target, final int d,
+			final long offset, final int window, final boolean max) {
+		final int n = target.numDimensions();
+		final int length = (int) target.dimension(d);
+
+		final double[] in = new double[length + window - 1];
+		final double[] out = new double[length];
+		final VanHerkGilWerman vhgw = new VanHerkGilWerman(window);
+
+		// iterate over the first pixel of every line along d
+		final long[] lineMin = new long[n];
+		final long[] lineMax = new long[n];
+		target.min(lineMin);
+		target.max(lineMax);
+		lineMax[d] = lineMin[d];
+
+		final IntervalIterator lines = new IntervalIterator(lineMin, lineMax);
+		final long[] position = new long[n];
+
+		final RandomAccess<T> in_ra = source.randomAccess();
+		final RandomAccess<T> out_ra = target.randomAccess();
+
+		while (lines.hasNext()) {
+			lines.fwd();
+			lines.localize(position);
+
+			// read the padded line
+			position[d] += offset;
+			in_ra.setPosition(position);
+			for (int i = 0; i < in.length; ++i) {
+				in[i] = in_ra.get().getRealDouble();
+				in_ra.fwd(d);
+			}
+
+			if (max) {
+				vhgw.max(in, out, length);
+			} else {
+				vhgw.min(in, out, length);
+			}
+
+			// write the filtered line
+			position[d] -= offset;
+			out_ra.setPosition(position);
+			for (int i = 0; i < length; ++i) {
+				out_ra.get().setReal(out[i]);
+				out_ra.fwd(d);
+			}
+		}
+	}
+
+	private static <T extends RealType<T>> void copy(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target) {
+		final Cursor<T> c = Views.flatIterable(target).localizingCursor();
+		final RandomAccess<T> ra = source.randomAccess();
+
+		while (c.hasNext()) {
+			c.fwd();
+			ra.setPosition(c);
+			c.get().set(ra.get());
+		}
+	}
+
+	private static <T extends RealType<T>> OutOfBoundsFactory<T, RandomAccessibleInterval<T>> mirrorSingle() {
+		return new OutOfBoundsMirrorFactory<T, RandomAccessibleInterval<T>>(
+				Boundary.SINGLE);
+	}
+}
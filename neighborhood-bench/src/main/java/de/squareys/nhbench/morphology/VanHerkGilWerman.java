@@ -0,0 +1,134 @@
+package de.squareys.nhbench.morphology;
+
+/**
+ * Van Herk/Gil-Werman algorithm for computing the minimum or maximum of a
+ * sliding window over a line in constant time per element, independent of the
+ * window size.
+ *
+ * The line is split into blocks of the window size. For every block a prefix
+ * and a suffix minimum are computed; the minimum of a window is then the
+ * minimum of the suffix of the block it starts in and the prefix of the block
+ * it ends in. This requires three comparisons per element.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class VanHerkGilWerman {
+
+	private final int window;
+
+	/* prefix and suffix buffers, grown as needed */
+	private double[] prefix;
+	private double[] suffix;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param window
+	 *            size of the sliding window, must be at least 1
+	 */
+	public VanHerkGilWerman(final int window) {
+		if (window < 1) {
+			throw new IllegalArgumentException("Window size must be >= 1, was "
+					+ window);
+		}
+		this.window = window;
+		this.prefix = new double[0];
+		this.suffix = new double[0];
+	}
+
+	/**
+	 * @return the size of the sliding window
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Compute the sliding window minimum of a line.
+	 *
+	 * @param in
+	 *            input line, padded so that element <code>i</code> of the
+	 *            output is the minimum of <code>in[i .. i + window - 1]</code>
+	 * @param out
+	 *            output line of at least <code>length</code> elements
+	 * @param length
+	 *            number of output elements to compute; <code>in</code> must
+	 *            contain at least <code>length + window - 1</code> elements
+	 */
+	public void min(final double[] in, final double[] out, final int length) {
+		filter(in, out, length, false);
+	}
+
+	/**
+	 * Compute the sliding window maximum of a line.
+	 *
+	 * @see #min(double[], double[], int)
+	 */
+	public void max(final double[] in, final double[] out, final int length) {
+		filter(in, out, length, true);
+	}
+
+	private void filter(final double[] in, final double[] out,
+			final int length, final boolean max) {
+		final int k = window;
+
+		if (k == 1) {
+			System.arraycopy(in, 0, out, 0, length);
+			return;
+		}
+
+		final int padded = length + k - 1;
+		ensureCapacity(padded);
+
+		final double[] g = prefix;
+		final double[] h = suffix;
+
+		// prefix extremum within each block, running left to right
+		for (int blockStart = 0; blockStart < padded; blockStart += k) {
+			final int blockEnd = Math.min(blockStart + k, padded);
+
+			double acc = in[blockStart];
+			g[blockStart] = acc;
+			for (int i = blockStart + 1; i < blockEnd; ++i) {
+				final double v = in[i];
+				if (max ? v > acc : v < acc) {
+					acc = v;
+				}
+				g[i] = acc;
+			}
+
+			// suffix extremum within the same block, running right to left
+			acc = in[blockEnd - 1];
+			h[blockEnd - 1] = acc;
+			for (int i = blockEnd - 2; i >= blockStart; --i) {
+				final double v = in[i];
+				if (max ? v > acc : v < acc) {
+					acc = v;
+				}
+				h[i] = acc;
+			}
+		}
+
+		// window [i, i + k - 1] spans exactly two (possibly equal) blocks
+		if (max) {
+			for (int i = 0; i < length; ++i) {
+				final double a = h[i];
+				final double b = g[i + k - 1];
+				out[i] = (a > b) ? a : b;
+			}
+		} else {
+			for (int i = 0; i < length; ++i) {
+				final double a = h[i];
+				final double b = g[i + k - 1];
+				out[i] = (a < b) ? a : b;
+			}
+		}
+	}
+
+	private void ensureCapacity(final int size) {
+		if (prefix.length < size) {
+			prefix = new double[size];
+			suffix = new double[size];
+		}
+	}
+}
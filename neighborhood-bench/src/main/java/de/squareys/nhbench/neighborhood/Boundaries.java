@@ -0,0 +1,73 @@
+package de.squareys.nhbench.neighborhood;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.outofbounds.OutOfBoundsBorderFactory;
+import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.outofbounds.OutOfBoundsPeriodicFactory;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Creates {@link OutOfBoundsFactory}s from the boundary names used as
+ * benchmark parameters.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class Boundaries {
+
+	/** Mirror without repeating the edge pixel */
+	public static final String MIRROR_SINGLE = "mirror-single";
+
+	/** Mirror repeating the edge pixel */
+	public static final String MIRROR_DOUBLE = "mirror-double";
+
+	/** Repeat the edge pixel */
+	public static final String BORDER = "border";
+
+	/** Constant zero */
+	public static final String ZERO = "zero";
+
+	/** Wrap around */
+	public static final String PERIODIC = "periodic";
+
+	/** All boundary names */
+	public static final String[] NAMES = { MIRROR_SINGLE, MIRROR_DOUBLE,
+			BORDER, ZERO, PERIODIC };
+
+	private Boundaries() {
+		// utility class
+	}
+
+	/**
+	 * Create an out of bounds factory.
+	 *
+	 * @param name
+	 *            one of {@link #NAMES}
+	 * @param type
+	 *            an instance of the pixel type, used for the zero value
+	 * @return the factory
+	 */
+	public static <T extends RealType<T>> OutOfBoundsFactory<T, RandomAccessibleInterval<T>> factory(
+			final String name, final T type) {
+		if (MIRROR_SINGLE.equals(name)) {
+			return new OutOfBoundsMirrorFactory<T, RandomAccessibleInterval<T>>(
+					Boundary.SINGLE);
+		} else if (MIRROR_DOUBLE.equals(name)) {
+			return new OutOfBoundsMirrorFactory<T, RandomAccessibleInterval<T>>(
+					Boundary.DOUBLE);
+		} else if (BORDER.equals(name)) {
+			return new OutOfBoundsBorderFactory<T, RandomAccessibleInterval<T>>();
+		} else if (ZERO.equals(name)) {
+			final T zero = type.createVariable();
+			zero.setZero();
+			return new OutOfBoundsConstantValueFactory<T, RandomAccessibleInterval<T>>(
+					zero);
+		} else if (PERIODIC.equals(name)) {
+			return new OutOfBoundsPeriodicFactory<T, RandomAccessibleInterval<T>>();
+		}
+
+		throw new IllegalArgumentException("Unknown boundary: " + name);
+	}
+}
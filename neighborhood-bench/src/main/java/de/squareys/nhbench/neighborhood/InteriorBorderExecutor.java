@@ -0,0 +1,148 @@
+package de.squareys.nhbench.neighborhood;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.view.Views;
+
+/**
+ * "No Out Of Bounds" executor for {@link NeighborhoodReducer}s.
+ *
+ * The image is split into one interior interval, whose neighborhoods lie
+ * completely inside the image, and up to 2*d border slabs. The interior is
+ * read directly from the source, so no out of bounds position tracking is
+ * involved for the vast majority of pixels. Only the border slabs are read
+ * through the view extended with the given {@link OutOfBoundsFactory}.
+ *
+ * The border slab for the lower and upper end of dimension d covers the
+ * interior range in all dimensions < d and the full range in all dimensions
+ * > d, so that the slabs and the interior do not overlap.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class InteriorBorderExecutor {
+
+	private InteriorBorderExecutor() {
+		// utility class
+	}
+
+	/**
+	 * Reduce the neighborhoods of all pixels of source.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source, only used on the border
+	 * @param reducer
+	 *            reducer to apply
+	 */
+	public static <I, O> void run(final RandomAccessibleInterval<I> source,
+			final RandomAccessibleInterval<O> target, final Shape shape,
+			final OutOfBoundsFactory<I, RandomAccessibleInterval<I>> outOfBounds,
+			final NeighborhoodReducer<I, O> reducer) {
+		final Interval box = StructuringElements.boundingBox(shape,
+				source.numDimensions());
+		final Interval interior = interior(source, box);
+
+		final RandomAccessible<I> extended = Views.extend(source, outOfBounds);
+
+		if (interior == null) {
+			// neighborhoods are bigger than the image, everything is border
+			NeighborhoodReduction.reduce(extended, target, source, shape,
+					reducer);
+			return;
+		}
+
+		NeighborhoodReduction.reduce(source, target, interior, shape, reducer);
+
+		for (final Interval border : borders(source, interior)) {
+			NeighborhoodReduction.reduce(extended, target, border, shape,
+					reducer);
+		}
+	}
+
+	/**
+	 * Compute the interval of pixels whose neighborhoods lie completely inside
+	 * the image.
+	 *
+	 * @param image
+	 *            interval of the image
+	 * @param box
+	 *            bounding box of the structuring element relative to the
+	 *            center pixel
+	 * @return the interior or null, if it is empty
+	 */
+	public static Interval interior(final Interval image, final Interval box) {
+		final int n = image.numDimensions();
+
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+
+		for (int d = 0; d < n; ++d) {
+			min[d] = image.min(d) - Math.min(0, box.min(d));
+			max[d] = image.max(d) - Math.max(0, box.max(d));
+
+			if (min[d] > max[d]) {
+				return null;
+			}
+		}
+
+		return new FinalInterval(min, max);
+	}
+
+	/**
+	 * Compute the border slabs, which together with the interior cover the
+	 * image without overlap. Empty slabs are omitted.
+	 *
+	 * @param image
+	 *            interval of the image
+	 * @param interior
+	 *            interior of the image
+	 * @return the border slabs
+	 */
+	public static List<Interval> borders(final Interval image,
+			final Interval interior) {
+		final int n = image.numDimensions();
+		final List<Interval> borders = new ArrayList<Interval>(2 * n);
+
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+
+		for (int d = 0; d < n; ++d) {
+			for (int i = 0; i < n; ++i) {
+				if (i < d) {
+					min[i] = interior.min(i);
+					max[i] = interior.max(i);
+				} else {
+					min[i] = image.min(i);
+					max[i] = image.max(i);
+				}
+			}
+
+			// lower slab
+			if (interior.min(d) > image.min(d)) {
+				max[d] = interior.min(d) - 1;
+				borders.add(new FinalInterval(min, max));
+			}
+
+			// upper slab
+			if (interior.max(d) < image.max(d)) {
+				min[d] = interior.max(d) + 1;
+				max[d] = image.max(d);
+				borders.add(new FinalInterval(min, max));
+			}
+		}
+
+		return borders;
+	}
+}
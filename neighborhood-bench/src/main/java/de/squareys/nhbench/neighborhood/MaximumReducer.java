@@ -0,0 +1,50 @@
+package de.squareys.nhbench.neighborhood;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * {@link NeighborhoodReducer} computing the maximum of a neighborhood.
+ *
+ * @param <T>
+ *            pixel type
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class MaximumReducer<T extends RealType<T>> implements
+		NeighborhoodReducer<T, T> {
+
+	private final T max;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param type
+	 *            instance of the pixel type, used to create the accumulator
+	 */
+	public MaximumReducer(final T type) {
+		this.max = type.createVariable();
+	}
+
+	@Override
+	public void reduce(final Neighborhood<T> neighborhood, final T output) {
+		final Cursor<T> cursor = neighborhood.cursor();
+		max.setReal(max.getMinValue());
+
+		while (cursor.hasNext()) {
+			cursor.fwd();
+
+			final T val = cursor.get();
+			if (val.compareTo(max) > 0) {
+				max.set(val);
+			}
+		}
+
+		output.set(max);
+	}
+
+	@Override
+	public MaximumReducer<T> copy() {
+		return new MaximumReducer<T>(max);
+	}
+}
@@ -0,0 +1,50 @@
+package de.squareys.nhbench.neighborhood;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * {@link NeighborhoodReducer} computing the minimum of a neighborhood.
+ *
+ * @param <T>
+ *            pixel type
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class MinimumReducer<T extends RealType<T>> implements
+		NeighborhoodReducer<T, T> {
+
+	private final T min;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param type
+	 *            instance of the pixel type, used to create the accumulator
+	 */
+	public MinimumReducer(final T type) {
+		this.min = type.createVariable();
+	}
+
+	@Override
+	public void reduce(final Neighborhood<T> neighborhood, final T output) {
+		final Cursor<T> cursor = neighborhood.cursor();
+		min.setReal(min.getMaxValue());
+
+		while (cursor.hasNext()) {
+			cursor.fwd();
+
+			final T val = cursor.get();
+			if (val.compareTo(min) < 0) {
+				min.set(val);
+			}
+		}
+
+		output.set(min);
+	}
+
+	@Override
+	public MinimumReducer<T> copy() {
+		return new MinimumReducer<T>(min);
+	}
+}
@@ -0,0 +1,34 @@
+package de.squareys.nhbench.neighborhood;
+
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+
+/**
+ * Reduces the values of a {@link Neighborhood} to a single output value, e.g.
+ * the minimum of the neighborhood.
+ *
+ * Implementations may hold intermediate state. Executors running on multiple
+ * threads will therefore create a {@link #copy()} for every worker.
+ *
+ * @param <I>
+ *            type of the neighborhood values
+ * @param <O>
+ *            type of the output value
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public interface NeighborhoodReducer<I, O> {
+
+	/**
+	 * Reduce a neighborhood.
+	 *
+	 * @param neighborhood
+	 *            the neighborhood to reduce
+	 * @param output
+	 *            the output pixel at the center of the neighborhood
+	 */
+	void reduce(Neighborhood<I> neighborhood, O output);
+
+	/**
+	 * @return a copy of this reducer which does not share any state with it
+	 */
+	NeighborhoodReducer<I, O> copy();
+}
@@ -0,0 +1,49 @@
+package de.squareys.nhbench.neighborhood;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.view.Views;
+
+/**
+ * Sequentially applies a {@link NeighborhoodReducer} to the neighborhoods of
+ * all pixels in an interval. This is the building block the executors use for
+ * every tile they process.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class NeighborhoodReduction {
+
+	private NeighborhoodReduction() {
+		// utility class
+	}
+
+	/**
+	 * Reduce the neighborhoods of all pixels in the given interval.
+	 *
+	 * @param source
+	 *            source to read the neighborhoods from, must be defined for all
+	 *            neighborhoods of the pixels in interval
+	 * @param target
+	 *            target to write the results to
+	 * @param interval
+	 *            the pixels to compute
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param reducer
+	 *            the reducer to apply, not shared with other threads
+	 */
+	public static <I, O> void reduce(final RandomAccessible<I> source,
+			final RandomAccessible<O> target, final Interval interval,
+			final Shape shape, final NeighborhoodReducer<I, O> reducer) {
+		final RandomAccess<O> ra = target.randomAccess(interval);
+
+		for (final Neighborhood<I> neighborhood : shape.neighborhoods(Views
+				.interval(source, interval))) {
+			ra.setPosition(neighborhood);
+			reducer.reduce(neighborhood, ra.get());
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package de.squareys.nhbench.neighborhood;
+
+import net.imglib2.Cursor;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.type.logic.BitType;
+
+/**
+ * Allocation free alternative to iterating a {@link Neighborhood} with a
+ * {@link Cursor}.
+ *
+ * {@link Neighborhood#cursor()} creates a new cursor for every pixel, which is
+ * not always removed by escape analysis. This class instead precomputes the
+ * offsets of the structuring element once, as steps between consecutive
+ * neighbors, and walks them with a single {@link RandomAccess}. Moving to the
+ * next center pixel and iterating its neighbors creates no objects.
+ *
+ * The neighbors are visited in the same order as by the cursor of the shape.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class OffsetNeighborhood<T> {
+
+	private final RandomAccess<T> ra;
+
+	/* steps[i] moves from neighbor i - 1 (or the center) to neighbor i */
+	private final long[][] steps;
+
+	private int index;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source
+	 *            source to read the neighbors from, must be defined for the
+	 *            neighborhoods of all centers that will be set
+	 * @param shape
+	 *            shape of the neighborhoods
+	 */
+	public OffsetNeighborhood(final RandomAccessible<T> source,
+			final Shape shape) {
+		final int n = source.numDimensions();
+		this.ra = source.randomAccess();
+
+		final Neighborhood<BitType> probe = StructuringElements.probe(shape, n);
+		this.steps = new long[(int) probe.size()][n];
+
+		final Cursor<BitType> c = probe.localizingCursor();
+		final long[] previous = new long[n];
+		for (int i = 0; c.hasNext(); ++i) {
+			c.fwd();
+			for (int d = 0; d < n; ++d) {
+				final long offset = c.getLongPosition(d);
+				steps[i][d] = offset - previous[d];
+				previous[d] = offset;
+			}
+		}
+
+		this.index = steps.length;
+	}
+
+	/**
+	 * @return number of neighbors
+	 */
+	public int size() {
+		return steps.length;
+	}
+
+	/**
+	 * Center the neighborhood at the given position and restart iteration.
+	 *
+	 * @param center
+	 *            position of the center pixel
+	 */
+	public void setPosition(final Localizable center) {
+		ra.setPosition(center);
+		index = 0;
+	}
+
+	/**
+	 * Center the neighborhood at the given position and restart iteration.
+	 *
+	 * @param center
+	 *            position of the center pixel
+	 */
+	public void setPosition(final long[] center) {
+		ra.setPosition(center);
+		index = 0;
+	}
+
+	/**
+	 * @return whether there are neighbors left to visit
+	 */
+	public boolean hasNext() {
+		return index < steps.length;
+	}
+
+	/**
+	 * Move to the next neighbor.
+	 *
+	 * @return the value of the next neighbor, a flyweight that is only valid
+	 *         until the next call
+	 */
+	public T next() {
+		ra.move(steps[index++]);
+		return ra.get();
+	}
+}
@@ -0,0 +1,240 @@
+package de.squareys.nhbench.neighborhood;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.view.Views;
+
+/**
+ * Executes a {@link NeighborhoodReducer} on multiple threads.
+ *
+ * The output interval is split into slabs along its last non-singleton
+ * dimension. Every slab is processed as a separate task, with its own
+ * {@link net.imglib2.RandomAccess RandomAccess} and its own
+ * {@link NeighborhoodReducer#copy() copy} of the reducer. More slabs than
+ * threads are created so that the load is balanced if some slabs take longer
+ * than others.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class ParallelNeighborhoodExecutor {
+
+	/** Number of slabs created per thread. */
+	public static final int SLABS_PER_THREAD = 4;
+
+	private final ExecutorService service;
+	private final int numThreads;
+	private final boolean ownsService;
+
+	/**
+	 * Create an executor with its own thread pool. Call {@link #shutdown()} to
+	 * release the threads.
+	 *
+	 * @param numThreads
+	 *            number of worker threads
+	 */
+	public ParallelNeighborhoodExecutor(final int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be >= 1, was " + numThreads);
+		}
+		this.numThreads = numThreads;
+		this.service = Executors.newFixedThreadPool(numThreads,
+				new DaemonThreadFactory());
+		this.ownsService = true;
+	}
+
+	/**
+	 * Create an executor which submits to an existing service.
+	 *
+	 * @param service
+	 *            service to submit the slabs to
+	 * @param numThreads
+	 *            number of threads of the service, used to decide how many
+	 *            slabs to create
+	 */
+	public ParallelNeighborhoodExecutor(final ExecutorService service,
+			final int numThreads) {
+		this.numThreads = numThreads;
+		this.service = service;
+		this.ownsService = false;
+	}
+
+	/**
+	 * @return the number of threads this executor uses
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Reduce the neighborhoods of all pixels of target.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param reducer
+	 *            reducer to apply, copied for every slab
+	 */
+	public <I, O> void run(final RandomAccessibleInterval<I> source,
+			final RandomAccessibleInterval<O> target, final Shape shape,
+			final OutOfBoundsFactory<I, RandomAccessibleInterval<I>> outOfBounds,
+			final NeighborhoodReducer<I, O> reducer) {
+		run(Views.extend(source, outOfBounds), target, shape, reducer);
+	}
+
+	/**
+	 * Reduce the neighborhoods of all pixels of target.
+	 *
+	 * @param source
+	 *            input image, needs to be defined for all neighborhoods of the
+	 *            pixels in target, e.g. an extended view
+	 * @param target
+	 *            output image
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param reducer
+	 *            reducer to apply, copied for every slab
+	 */
+	public <I, O> void run(final RandomAccessible<I> source,
+			final RandomAccessibleInterval<O> target, final Shape shape,
+			final NeighborhoodReducer<I, O> reducer) {
+		final List<Interval> slabs = split(target, numThreads
+				* SLABS_PER_THREAD);
+
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(
+				slabs.size());
+		for (final Interval slab : slabs) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					NeighborhoodReduction.reduce(source, target, slab, shape,
+							reducer.copy());
+					return null;
+				}
+			});
+		}
+
+		invokeAll(tasks);
+	}
+
+	/**
+	 * Run tasks on the service of this executor and wait for all of them to
+	 * finish.
+	 *
+	 * @param tasks
+	 *            tasks to run
+	 */
+	public void invokeAll(final List<? extends Callable<?>> tasks) {
+		final List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+		for (final Callable<?> task : tasks) {
+			futures.add(service.submit(task));
+		}
+
+		try {
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		} catch (final InterruptedException e) {
+			for (final Future<?> future : futures) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			for (final Future<?> future : futures) {
+				future.cancel(true);
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Shutdown the thread pool, if it was created by this executor.
+	 */
+	public void shutdown() {
+		if (ownsService) {
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * Split an interval into at most numSlabs slabs along its last dimension
+	 * with more than one pixel.
+	 *
+	 * @param interval
+	 *            interval to split
+	 * @param numSlabs
+	 *            maximum number of slabs
+	 * @return the slabs, covering interval without overlap
+	 */
+	public static List<Interval> split(final Interval interval,
+			final int numSlabs) {
+		final int n = interval.numDimensions();
+
+		int d = n - 1;
+		while (d > 0 && interval.dimension(d) == 1) {
+			--d;
+		}
+
+		final long size = interval.dimension(d);
+		final int count = (int) Math.max(1, Math.min(numSlabs, size));
+
+		final List<Interval> slabs = new ArrayList<Interval>(count);
+
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		interval.min(min);
+		interval.max(max);
+
+		long start = interval.min(d);
+		for (int i = 0; i < count; ++i) {
+			// distribute the remainder over the first slabs
+			final long slabSize = size / count + ((i < size % count) ? 1 : 0);
+
+			min[d] = start;
+			max[d] = start + slabSize - 1;
+			slabs.add(new FinalInterval(min, max));
+
+			start += slabSize;
+		}
+
+		return slabs;
+	}
+
+	/**
+	 * Creates daemon threads, so that an executor which was not shut down does
+	 * not keep the JVM alive.
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = factory.newThread(r);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package de.squareys.nhbench.neighborhood;
+
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * {@link NeighborhoodReducer} computing a percentile of a neighborhood by
+ * sorting its values. This is the generic approach the specialized rank
+ * filters are compared against.
+ *
+ * @param <T>
+ *            pixel type
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class RankReducer<T extends RealType<T>> implements
+		NeighborhoodReducer<T, T> {
+
+	private final double percentile;
+
+	private double[] values = new double[0];
+
+	/**
+	 * Constructor.
+	 *
+	 * @param percentile
+	 *            percentile in [0, 1], 0.5 is the median
+	 */
+	public RankReducer(final double percentile) {
+		this.percentile = percentile;
+	}
+
+	@Override
+	public void reduce(final Neighborhood<T> neighborhood, final T output) {
+		final int size = (int) neighborhood.size();
+		if (values.length < size) {
+			values = new double[size];
+		}
+
+		final Cursor<T> cursor = neighborhood.cursor();
+		int i = 0;
+		while (cursor.hasNext()) {
+			values[i++] = cursor.next().getRealDouble();
+		}
+
+		Arrays.sort(values, 0, size);
+		output.setReal(values[(int) Math.round(percentile * (size - 1))]);
+	}
+
+	@Override
+	public RankReducer<T> copy() {
+		return new RankReducer<T>(percentile);
+	}
+}
@@ -0,0 +1,82 @@
+package de.squareys.nhbench.neighborhood;
+
+import java.util.Arrays;
+
+import net.imglib2.algorithm.neighborhood.CenteredRectangleShape;
+import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.algorithm.neighborhood.DiamondTipsShape;
+import net.imglib2.algorithm.neighborhood.HorizontalLineShape;
+import net.imglib2.algorithm.neighborhood.HyperSphereShape;
+import net.imglib2.algorithm.neighborhood.PairOfPointsShape;
+import net.imglib2.algorithm.neighborhood.PeriodicLineShape;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+
+/**
+ * Creates {@link Shape}s from the names used as benchmark parameters, e.g.
+ * "RectangleShape" or "HorizontalLineShapeSC", where the suffix "SC" selects
+ * skipCenter for the shapes which support it.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class Shapes {
+
+	/**
+	 * Names of all supported shapes.
+	 */
+	public static final String[] NAMES = { "RectangleShape",
+			"CenteredRectangleShape", "RectangleShapeSC",
+			"CenteredRectangleShapeSC", "DiamondShape", "DiamondTipsShape",
+			"HorizontalLineShape", "HorizontalLineShapeSC", "HyperSphereShape",
+			"PairOfPointsShape", "PeriodicLineShape" };
+
+	private Shapes() {
+		// utility class
+	}
+
+	/**
+	 * Create a shape.
+	 *
+	 * @param name
+	 *            one of {@link #NAMES}
+	 * @param span
+	 *            span or radius of the shape; the offset of the
+	 *            PairOfPointsShape and the number of steps of the
+	 *            PeriodicLineShape, both along the diagonal
+	 * @param numDimensions
+	 *            dimensionality of the images the shape will be used on
+	 * @return the shape
+	 */
+	public static Shape create(final String name, final int span,
+			final int numDimensions) {
+		final boolean skipCenter = name.endsWith("SC");
+		final String type = skipCenter ? name.substring(0, name.length() - 2)
+				: name;
+
+		if ("RectangleShape".equals(type)) {
+			return new RectangleShape(span, skipCenter);
+		} else if ("CenteredRectangleShape".equals(type)) {
+			final int[] spans = new int[numDimensions];
+			Arrays.fill(spans, span);
+			return new CenteredRectangleShape(spans, skipCenter);
+		} else if ("DiamondShape".equals(type)) {
+			return new DiamondShape(span);
+		} else if ("DiamondTipsShape".equals(type)) {
+			return new DiamondTipsShape(span);
+		} else if ("HorizontalLineShape".equals(type)) {
+			return new HorizontalLineShape(span, 0, skipCenter);
+		} else if ("HyperSphereShape".equals(type)) {
+			return new HyperSphereShape(span);
+		} else if ("PairOfPointsShape".equals(type)) {
+			final long[] offset = new long[numDimensions];
+			Arrays.fill(offset, span);
+			return new PairOfPointsShape(offset);
+		} else if ("PeriodicLineShape".equals(type)) {
+			final int[] increments = new int[numDimensions];
+			Arrays.fill(increments, 1);
+			return new PeriodicLineShape(span, increments);
+		}
+
+		throw new IllegalArgumentException("Unknown shape: " + name);
+	}
+}
@@ -0,0 +1,89 @@
+package de.squareys.nhbench.neighborhood;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.algorithm.neighborhood.CenteredRectangleShape;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Utility methods to inspect the structuring element of a {@link Shape}.
+ *
+ * {@link Shape} does not expose its extent, so the structuring element is
+ * probed by creating a single {@link Neighborhood} centered at the origin of
+ * a constant image.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class StructuringElements {
+
+	private StructuringElements() {
+		// utility class
+	}
+
+	/**
+	 * Get the neighborhood of the given shape centered at the origin.
+	 *
+	 * @param shape
+	 *            the shape to probe
+	 * @param numDimensions
+	 *            dimensionality of the images the shape will be used on
+	 * @return the neighborhood at the origin
+	 */
+	public static Neighborhood<BitType> probe(final Shape shape,
+			final int numDimensions) {
+		final long[] dims = new long[numDimensions];
+		for (int d = 0; d < numDimensions; ++d) {
+			dims[d] = 1;
+		}
+
+		final RandomAccessible<BitType> zero = Views.extendValue(
+				new ArrayImgFactory<BitType>().create(dims, new BitType()),
+				new BitType());
+
+		final RandomAccess<Neighborhood<BitType>> ra = shape
+				.neighborhoodsRandomAccessible(zero).randomAccess();
+		ra.setPosition(new long[numDimensions]);
+
+		return ra.get();
+	}
+
+	/**
+	 * Get the bounding box of the offsets of a shape relative to the center
+	 * pixel.
+	 *
+	 * @param shape
+	 *            the shape to probe
+	 * @param numDimensions
+	 *            dimensionality of the images the shape will be used on
+	 * @return the bounding box of the structuring element
+	 */
+	public static Interval boundingBox(final Shape shape,
+			final int numDimensions) {
+		return new FinalInterval(probe(shape, numDimensions));
+	}
+
+	/**
+	 * Whether the structuring element of the shape covers its complete
+	 * bounding box. This is true for {@link RectangleShape} and
+	 * {@link CenteredRectangleShape} if they do not skip the center.
+	 *
+	 * @param shape
+	 *            the shape to probe
+	 * @param numDimensions
+	 *            dimensionality of the images the shape will be used on
+	 * @return true if the shape is a full hyper rectangle
+	 */
+	public static boolean isBox(final Shape shape, final int numDimensions) {
+		final Neighborhood<BitType> neighborhood = probe(shape, numDimensions);
+
+		return neighborhood.size() == Intervals.numElements(neighborhood);
+	}
+}
@@ -0,0 +1,221 @@
+package de.squareys.nhbench.plan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsPeriodicFactory;
+
+/**
+ * Computes which pixels of a filtered image have to be recomputed after some
+ * intervals of the input changed.
+ *
+ * Output pixel p reads the input at p + o for every offset o of the
+ * structuring element, so a change of the input at q affects the outputs in
+ * <code>[q - box.max, q - box.min]</code>. The affected intervals of all
+ * changes are clipped to the image and overlapping ones are merged into their
+ * bounding box, until no two intervals overlap. Merging may add a few
+ * unaffected pixels, but no pixel is computed twice.
+ *
+ * Constant boundaries do not read the image outside of it. Mirror and border
+ * boundaries read values near the border for outputs near the same border,
+ * but on the other side of the structuring element: with the box [0, s] of a
+ * line, output N-1 reads the mirrored input N-1-s, which the box itself would
+ * only attribute to outputs up to N-1-s. Reflected offsets stay within
+ * max(|box.min|, |box.max|) of the changed pixel, so for these boundaries the
+ * change is dilated by that symmetric hull of the box instead. A periodic
+ * boundary wraps values to the opposite border, therefore an affected
+ * interval which leaves the image in a dimension spans that complete
+ * dimension for periodic boundaries.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class DirtyRegions {
+
+	private DirtyRegions() {
+		// utility class
+	}
+
+	/**
+	 * Compute the disjoint intervals of output pixels affected by changed
+	 * input intervals.
+	 *
+	 * @param changed
+	 *            changed intervals of the input
+	 * @param box
+	 *            bounding box of the structuring element relative to the
+	 *            center pixel
+	 * @param image
+	 *            interval of the image
+	 * @param outOfBounds
+	 *            factory for values outside of the image
+	 * @return disjoint intervals inside of image
+	 */
+	public static List<Interval> affected(
+			final Collection<? extends Interval> changed, final Interval box,
+			final Interval image, final OutOfBoundsFactory<?, ?> outOfBounds) {
+		final boolean periodic = outOfBounds
+				instanceof OutOfBoundsPeriodicFactory;
+		final boolean constant = outOfBounds
+				instanceof OutOfBoundsConstantValueFactory;
+		final Interval reach = (periodic || constant) ? box
+				: symmetricHull(box);
+		final List<Interval> dilated = new ArrayList<Interval>(changed.size());
+
+		for (final Interval c : changed) {
+			Interval a = dilate(c, reach);
+			if (periodic) {
+				a = wrap(a, image);
+			}
+			a = intersect(a, image);
+			if (a != null) {
+				dilated.add(a);
+			}
+		}
+
+		return merge(dilated);
+	}
+
+	/**
+	 * @return the interval of output pixels whose neighborhoods overlap
+	 *         changed
+	 */
+	public static Interval dilate(final Interval changed, final Interval box) {
+		final int n = changed.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+
+		for (int d = 0; d < n; ++d) {
+			min[d] = changed.min(d) - box.max(d);
+			max[d] = changed.max(d) - box.min(d);
+		}
+
+		return new FinalInterval(min, max);
+	}
+
+	/**
+	 * @return the smallest box symmetric to the origin containing box
+	 */
+	public static Interval symmetricHull(final Interval box) {
+		final int n = box.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+
+		for (int d = 0; d < n; ++d) {
+			max[d] = Math.max(Math.abs(box.min(d)), Math.abs(box.max(d)));
+			min[d] = -max[d];
+		}
+
+		return new FinalInterval(min, max);
+	}
+
+	/**
+	 * @return the intersection of a and b or null, if it is empty
+	 */
+	public static Interval intersect(final Interval a, final Interval b) {
+		final int n = a.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+
+		for (int d = 0; d < n; ++d) {
+			min[d] = Math.max(a.min(d), b.min(d));
+			max[d] = Math.min(a.max(d), b.max(d));
+
+			if (min[d] > max[d]) {
+				return null;
+			}
+		}
+
+		return new FinalInterval(min, max);
+	}
+
+	/**
+	 * Merge overlapping intervals into their bounding box, until no two
+	 * intervals overlap.
+	 *
+	 * @param intervals
+	 *            intervals to merge
+	 * @return disjoint intervals covering all of intervals
+	 */
+	public static List<Interval> merge(
+			final Collection<? extends Interval> intervals) {
+		final List<Interval> merged = new ArrayList<Interval>(intervals.size());
+
+		for (final Interval interval : intervals) {
+			Interval current = interval;
+
+			// the union may overlap intervals it did not overlap before
+			boolean grown = true;
+			while (grown) {
+				grown = false;
+				for (int i = 0; i < merged.size(); ++i) {
+					if (intersect(current, merged.get(i)) != null) {
+						current = union(current, merged.remove(i));
+						grown = true;
+						break;
+					}
+				}
+			}
+
+			merged.add(current);
+		}
+
+		return merged;
+	}
+
+	/**
+	 * @return number of pixels in all of intervals
+	 */
+	public static long numElements(
+			final Collection<? extends Interval> intervals) {
+		long sum = 0;
+		for (final Interval interval : intervals) {
+			long size = 1;
+			for (int d = 0; d < interval.numDimensions(); ++d) {
+				size *= interval.dimension(d);
+			}
+			sum += size;
+		}
+		return sum;
+	}
+
+	private static Interval union(final Interval a, final Interval b) {
+		final int n = a.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+
+		for (int d = 0; d < n; ++d) {
+			min[d] = Math.min(a.min(d), b.min(d));
+			max[d] = Math.max(a.max(d), b.max(d));
+		}
+
+		return new FinalInterval(min, max);
+	}
+
+	/**
+	 * @return interval spanning the complete image in every dimension in
+	 *         which it leaves the image
+	 */
+	private static Interval wrap(final Interval interval, final Interval image) {
+		final int n = interval.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+
+		for (int d = 0; d < n; ++d) {
+			if (interval.min(d) < image.min(d)
+					|| interval.max(d) > image.max(d)) {
+				min[d] = image.min(d);
+				max[d] = image.max(d);
+			} else {
+				min[d] = interval.min(d);
+				max[d] = interval.max(d);
+			}
+		}
+
+		return new FinalInterval(min, max);
+	}
+}
@@ -0,0 +1,367 @@
+package de.squareys.nhbench.plan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.kernels.ByteLineKernel;
+import de.squareys.nhbench.kernels.FloatLineKernel;
+import de.squareys.nhbench.kernels.SpecializedKernels;
+import de.squareys.nhbench.neighborhood.InteriorBorderExecutor;
+import de.squareys.nhbench.neighborhood.MaximumReducer;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.neighborhood.NeighborhoodReducer;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+import de.squareys.nhbench.primitive.CompiledStructuringElement;
+
+/**
+ * Minimum or maximum filter prepared once for a shape, pixel type, image
+ * interval and boundary, and executed any number of times on images with
+ * that interval.
+ *
+ * Preparing compiles the structuring element to linear offsets (see
+ * {@link CompiledStructuringElement}), splits the image into interior and
+ * border (see {@link InteriorBorderExecutor}) and computes the array index of
+ * the first pixel of every interior line. Executing only runs the loops:
+ * tight offset loops for {@link ArrayImg}s of {@link FloatType} and
+ * {@link UnsignedByteType}, the generic neighborhood path for any other image
+ * and for the border. If {@link SpecializedKernels} has an unrolled kernel
+ * for the structuring element, it replaces the offset loops.
+ *
+ * Plans are immutable and may be executed by several threads at once. Use
+ * {@link FilterPlanCache} to reuse plans across calls.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class FilterPlan<T extends RealType<T>> {
+
+	/**
+	 * Reduction applied to every neighborhood.
+	 */
+	public static enum Operation {
+		MIN, MAX
+	}
+
+	private final Shape shape;
+	private final Interval interval;
+	private final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds;
+	private final Operation operation;
+	private final NeighborhoodReducer<T, T> reducer;
+	private final boolean isFloatType;
+	private final boolean isUnsignedByteType;
+
+	/* null if the structuring element is larger than the image */
+	private final Interval interior;
+	private final List<Interval> borders;
+
+	private final CompiledStructuringElement se;
+	private final int[] lineStarts;
+	private final int lineLength;
+
+	/* null if there is no specialization or it is disabled */
+	private final FloatLineKernel floatKernel;
+	private final ByteLineKernel byteKernel;
+
+	/**
+	 * Prepare a plan.
+	 *
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param type
+	 *            instance of the pixel type
+	 * @param interval
+	 *            interval of the images the plan will be executed on
+	 * @param outOfBounds
+	 *            factory for values outside of the images
+	 * @param operation
+	 *            minimum or maximum
+	 */
+	public FilterPlan(final Shape shape, final T type, final Interval interval,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final Operation operation) {
+		this(shape, type, interval, outOfBounds, operation, true);
+	}
+
+	/**
+	 * Prepare a plan.
+	 *
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param type
+	 *            instance of the pixel type
+	 * @param interval
+	 *            interval of the images the plan will be executed on
+	 * @param outOfBounds
+	 *            factory for values outside of the images
+	 * @param operation
+	 *            minimum or maximum
+	 * @param specialize
+	 *            whether to use a kernel from {@link SpecializedKernels} if
+	 *            there is one for the structuring element
+	 */
+	public FilterPlan(final Shape shape, final T type, final Interval interval,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final Operation operation, final boolean specialize) {
+		this.shape = shape;
+		this.interval = new FinalInterval(interval);
+		this.outOfBounds = outOfBounds;
+		this.operation = operation;
+		this.reducer = (operation == Operation.MAX) ? new MaximumReducer<T>(
+				type) : new MinimumReducer<T>(type);
+		this.isFloatType = type instanceof FloatType;
+		this.isUnsignedByteType = type instanceof UnsignedByteType;
+
+		final int n = interval.numDimensions();
+		interior = InteriorBorderExecutor.interior(interval,
+				StructuringElements.boundingBox(shape, n));
+
+		if (interior == null) {
+			borders = Collections.singletonList(this.interval);
+			se = null;
+			lineStarts = new int[0];
+			lineLength = 0;
+			floatKernel = null;
+			byteKernel = null;
+			return;
+		}
+
+		borders = Collections
+				.unmodifiableList(new ArrayList<Interval>(InteriorBorderExecutor
+						.borders(interval, interior)));
+		se = CompiledStructuringElement.compile(shape, interval);
+		lineLength = (int) interior.dimension(0);
+		lineStarts = lineStarts(interior, interval, se.getStrides());
+
+		final boolean max = operation == Operation.MAX;
+		floatKernel = (specialize && isFloatType) ? SpecializedKernels
+				.floatKernel(shape, interval, max) : null;
+		byteKernel = (specialize && isUnsignedByteType) ? SpecializedKernels
+				.unsignedByteKernel(shape, interval, max) : null;
+	}
+
+	/**
+	 * Execute the plan.
+	 *
+	 * @param source
+	 *            input image with the interval of the plan
+	 * @param target
+	 *            output image with the interval of the plan, must not be the
+	 *            same as source
+	 */
+	public void execute(final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target) {
+		if (!sameInterval(interval, source) || !sameInterval(interval, target)) {
+			throw new IllegalArgumentException(
+					"Images do not match the interval of the plan");
+		}
+
+		if (interior != null) {
+			runInterior(source, target, interior, lineStarts, lineLength);
+		}
+
+		for (final Interval border : borders) {
+			NeighborhoodReduction.reduce(Views.extend(source, outOfBounds),
+					target, border, shape, reducer.copy());
+		}
+	}
+
+	/**
+	 * Execute the plan for a region of the images only, e.g. the pixels
+	 * affected by a change of the source (see {@link DirtyRegions}). The
+	 * target is left untouched outside of the region.
+	 *
+	 * @param source
+	 *            input image with the interval of the plan
+	 * @param target
+	 *            output image with the interval of the plan, must not be the
+	 *            same as source
+	 * @param region
+	 *            the pixels to compute, clipped to the interval of the plan
+	 */
+	public void execute(final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Interval region) {
+		if (!sameInterval(interval, source) || !sameInterval(interval, target)) {
+			throw new IllegalArgumentException(
+					"Images do not match the interval of the plan");
+		}
+
+		if (interior != null) {
+			final Interval part = DirtyRegions.intersect(interior, region);
+			if (part != null) {
+				runInterior(source, target, part,
+						lineStarts(part, interval, se.getStrides()),
+						(int) part.dimension(0));
+			}
+		}
+
+		for (final Interval border : borders) {
+			final Interval part = DirtyRegions.intersect(border, region);
+			if (part != null) {
+				NeighborhoodReduction.reduce(Views.extend(source, outOfBounds),
+						target, part, shape, reducer.copy());
+			}
+		}
+	}
+
+	/**
+	 * @return shape of the neighborhoods
+	 */
+	public Shape getShape() {
+		return shape;
+	}
+
+	/**
+	 * @return interval of the images the plan is prepared for
+	 */
+	public Interval getInterval() {
+		return interval;
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * @return whether an unrolled kernel replaces the offset loops
+	 */
+	public boolean isSpecialized() {
+		return floatKernel != null || byteKernel != null;
+	}
+
+	/**
+	 * Compute a part of the interior, given by the array index of the first
+	 * pixel of each of its lines.
+	 */
+	private void runInterior(final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Interval part,
+			final int[] starts, final int length) {
+		final Object in = storage(source);
+		final Object out = storage(target);
+		final boolean isFloat = isFloatType && in instanceof FloatArray
+				&& out instanceof FloatArray;
+		final boolean isByte = isUnsignedByteType && in instanceof ByteArray
+				&& out instanceof ByteArray;
+
+		if (isFloat) {
+			run(((FloatArray) in).getCurrentStorageArray(),
+					((FloatArray) out).getCurrentStorageArray(), starts, length);
+		} else if (isByte) {
+			run(((ByteArray) in).getCurrentStorageArray(),
+					((ByteArray) out).getCurrentStorageArray(), starts, length);
+		} else {
+			NeighborhoodReduction.reduce(source, target, part, shape,
+					reducer.copy());
+		}
+	}
+
+	private void run(final float[] in, final float[] out,
+			final int[] starts, final int length) {
+		if (floatKernel != null) {
+			for (final int start : starts) {
+				floatKernel.apply(in, out, start, length);
+			}
+			return;
+		}
+
+		final boolean max = operation == Operation.MAX;
+		for (final int start : starts) {
+			final int end = start + length;
+			if (max) {
+				for (int index = start; index < end; ++index) {
+					out[index] = se.max(in, index);
+				}
+			} else {
+				for (int index = start; index < end; ++index) {
+					out[index] = se.min(in, index);
+				}
+			}
+		}
+	}
+
+	private void run(final byte[] in, final byte[] out,
+			final int[] starts, final int length) {
+		if (byteKernel != null) {
+			for (final int start : starts) {
+				byteKernel.apply(in, out, start, length);
+			}
+			return;
+		}
+
+		final boolean max = operation == Operation.MAX;
+		for (final int start : starts) {
+			final int end = start + length;
+			if (max) {
+				for (int index = start; index < end; ++index) {
+					out[index] = (byte) se.maxUnsigned(in, index);
+				}
+			} else {
+				for (int index = start; index < end; ++index) {
+					out[index] = (byte) se.minUnsigned(in, index);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return array index of the first pixel of every line along dimension 0
+	 *         of interior
+	 */
+	private static int[] lineStarts(final Interval interior,
+			final Interval img, final long[] strides) {
+		final int n = interior.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		interior.min(min);
+		interior.max(max);
+		max[0] = min[0];
+
+		long numLines = 1;
+		for (int d = 1; d < n; ++d) {
+			numLines *= interior.dimension(d);
+		}
+
+		final int[] starts = new int[(int) numLines];
+		final IntervalIterator lines = new IntervalIterator(min, max);
+		for (int i = 0; lines.hasNext(); ++i) {
+			lines.fwd();
+
+			long index = 0;
+			for (int d = 0; d < n; ++d) {
+				index += (lines.getLongPosition(d) - img.min(d)) * strides[d];
+			}
+			starts[i] = (int) index;
+		}
+		return starts;
+	}
+
+	private static Object storage(final RandomAccessibleInterval<?> img) {
+		return (img instanceof ArrayImg) ? ((ArrayImg<?, ?>) img).update(null)
+				: null;
+	}
+
+	private static boolean sameInterval(final Interval a, final Interval b) {
+		if (a.numDimensions() != b.numDimensions()) {
+			return false;
+		}
+		for (int d = 0; d < a.numDimensions(); ++d) {
+			if (a.min(d) != b.min(d) || a.max(d) != b.max(d)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
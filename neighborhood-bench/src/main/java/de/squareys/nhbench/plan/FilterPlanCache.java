@@ -0,0 +1,265 @@
+package de.squareys.nhbench.plan;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import de.squareys.nhbench.neighborhood.Boundaries;
+import de.squareys.nhbench.neighborhood.Shapes;
+import de.squareys.nhbench.plan.FilterPlan.Operation;
+
+/**
+ * Bounded, least recently used cache of {@link FilterPlan}s, safe for use by
+ * several threads.
+ *
+ * Plans are looked up by shape name and span (see {@link Shapes}), pixel type
+ * class, image interval, boundary name (see {@link Boundaries}), operation
+ * and whether the plan is specialized, so that callers which create a new
+ * Shape for every call still hit the cache. Plans for shapes and boundaries
+ * without a name are looked up by the identity of the objects instead. Plans
+ * for the same key may be prepared concurrently by several threads on a
+ * miss; only one of them is kept.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class FilterPlanCache {
+
+	/** Default maximum number of cached plans */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final Map<Key, FilterPlan<?>> plans;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity
+	 *            maximum number of cached plans
+	 */
+	public FilterPlanCache(final int capacity) {
+		plans = new LinkedHashMap<Key, FilterPlan<?>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<Key, FilterPlan<?>> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Constructor with {@link #DEFAULT_CAPACITY}.
+	 */
+	public FilterPlanCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Get or prepare a plan.
+	 *
+	 * @param shapeName
+	 *            name of the shape, see {@link Shapes#NAMES}
+	 * @param span
+	 *            span of the shape
+	 * @param type
+	 *            instance of the pixel type
+	 * @param interval
+	 *            interval of the images
+	 * @param boundary
+	 *            name of the boundary, see {@link Boundaries#NAMES}
+	 * @param operation
+	 *            minimum or maximum
+	 * @return the plan
+	 */
+	public <T extends RealType<T>> FilterPlan<T> get(final String shapeName,
+			final int span, final T type, final Interval interval,
+			final String boundary, final Operation operation) {
+		return get(shapeName, span, type, interval, boundary, operation, true);
+	}
+
+	/**
+	 * Get or prepare a plan.
+	 *
+	 * @param shapeName
+	 *            name of the shape, see {@link Shapes#NAMES}
+	 * @param span
+	 *            span of the shape
+	 * @param type
+	 *            instance of the pixel type
+	 * @param interval
+	 *            interval of the images
+	 * @param boundary
+	 *            name of the boundary, see {@link Boundaries#NAMES}
+	 * @param operation
+	 *            minimum or maximum
+	 * @param specialize
+	 *            whether the plan may use a specialized kernel, see
+	 *            {@link FilterPlan}
+	 * @return the plan
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends RealType<T>> FilterPlan<T> get(final String shapeName,
+			final int span, final T type, final Interval interval,
+			final String boundary, final Operation operation,
+			final boolean specialize) {
+		final Key key = new Key(shapeName + ":" + span, type.getClass(),
+				interval, boundary, operation, specialize);
+		final FilterPlan<T> cached = (FilterPlan<T>) lookup(key);
+		if (cached != null) {
+			return cached;
+		}
+
+		// prepare outside of the lock, other keys need not wait for this
+		final Shape shape = Shapes.create(shapeName, span,
+				interval.numDimensions());
+		return (FilterPlan<T>) store(key, new FilterPlan<T>(shape, type,
+				interval, Boundaries.factory(boundary, type), operation,
+				specialize));
+	}
+
+	/**
+	 * Get or prepare a plan for a shape and boundary given as objects, e.g.
+	 * by the caller of a filter. They are compared by identity, so the caller
+	 * has to reuse them to hit the cache.
+	 *
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param type
+	 *            instance of the pixel type
+	 * @param interval
+	 *            interval of the images
+	 * @param outOfBounds
+	 *            factory for values outside of the images
+	 * @param operation
+	 *            minimum or maximum
+	 * @return the plan
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends RealType<T>> FilterPlan<T> get(final Shape shape,
+			final T type, final Interval interval,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final Operation operation) {
+		final Key key = new Key(shape, type.getClass(), interval, outOfBounds,
+				operation, true);
+		final FilterPlan<T> cached = (FilterPlan<T>) lookup(key);
+		if (cached != null) {
+			return cached;
+		}
+
+		return (FilterPlan<T>) store(key, new FilterPlan<T>(shape, type,
+				interval, outOfBounds, operation));
+	}
+
+	private synchronized FilterPlan<?> lookup(final Key key) {
+		final FilterPlan<?> plan = plans.get(key);
+		if (plan != null) {
+			++hits;
+		} else {
+			++misses;
+		}
+		return plan;
+	}
+
+	/**
+	 * @return plan or the plan another thread stored for key meanwhile
+	 */
+	private synchronized FilterPlan<?> store(final Key key,
+			final FilterPlan<?> plan) {
+		final FilterPlan<?> existing = plans.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		plans.put(key, plan);
+		return plan;
+	}
+
+	/**
+	 * @return number of cached plans
+	 */
+	public synchronized int size() {
+		return plans.size();
+	}
+
+	/**
+	 * @return number of lookups which found a plan
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of lookups which had to prepare a plan
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Remove all plans.
+	 */
+	public synchronized void clear() {
+		plans.clear();
+	}
+
+	private static class Key {
+		/* names, or objects compared by identity */
+		private final Object shape;
+		private final Class<?> type;
+		private final long[] min;
+		private final long[] max;
+		private final Object boundary;
+		private final Operation operation;
+		private final boolean specialize;
+		private final int hash;
+
+		Key(final Object shape, final Class<?> type, final Interval interval,
+				final Object boundary, final Operation operation,
+				final boolean specialize) {
+			this.shape = shape;
+			this.type = type;
+			this.min = new long[interval.numDimensions()];
+			this.max = new long[interval.numDimensions()];
+			interval.min(min);
+			interval.max(max);
+			this.boundary = boundary;
+			this.operation = operation;
+			this.specialize = specialize;
+
+			int h = shape.hashCode();
+			h = 31 * h + type.hashCode();
+			h = 31 * h + Arrays.hashCode(min);
+			h = 31 * h + Arrays.hashCode(max);
+			h = 31 * h + boundary.hashCode();
+			h = 31 * h + operation.hashCode();
+			h = 31 * h + (specialize ? 1 : 0);
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return hash == other.hash && shape.equals(other.shape)
+					&& type == other.type && Arrays.equals(min, other.min)
+					&& Arrays.equals(max, other.max)
+					&& boundary.equals(other.boundary)
+					&& operation == other.operation
+					&& specialize == other.specialize;
+		}
+	}
+}
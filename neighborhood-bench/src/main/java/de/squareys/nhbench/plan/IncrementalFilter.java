@@ -0,0 +1,101 @@
+package de.squareys.nhbench.plan;
+
+import java.util.Collection;
+import java.util.List;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+import de.squareys.nhbench.plan.FilterPlan.Operation;
+
+/**
+ * Minimum or maximum filter which keeps its output up to date with a changing
+ * input by recomputing only the pixels affected by a change.
+ *
+ * The filter computes the complete output once with {@link #execute}. After
+ * some intervals of the input changed, e.g. a few tiles of a live
+ * acquisition, {@link #update} recomputes only the {@link DirtyRegions} of
+ * these changes with the same {@link FilterPlan}, so the cost scales with the
+ * size of the change instead of the size of the image.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class IncrementalFilter<T extends RealType<T>> {
+
+	private final FilterPlan<T> plan;
+	private final Interval box;
+	private final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param type
+	 *            instance of the pixel type
+	 * @param interval
+	 *            interval of the images
+	 * @param outOfBounds
+	 *            factory for values outside of the images
+	 * @param operation
+	 *            minimum or maximum
+	 */
+	public IncrementalFilter(final Shape shape, final T type,
+			final Interval interval,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final Operation operation) {
+		this.plan = new FilterPlan<T>(shape, type, interval, outOfBounds,
+				operation);
+		this.box = StructuringElements.boundingBox(shape,
+				interval.numDimensions());
+		this.outOfBounds = outOfBounds;
+	}
+
+	/**
+	 * Compute the complete output.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image, must not be the same as source
+	 */
+	public void execute(final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target) {
+		plan.execute(source, target);
+	}
+
+	/**
+	 * Recompute the output pixels affected by changes of the input. The
+	 * output must be up to date with the input before the changes.
+	 *
+	 * @param source
+	 *            the changed input image
+	 * @param target
+	 *            output image, must not be the same as source
+	 * @param changed
+	 *            intervals of the input which changed
+	 * @return number of recomputed pixels
+	 */
+	public long update(final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target,
+			final Collection<? extends Interval> changed) {
+		final List<Interval> regions = DirtyRegions.affected(changed, box,
+				plan.getInterval(), outOfBounds);
+
+		for (final Interval region : regions) {
+			plan.execute(source, target, region);
+		}
+
+		return DirtyRegions.numElements(regions);
+	}
+
+	/**
+	 * @return the plan used for all computations
+	 */
+	public FilterPlan<T> getPlan() {
+		return plan;
+	}
+}
@@ -0,0 +1,26 @@
+package de.squareys.nhbench.primitive;
+
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+
+/**
+ * How the neighborhoods of pixels near the image border read values outside
+ * of the image.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public enum BoundaryMode {
+
+	/**
+	 * Read through an extended view: the interior is computed without bounds
+	 * logic, the border pixels through an {@link OutOfBoundsFactory}. No extra
+	 * memory.
+	 */
+	OUT_OF_BOUNDS,
+
+	/**
+	 * Copy the input once into a {@link PaddedBuffer} whose halo holds the out
+	 * of bounds values. All pixels are then computed without bounds logic, at
+	 * the cost of one copy and the memory of the padded image.
+	 */
+	PADDED
+}
@@ -0,0 +1,224 @@
+package de.squareys.nhbench.primitive;
+
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.algorithm.neighborhood.HyperSphereShape;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.algorithm.neighborhood.PeriodicLineShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.type.logic.BitType;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+import de.squareys.nhbench.reduce.PrimitiveReducer;
+
+/**
+ * Structuring element of an arbitrary {@link Shape} compiled to linear index
+ * offsets into the flat array of an image with a given stride layout.
+ *
+ * This works for every shape, including {@link HyperSphereShape},
+ * {@link DiamondShape} and {@link PeriodicLineShape}. The offsets are sorted,
+ * so that a reduction walks through the array in increasing address order.
+ * Reductions are tight loops over <code>data[base + offset[i]]</code>, where
+ * base is the index of the center pixel, which must be far enough from the
+ * border for all neighbors to be inside the image (see
+ * {@link #getBoundingBox()}).
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class CompiledStructuringElement {
+
+	private final int[] offsets;
+	private final long[] strides;
+	private final Interval boundingBox;
+
+	private CompiledStructuringElement(final int[] offsets,
+			final long[] strides, final Interval boundingBox) {
+		this.offsets = offsets;
+		this.strides = strides;
+		this.boundingBox = boundingBox;
+	}
+
+	/**
+	 * Compile the structuring element of a shape for an image.
+	 *
+	 * @param shape
+	 *            the shape
+	 * @param img
+	 *            dimensions of the image, in flat iteration order
+	 * @return the compiled structuring element
+	 */
+	public static CompiledStructuringElement compile(final Shape shape,
+			final Interval img) {
+		final int n = img.numDimensions();
+		final long[] strides = strides(img);
+
+		final Neighborhood<BitType> neighborhood = StructuringElements.probe(
+				shape, n);
+		final int[] offsets = new int[(int) neighborhood.size()];
+
+		final Cursor<BitType> c = neighborhood.localizingCursor();
+		int i = 0;
+		while (c.hasNext()) {
+			c.fwd();
+
+			long offset = 0;
+			for (int d = 0; d < n; ++d) {
+				offset += c.getLongPosition(d) * strides[d];
+			}
+			offsets[i++] = (int) offset;
+		}
+
+		Arrays.sort(offsets);
+
+		return new CompiledStructuringElement(offsets, strides,
+				new FinalInterval(neighborhood));
+	}
+
+	/**
+	 * @return the strides of the flat array of an image with the given
+	 *         dimensions
+	 */
+	public static long[] strides(final Interval img) {
+		final int n = img.numDimensions();
+		final long[] strides = new long[n];
+
+		strides[0] = 1;
+		for (int d = 1; d < n; ++d) {
+			strides[d] = strides[d - 1] * img.dimension(d - 1);
+		}
+
+		return strides;
+	}
+
+	/**
+	 * @return sorted linear offsets, do not modify
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * @return strides of the image layout this element was compiled for
+	 */
+	public long[] getStrides() {
+		return strides;
+	}
+
+	/**
+	 * @return bounding box of the structuring element relative to the center
+	 */
+	public Interval getBoundingBox() {
+		return boundingBox;
+	}
+
+	/**
+	 * @return number of pixels in the structuring element
+	 */
+	public int size() {
+		return offsets.length;
+	}
+
+	/**
+	 * @return the minimum of the neighborhood of data[base]
+	 */
+	public float min(final float[] data, final int base) {
+		final int[] o = offsets;
+		float min = Float.MAX_VALUE;
+		for (int i = 0; i < o.length; ++i) {
+			final float v = data[base + o[i]];
+			if (v < min) {
+				min = v;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * @return the maximum of the neighborhood of data[base]
+	 */
+	public float max(final float[] data, final int base) {
+		final int[] o = offsets;
+		float max = -Float.MAX_VALUE;
+		for (int i = 0; i < o.length; ++i) {
+			final float v = data[base + o[i]];
+			if (v > max) {
+				max = v;
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return the minimum of the neighborhood of data[base], interpreting the
+	 *         bytes as unsigned
+	 */
+	public int minUnsigned(final byte[] data, final int base) {
+		final int[] o = offsets;
+		int min = 0xff;
+		for (int i = 0; i < o.length; ++i) {
+			final int v = data[base + o[i]] & 0xff;
+			if (v < min) {
+				min = v;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * @return the maximum of the neighborhood of data[base], interpreting the
+	 *         bytes as unsigned
+	 */
+	public int maxUnsigned(final byte[] data, final int base) {
+		final int[] o = offsets;
+		int max = 0;
+		for (int i = 0; i < o.length; ++i) {
+			final int v = data[base + o[i]] & 0xff;
+			if (v > max) {
+				max = v;
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return the sum of the neighborhood of data[base]
+	 */
+	public double sum(final float[] data, final int base) {
+		final int[] o = offsets;
+		double sum = 0;
+		for (int i = 0; i < o.length; ++i) {
+			sum += data[base + o[i]];
+		}
+		return sum;
+	}
+
+	/**
+	 * Feed the neighborhood of data[base] to a reducer and return its result.
+	 */
+	public double reduce(final float[] data, final int base,
+			final PrimitiveReducer reducer) {
+		final int[] o = offsets;
+		reducer.reset();
+		for (int i = 0; i < o.length; ++i) {
+			reducer.accept(data[base + o[i]]);
+		}
+		return reducer.result();
+	}
+
+	/**
+	 * Feed the neighborhood of data[base] to a reducer and return its result,
+	 * interpreting the bytes as unsigned.
+	 */
+	public double reduceUnsigned(final byte[] data, final int base,
+			final PrimitiveReducer reducer) {
+		final int[] o = offsets;
+		reducer.reset();
+		for (int i = 0; i < o.length; ++i) {
+			reducer.accept(data[base + o[i]] & 0xff);
+		}
+		return reducer.result();
+	}
+}
@@ -0,0 +1,98 @@
+package de.squareys.nhbench.primitive;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Copy of an image padded on every side by the extent of a structuring
+ * element, with the halo filled with the values of an
+ * {@link OutOfBoundsFactory} (mirror, border, zero, periodic, ...).
+ *
+ * Neighborhoods of all pixels of the original image lie completely within the
+ * buffer, so filters can read them without any out of bounds logic. The
+ * buffer is created with the factory of the source if it is an {@link Img},
+ * e.g. an ArrayImg for an ArrayImg source.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class PaddedBuffer<T extends RealType<T>> {
+
+	private final Img<T> img;
+	private final RandomAccessibleInterval<T> view;
+	private final long[] padding;
+
+	/**
+	 * Create the padded copy of source.
+	 *
+	 * @param source
+	 *            the image to pad
+	 * @param box
+	 *            bounding box of the structuring element relative to the
+	 *            center pixel, e.g. [-r, r] in every dimension
+	 * @param outOfBounds
+	 *            factory for the values of the halo
+	 */
+	public PaddedBuffer(final RandomAccessibleInterval<T> source,
+			final Interval box,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds) {
+		final int n = source.numDimensions();
+		final T type = source.randomAccess().get().createVariable();
+
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		final long[] dims = new long[n];
+		padding = new long[n];
+		for (int d = 0; d < n; ++d) {
+			padding[d] = Math.max(0, -box.min(d));
+			min[d] = source.min(d) - padding[d];
+			max[d] = source.max(d) + Math.max(0, box.max(d));
+			dims[d] = max[d] - min[d] + 1;
+		}
+
+		final ImgFactory<T> factory = (source instanceof Img) ? ((Img<T>) source)
+				.factory() : new ListImgFactory<T>();
+		img = factory.create(dims, type);
+		view = Views.translate(img, min);
+
+		// fill the buffer once, including the halo
+		final RandomAccess<T> ra = Views.extend(source, outOfBounds)
+				.randomAccess(new FinalInterval(min, max));
+		final Cursor<T> c = Views.flatIterable(view).localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			ra.setPosition(c);
+			c.get().set(ra.get());
+		}
+	}
+
+	/**
+	 * @return the buffer, with its minimum at the origin
+	 */
+	public Img<T> getImg() {
+		return img;
+	}
+
+	/**
+	 * @return the buffer in the coordinates of the source image, covering the
+	 *         image and its halo
+	 */
+	public RandomAccessibleInterval<T> getView() {
+		return view;
+	}
+
+	/**
+	 * @return offset of the source image's minimum within {@link #getImg()}
+	 */
+	public long[] getPadding() {
+		return padding.clone();
+	}
+}
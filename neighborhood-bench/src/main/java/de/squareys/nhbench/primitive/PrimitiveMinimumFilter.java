@@ -0,0 +1,368 @@
+package de.squareys.nhbench.primitive;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.neighborhood.InteriorBorderExecutor;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+
+/**
+ * Minimum filter working directly on the primitive arrays of {@link ArrayImg}s
+ * of {@link FloatType} and {@link UnsignedByteType}.
+ *
+ * The structuring element is compiled to linear index offsets into the
+ * backing array once (see {@link CompiledStructuringElement}), which works
+ * for any {@link Shape}. For every pixel of the interior of the image, the
+ * minimum is then a tight loop over <code>array[base + offset[i]]</code>,
+ * without any {@link Cursor}, Type flyweight or virtual call. The thin border
+ * is computed with the generic neighborhood path on the extended view.
+ *
+ * Images which are not backed by a float[] or byte[] fall back to the generic
+ * path completely.
+ *
+ * With {@link BoundaryMode#PADDED}, the source is copied into a
+ * {@link PaddedBuffer} first and every pixel, including the border, is
+ * computed with the tight loop.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class PrimitiveMinimumFilter {
+
+	private PrimitiveMinimumFilter() {
+		// utility class
+	}
+
+	/**
+	 * Minimum filter.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same dimensions as source, must not be
+	 *            the same as source
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 */
+	public static <T extends RealType<T>> void minimum(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds) {
+		minimum(source, target, shape, outOfBounds, BoundaryMode.OUT_OF_BOUNDS);
+	}
+
+	/**
+	 * Minimum filter.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same dimensions as source, must not be
+	 *            the same as source
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param mode
+	 *            whether to read border neighborhoods through the out of
+	 *            bounds factory, or to copy source into a
+	 *            {@link PaddedBuffer} first
+	 */
+	public static <T extends RealType<T>> void minimum(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final BoundaryMode mode) {
+		if (mode == BoundaryMode.PADDED) {
+			minimumPadded(source, target, shape, outOfBounds);
+			return;
+		}
+
+		final T type = source.randomAccess().get();
+
+		final boolean isFloat = isFloatArrayImg(source)
+				&& isFloatArrayImg(target);
+		final boolean isByte = isUnsignedByteArrayImg(source)
+				&& isUnsignedByteArrayImg(target);
+
+		if (!(isFloat || isByte) || !sameInterval(source, target)) {
+			// generic fallback
+			NeighborhoodReduction.reduce(Views.extend(source, outOfBounds),
+					target, target, shape, new MinimumReducer<T>(type));
+			return;
+		}
+
+		final CompiledStructuringElement se = CompiledStructuringElement
+				.compile(shape, source);
+		final Interval interior = InteriorBorderExecutor.interior(source,
+				se.getBoundingBox());
+
+		if (interior != null) {
+			if (isFloat) {
+				minimum(floatArray(source), floatArray(target), se, source,
+						interior);
+			} else {
+				minimum(byteArray(source), byteArray(target), se, source,
+						interior);
+			}
+
+			for (final Interval border : InteriorBorderExecutor.borders(
+					source, interior)) {
+				NeighborhoodReduction.reduce(
+						Views.extend(source, outOfBounds), target, border,
+						shape, new MinimumReducer<T>(type));
+			}
+		} else {
+			NeighborhoodReduction.reduce(Views.extend(source, outOfBounds),
+					target, target, shape, new MinimumReducer<T>(type));
+		}
+	}
+
+	private static <T extends RealType<T>> void minimumPadded(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds) {
+		final T type = source.randomAccess().get();
+		final PaddedBuffer<T> padded = new PaddedBuffer<T>(source,
+				StructuringElements.boundingBox(shape,
+						source.numDimensions()), outOfBounds);
+		final Img<T> buffer = padded.getImg();
+
+		final boolean isFloat = isFloatArrayImg(buffer)
+				&& isFloatArrayImg(target);
+		final boolean isByte = isUnsignedByteArrayImg(buffer)
+				&& isUnsignedByteArrayImg(target);
+
+		if (!(isFloat || isByte) || !sameInterval(source, target)) {
+			// generic path, but still without out of bounds views
+			NeighborhoodReduction.reduce(padded.getView(), target, target,
+					shape, new MinimumReducer<T>(type));
+			return;
+		}
+
+		final CompiledStructuringElement se = CompiledStructuringElement
+				.compile(shape, buffer);
+		final long[] targetStrides = CompiledStructuringElement
+				.strides(target);
+		final long[] padding = padded.getPadding();
+
+		if (isFloat) {
+			minimumPadded(floatArray(buffer), floatArray(target), se,
+					padding, target, targetStrides);
+		} else {
+			minimumPadded(byteArray(buffer), byteArray(target), se, padding,
+					target, targetStrides);
+		}
+	}
+
+	private static void minimumPadded(final float[] in, final float[] out,
+			final CompiledStructuringElement se, final long[] padding,
+			final Interval target, final long[] targetStrides) {
+		final long[] bufferStrides = se.getStrides();
+		final int length = (int) target.dimension(0);
+
+		final IntervalIterator lines = lines(target);
+		while (lines.hasNext()) {
+			lines.fwd();
+
+			final int outStart = lineStart(lines, target, targetStrides);
+			final int inStart = paddedLineStart(lines, target, padding,
+					bufferStrides);
+
+			for (int i = 0; i < length; ++i) {
+				out[outStart + i] = se.min(in, inStart + i);
+			}
+		}
+	}
+
+	private static void minimumPadded(final byte[] in, final byte[] out,
+			final CompiledStructuringElement se, final long[] padding,
+			final Interval target, final long[] targetStrides) {
+		final long[] bufferStrides = se.getStrides();
+		final int length = (int) target.dimension(0);
+
+		final IntervalIterator lines = lines(target);
+		while (lines.hasNext()) {
+			lines.fwd();
+
+			final int outStart = lineStart(lines, target, targetStrides);
+			final int inStart = paddedLineStart(lines, target, padding,
+					bufferStrides);
+
+			for (int i = 0; i < length; ++i) {
+				out[outStart + i] = (byte) se.minUnsigned(in, inStart + i);
+			}
+		}
+	}
+
+	/**
+	 * @return the index of the current position of lines in the flat array of
+	 *         a buffer padded around img
+	 */
+	private static int paddedLineStart(final IntervalIterator lines,
+			final Interval img, final long[] padding, final long[] strides) {
+		long index = 0;
+		for (int d = 0; d < strides.length; ++d) {
+			index += (lines.getLongPosition(d) - img.min(d) + padding[d])
+					* strides[d];
+		}
+		return (int) index;
+	}
+
+	/**
+	 * Check whether the filter works on the primitive arrays of the images or
+	 * falls back to the generic path.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image
+	 * @param mode
+	 *            boundary mode the filter is called with
+	 * @return true if the pixels are read from a float[] or byte[]
+	 */
+	public static boolean isPrimitive(final RandomAccessibleInterval<?> source,
+			final RandomAccessibleInterval<?> target, final BoundaryMode mode) {
+		if (!sameInterval(source, target)) {
+			return false;
+		}
+
+		if (mode == BoundaryMode.PADDED) {
+			// the buffer is created with the factory of source
+			final Object type = source.randomAccess().get();
+			final boolean isFloat = type instanceof FloatType
+					&& isFloatArrayImg(target);
+			final boolean isByte = type instanceof UnsignedByteType
+					&& isUnsignedByteArrayImg(target);
+			return source instanceof ArrayImg && (isFloat || isByte);
+		}
+
+		final boolean isFloat = isFloatArrayImg(source)
+				&& isFloatArrayImg(target);
+		final boolean isByte = isUnsignedByteArrayImg(source)
+				&& isUnsignedByteArrayImg(target);
+		return isFloat || isByte;
+	}
+
+	/**
+	 * @return whether img is an {@link ArrayImg} of {@link FloatType} backed by
+	 *         a float[]
+	 */
+	public static boolean isFloatArrayImg(final RandomAccessibleInterval<?> img) {
+		return img instanceof ArrayImg
+				&& ((ArrayImg<?, ?>) img).update(null) instanceof FloatArray
+				&& img.randomAccess().get() instanceof FloatType;
+	}
+
+	/**
+	 * @return whether img is an {@link ArrayImg} of {@link UnsignedByteType}
+	 *         backed by a byte[]
+	 */
+	public static boolean isUnsignedByteArrayImg(
+			final RandomAccessibleInterval<?> img) {
+		return img instanceof ArrayImg
+				&& ((ArrayImg<?, ?>) img).update(null) instanceof ByteArray
+				&& img.randomAccess().get() instanceof UnsignedByteType;
+	}
+
+	private static void minimum(final float[] in, final float[] out,
+			final CompiledStructuringElement se, final Interval img,
+			final Interval interior) {
+		final long[] strides = se.getStrides();
+		final int length = (int) interior.dimension(0);
+
+		final IntervalIterator lines = lines(interior);
+		while (lines.hasNext()) {
+			lines.fwd();
+
+			final int start = lineStart(lines, img, strides);
+			final int end = start + length;
+
+			for (int index = start; index < end; ++index) {
+				out[index] = se.min(in, index);
+			}
+		}
+	}
+
+	private static void minimum(final byte[] in, final byte[] out,
+			final CompiledStructuringElement se, final Interval img,
+			final Interval interior) {
+		final long[] strides = se.getStrides();
+		final int length = (int) interior.dimension(0);
+
+		final IntervalIterator lines = lines(interior);
+		while (lines.hasNext()) {
+			lines.fwd();
+
+			final int start = lineStart(lines, img, strides);
+			final int end = start + length;
+
+			for (int index = start; index < end; ++index) {
+				out[index] = (byte) se.minUnsigned(in, index);
+			}
+		}
+	}
+
+	/**
+	 * @return iterator over the first pixel of every line along dimension 0
+	 */
+	static IntervalIterator lines(final Interval interval) {
+		final int n = interval.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		interval.min(min);
+		interval.max(max);
+		max[0] = min[0];
+
+		return new IntervalIterator(min, max);
+	}
+
+	/**
+	 * @return the index of the current position of lines in the flat array of
+	 *         img
+	 */
+	static int lineStart(final IntervalIterator lines, final Interval img,
+			final long[] strides) {
+		long index = 0;
+		for (int d = 0; d < strides.length; ++d) {
+			index += (lines.getLongPosition(d) - img.min(d)) * strides[d];
+		}
+		return (int) index;
+	}
+
+	static boolean sameInterval(final Interval a, final Interval b) {
+		if (a.numDimensions() != b.numDimensions()) {
+			return false;
+		}
+		for (int d = 0; d < a.numDimensions(); ++d) {
+			if (a.min(d) != b.min(d) || a.max(d) != b.max(d)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static float[] floatArray(final RandomAccessibleInterval<?> img) {
+		return ((FloatArray) ((ArrayImg<?, ?>) img).update(null))
+				.getCurrentStorageArray();
+	}
+
+	private static byte[] byteArray(final RandomAccessibleInterval<?> img) {
+		return ((ByteArray) ((ArrayImg<?, ?>) img).update(null))
+				.getCurrentStorageArray();
+	}
+}
@@ -0,0 +1,141 @@
+package de.squareys.nhbench.primitive;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.neighborhood.InteriorBorderExecutor;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+import de.squareys.nhbench.reduce.PrimitiveNeighborhoodReducer;
+import de.squareys.nhbench.reduce.PrimitiveReducer;
+
+/**
+ * Maps every neighborhood of an image to a value computed by a
+ * {@link PrimitiveReducer}.
+ *
+ * For the interior of {@link ArrayImg}s of {@link FloatType} and
+ * {@link UnsignedByteType}, the neighbors are read from the backing array
+ * with the offsets of a {@link CompiledStructuringElement} and passed to the
+ * reducer as primitives, without iterator or Type flyweight. The target may
+ * be an {@link ArrayImg} of either type as well, which allows e.g. the mean of
+ * a byte image to be written to a float image. The border and any other
+ * images go through {@link PrimitiveNeighborhoodReducer} on the extended view.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class PrimitiveNeighborhoodMap {
+
+	private PrimitiveNeighborhoodMap() {
+		// utility class
+	}
+
+	/**
+	 * Map all neighborhoods of source.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source, must not be
+	 *            the same as source
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param reducer
+	 *            reduction applied to every neighborhood
+	 */
+	public static <I extends RealType<I>, O extends RealType<O>> void map(
+			final RandomAccessibleInterval<I> source,
+			final RandomAccessibleInterval<O> target, final Shape shape,
+			final OutOfBoundsFactory<I, RandomAccessibleInterval<I>> outOfBounds,
+			final PrimitiveReducer reducer) {
+		final boolean floatIn = PrimitiveMinimumFilter.isFloatArrayImg(source);
+		final boolean byteIn = PrimitiveMinimumFilter
+				.isUnsignedByteArrayImg(source);
+		final boolean floatOut = PrimitiveMinimumFilter.isFloatArrayImg(target);
+		final boolean byteOut = PrimitiveMinimumFilter
+				.isUnsignedByteArrayImg(target);
+
+		final CompiledStructuringElement se = CompiledStructuringElement
+				.compile(shape, source);
+		final Interval interior = InteriorBorderExecutor.interior(source,
+				se.getBoundingBox());
+
+		if (!(floatIn || byteIn) || !(floatOut || byteOut)
+				|| !PrimitiveMinimumFilter.sameInterval(source, target)
+				|| interior == null) {
+			// generic fallback
+			NeighborhoodReduction.reduce(Views.extend(source, outOfBounds),
+					target, target, shape,
+					new PrimitiveNeighborhoodReducer<I, O>(reducer));
+			return;
+		}
+
+		final Object in = storage(source);
+		final Object out = storage(target);
+		final long[] strides = se.getStrides();
+		final int length = (int) interior.dimension(0);
+
+		final IntervalIterator lines = PrimitiveMinimumFilter.lines(interior);
+		while (lines.hasNext()) {
+			lines.fwd();
+
+			final int start = PrimitiveMinimumFilter.lineStart(lines, source,
+					strides);
+			final int end = start + length;
+
+			if (floatIn && floatOut) {
+				final float[] i = (float[]) in;
+				final float[] o = (float[]) out;
+				for (int index = start; index < end; ++index) {
+					o[index] = (float) se.reduce(i, index, reducer);
+				}
+			} else if (floatIn) {
+				final float[] i = (float[]) in;
+				final byte[] o = (byte[]) out;
+				for (int index = start; index < end; ++index) {
+					o[index] = (byte) Util.round(se.reduce(i, index, reducer));
+				}
+			} else if (floatOut) {
+				final byte[] i = (byte[]) in;
+				final float[] o = (float[]) out;
+				for (int index = start; index < end; ++index) {
+					o[index] = (float) se.reduceUnsigned(i, index, reducer);
+				}
+			} else {
+				final byte[] i = (byte[]) in;
+				final byte[] o = (byte[]) out;
+				for (int index = start; index < end; ++index) {
+					o[index] = (byte) Util.round(se.reduceUnsigned(i, index,
+							reducer));
+				}
+			}
+		}
+
+		for (final Interval border : InteriorBorderExecutor.borders(source,
+				interior)) {
+			NeighborhoodReduction.reduce(Views.extend(source, outOfBounds),
+					target, border, shape,
+					new PrimitiveNeighborhoodReducer<I, O>(reducer));
+		}
+	}
+
+	/**
+	 * @return the float[] or byte[] backing an {@link ArrayImg}
+	 */
+	private static Object storage(final RandomAccessibleInterval<?> img) {
+		final Object access = ((ArrayImg<?, ?>) img).update(null);
+		return (access instanceof FloatArray) ? ((FloatArray) access)
+				.getCurrentStorageArray() : ((ByteArray) access)
+				.getCurrentStorageArray();
+	}
+}
@@ -0,0 +1,272 @@
+package de.squareys.nhbench.rank;
+
+/**
+ * Perreault/Hebert rank filter on rectangular windows of 2D integer images in
+ * constant time per pixel.
+ *
+ * A histogram is kept for every column, covering the 2*ry+1 rows of the
+ * current window. When moving down one row, every column histogram removes one
+ * pixel and adds one. The kernel histogram is the sum of 2*rx+1 column
+ * histograms and is moved to the right by adding one column histogram and
+ * subtracting another. Neither step depends on the radius.
+ *
+ * Histograms are tiered: a coarse level counts the upper half of the bits of a
+ * value, the fine level the full value. The kernel only keeps the coarse level
+ * up to date for every pixel, a fine segment is synchronized lazily when a
+ * query needs it. With 16 bit values this keeps the per pixel cost at 2*256
+ * instead of 2*65536 bin updates.
+ *
+ * Values outside the image are mirrored like
+ * {@link net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary#SINGLE}.
+ * The image is processed in vertical stripes to bound the memory used by the
+ * column histograms to {@link #MAX_COLUMN_BINS}. Every stripe rebuilds the
+ * histograms of the 2*rx columns it shares with its neighbors and the kernel
+ * histogram at the start of every row, so a stripe is never narrower than
+ * the window, keeping that overhead below one additional column and kernel
+ * update per pixel. With 16 bit values the bound allows 128 columns, so for
+ * rx &gt; 31 the memory grows with rx instead, to (4*rx+1) * 2^16 bins.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class PerreaultHebert {
+
+	/** Maximum number of histogram bins held for the columns of a stripe. */
+	public static final int MAX_COLUMN_BINS = 1 << 23;
+
+	private final int bits;
+	private final int numBins;
+	private final int coarseShift;
+	private final int numCoarse;
+	private final int fineSize;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bits
+	 *            number of bits per value, 1 to 16
+	 */
+	public PerreaultHebert(final int bits) {
+		if (bits < 1 || bits > 16) {
+			throw new IllegalArgumentException(
+					"Only 1 to 16 bits per pixel are supported, was " + bits);
+		}
+		this.bits = bits;
+		this.numBins = 1 << bits;
+		this.coarseShift = bits / 2;
+		this.fineSize = 1 << coarseShift;
+		this.numCoarse = numBins >> coarseShift;
+	}
+
+	/**
+	 * @return number of bits per value
+	 */
+	public int getBits() {
+		return bits;
+	}
+
+	/**
+	 * Rank filter.
+	 *
+	 * @param in
+	 *            input image, line by line, values in [0, 2^bits)
+	 * @param out
+	 *            output image, line by line
+	 * @param width
+	 *            width of the image
+	 * @param height
+	 *            height of the image
+	 * @param rx
+	 *            radius of the window in x
+	 * @param ry
+	 *            radius of the window in y
+	 * @param rank
+	 *            zero based rank of the output value within the sorted window,
+	 *            e.g. <code>(2rx+1)(2ry+1)/2</code> for the median
+	 */
+	public void filter(final int[] in, final int[] out, final int width,
+			final int height, final int rx, final int ry, final int rank) {
+		final int windowSize = (2 * rx + 1) * (2 * ry + 1);
+		if (rank < 0 || rank >= windowSize) {
+			throw new IllegalArgumentException("Rank " + rank
+					+ " is outside of the window of size " + windowSize);
+		}
+
+		final int window = 2 * rx + 1;
+		final int maxColumns = Math.max(window + 2 * rx, MAX_COLUMN_BINS
+				/ numBins);
+		final int stripeWidth = Math.min(width, maxColumns - 2 * rx);
+
+		for (int x0 = 0; x0 < width; x0 += stripeWidth) {
+			filterStripe(in, out, width, height, rx, ry, rank, x0,
+					Math.min(width, x0 + stripeWidth));
+		}
+	}
+
+	/**
+	 * Compute the zero based rank for a percentile of the window.
+	 *
+	 * @param rx
+	 *            radius of the window in x
+	 * @param ry
+	 *            radius of the window in y
+	 * @param percentile
+	 *            percentile in [0, 1], 0.5 is the median
+	 * @return the rank
+	 */
+	public static int rank(final int rx, final int ry, final double percentile) {
+		final int windowSize = (2 * rx + 1) * (2 * ry + 1);
+		return (int) Math.round(percentile * (windowSize - 1));
+	}
+
+	private void filterStripe(final int[] in, final int[] out,
+			final int width, final int height, final int rx, final int ry,
+			final int rank, final int x0, final int x1) {
+		final int window = 2 * rx + 1;
+		final int numColumns = (x1 - x0) + 2 * rx;
+
+		// source column of every stripe column
+		final int[] column = new int[numColumns];
+		for (int c = 0; c < numColumns; ++c) {
+			column[c] = mirror(x0 - rx + c, width);
+		}
+
+		final int[] colFine = new int[numColumns * numBins];
+		final int[] colCoarse = new int[numColumns * numCoarse];
+
+		final int[] kernelCoarse = new int[numCoarse];
+		final int[] kernelFine = new int[numBins];
+		/* last x the fine segment of a coarse bin was synchronized at */
+		final int[] synced = new int[numCoarse];
+
+		// column histograms for the first row
+		for (int dy = -ry; dy <= ry; ++dy) {
+			final int row = mirror(dy, height) * width;
+			for (int c = 0; c < numColumns; ++c) {
+				final int v = in[row + column[c]];
+				++colFine[c * numBins + v];
+				++colCoarse[c * numCoarse + (v >> coarseShift)];
+			}
+		}
+
+		for (int y = 0; y < height; ++y) {
+			if (y > 0) {
+				// move the column histograms down by one row
+				final int oldRow = mirror(y - ry - 1, height) * width;
+				final int newRow = mirror(y + ry, height) * width;
+				for (int c = 0; c < numColumns; ++c) {
+					final int vOld = in[oldRow + column[c]];
+					final int vNew = in[newRow + column[c]];
+					--colFine[c * numBins + vOld];
+					--colCoarse[c * numCoarse + (vOld >> coarseShift)];
+					++colFine[c * numBins + vNew];
+					++colCoarse[c * numCoarse + (vNew >> coarseShift)];
+				}
+			}
+
+			// kernel histogram for the first pixel of the row
+			for (int b = 0; b < numCoarse; ++b) {
+				kernelCoarse[b] = 0;
+				synced[b] = Integer.MIN_VALUE;
+			}
+			for (int c = 0; c < window; ++c) {
+				add(colCoarse, c * numCoarse, kernelCoarse, 0, numCoarse, 1);
+			}
+
+			final int outRow = y * width;
+			for (int x = x0; x < x1; ++x) {
+				final int c = x - x0;
+				if (x > x0) {
+					// move the kernel to the right by one column
+					add(colCoarse, (c + window - 1) * numCoarse, kernelCoarse,
+							0, numCoarse, 1);
+					add(colCoarse, (c - 1) * numCoarse, kernelCoarse, 0,
+							numCoarse, -1);
+				}
+
+				// find the coarse bin containing the rank
+				int remaining = rank;
+				int b = 0;
+				while (remaining >= kernelCoarse[b]) {
+					remaining -= kernelCoarse[b];
+					++b;
+				}
+
+				syncFine(colFine, kernelFine, synced, b, c, window);
+
+				// find the value within the coarse bin
+				int v = b * fineSize;
+				while (remaining >= kernelFine[v]) {
+					remaining -= kernelFine[v];
+					++v;
+				}
+
+				out[outRow + x] = v;
+			}
+		}
+	}
+
+	/**
+	 * Bring the fine segment of coarse bin b of the kernel histogram to the
+	 * window starting at stripe column c.
+	 */
+	private void syncFine(final int[] colFine, final int[] kernelFine,
+			final int[] synced, final int b, final int c, final int window) {
+		final int offset = b * fineSize;
+		final int last = synced[b];
+
+		if (last == c) {
+			return;
+		}
+
+		if (last == Integer.MIN_VALUE || c - last >= window) {
+			// too far behind, rebuild the segment
+			for (int i = offset; i < offset + fineSize; ++i) {
+				kernelFine[i] = 0;
+			}
+			for (int w = c; w < c + window; ++w) {
+				add(colFine, w * numBins + offset, kernelFine, offset,
+						fineSize, 1);
+			}
+		} else {
+			for (int s = last + 1; s <= c; ++s) {
+				add(colFine, (s + window - 1) * numBins + offset, kernelFine,
+						offset, fineSize, 1);
+				add(colFine, (s - 1) * numBins + offset, kernelFine, offset,
+						fineSize, -1);
+			}
+		}
+
+		synced[b] = c;
+	}
+
+	private static void add(final int[] src, final int srcOffset,
+			final int[] dst, final int dstOffset, final int length,
+			final int sign) {
+		if (sign > 0) {
+			for (int i = 0; i < length; ++i) {
+				dst[dstOffset + i] += src[srcOffset + i];
+			}
+		} else {
+			for (int i = 0; i < length; ++i) {
+				dst[dstOffset + i] -= src[srcOffset + i];
+			}
+		}
+	}
+
+	/**
+	 * Mirror a position into [0, size) without repeating the border pixel.
+	 */
+	static int mirror(final int x, final int size) {
+		if (size == 1) {
+			return 0;
+		}
+
+		final int period = 2 * size - 2;
+		int m = x % period;
+		if (m < 0) {
+			m += period;
+		}
+
+		return (m < size) ? m : period - m;
+	}
+}
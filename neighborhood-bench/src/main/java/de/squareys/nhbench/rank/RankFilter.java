@@ -0,0 +1,106 @@
+package de.squareys.nhbench.rank;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+
+/**
+ * Rank filter (median, percentiles, ...) for 2D {@link UnsignedByteType} and
+ * {@link UnsignedShortType} images on rectangular neighborhoods, using
+ * {@link PerreaultHebert} with a mirror single boundary.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class RankFilter {
+
+	private RankFilter() {
+		// utility class
+	}
+
+	/**
+	 * Median filter.
+	 *
+	 * @see #rank(RandomAccessibleInterval, RandomAccessibleInterval, Shape,
+	 *      double)
+	 */
+	public static <T extends IntegerType<T>> void median(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape) {
+		rank(source, target, shape, 0.5);
+	}
+
+	/**
+	 * Rank filter.
+	 *
+	 * @param source
+	 *            2D input image of {@link UnsignedByteType} or
+	 *            {@link UnsignedShortType}
+	 * @param target
+	 *            output image with the same interval as source
+	 * @param shape
+	 *            rectangular shape, e.g. {@link RectangleShape}
+	 * @param percentile
+	 *            percentile in [0, 1], 0.5 is the median
+	 */
+	public static <T extends IntegerType<T>> void rank(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final double percentile) {
+		if (source.numDimensions() != 2) {
+			throw new IllegalArgumentException(
+					"Only 2D images are supported, got "
+							+ source.numDimensions() + " dimensions");
+		}
+		if (!StructuringElements.isBox(shape, 2)) {
+			throw new IllegalArgumentException(
+					"Shape is not a rectangle: " + shape);
+		}
+
+		final Interval box = StructuringElements.boundingBox(shape, 2);
+		final int rx = (int) box.max(0);
+		final int ry = (int) box.max(1);
+		if (box.min(0) != -rx || box.min(1) != -ry) {
+			throw new IllegalArgumentException(
+					"Shape is not centered: " + shape);
+		}
+
+		final int bits = bits(source.randomAccess().get());
+		final int width = (int) source.dimension(0);
+		final int height = (int) source.dimension(1);
+
+		final int[] in = new int[width * height];
+		final int[] out = new int[width * height];
+
+		int i = 0;
+		for (final T t : Views.flatIterable(source)) {
+			in[i++] = t.getInteger();
+		}
+
+		new PerreaultHebert(bits).filter(in, out, width, height, rx, ry,
+				PerreaultHebert.rank(rx, ry, percentile));
+
+		i = 0;
+		final Cursor<T> c = Views.flatIterable(target).cursor();
+		while (c.hasNext()) {
+			c.next().setInteger(out[i++]);
+		}
+	}
+
+	private static int bits(final Object type) {
+		if (type instanceof UnsignedByteType) {
+			return 8;
+		}
+		if (type instanceof UnsignedShortType) {
+			return 16;
+		}
+		throw new IllegalArgumentException("Unsupported pixel type: "
+				+ type.getClass().getSimpleName());
+	}
+}
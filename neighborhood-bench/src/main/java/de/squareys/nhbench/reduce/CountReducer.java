@@ -0,0 +1,37 @@
+package de.squareys.nhbench.reduce;
+
+/**
+ * {@link PrimitiveReducer} counting the neighbors, e.g. to normalize sums of
+ * neighborhoods clipped at the image border.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public final class CountReducer implements PrimitiveReducer {
+
+	private long count;
+
+	@Override
+	public void reset() {
+		count = 0;
+	}
+
+	@Override
+	public void accept(final float value) {
+		++count;
+	}
+
+	@Override
+	public void accept(final int value) {
+		++count;
+	}
+
+	@Override
+	public double result() {
+		return count;
+	}
+
+	@Override
+	public CountReducer copy() {
+		return new CountReducer();
+	}
+}
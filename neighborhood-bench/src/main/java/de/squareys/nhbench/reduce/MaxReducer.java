@@ -0,0 +1,40 @@
+package de.squareys.nhbench.reduce;
+
+/**
+ * {@link PrimitiveReducer} computing the maximum.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public final class MaxReducer implements PrimitiveReducer {
+
+	private float max;
+
+	@Override
+	public void reset() {
+		max = -Float.MAX_VALUE;
+	}
+
+	@Override
+	public void accept(final float value) {
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	@Override
+	public void accept(final int value) {
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	@Override
+	public double result() {
+		return max;
+	}
+
+	@Override
+	public MaxReducer copy() {
+		return new MaxReducer();
+	}
+}
@@ -0,0 +1,41 @@
+package de.squareys.nhbench.reduce;
+
+/**
+ * {@link PrimitiveReducer} computing the arithmetic mean. The mean of no
+ * values is NaN.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public final class MeanReducer implements PrimitiveReducer {
+
+	private double sum;
+	private long count;
+
+	@Override
+	public void reset() {
+		sum = 0;
+		count = 0;
+	}
+
+	@Override
+	public void accept(final float value) {
+		sum += value;
+		++count;
+	}
+
+	@Override
+	public void accept(final int value) {
+		sum += value;
+		++count;
+	}
+
+	@Override
+	public double result() {
+		return sum / count;
+	}
+
+	@Override
+	public MeanReducer copy() {
+		return new MeanReducer();
+	}
+}
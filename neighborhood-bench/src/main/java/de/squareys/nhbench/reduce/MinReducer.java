@@ -0,0 +1,40 @@
+package de.squareys.nhbench.reduce;
+
+/**
+ * {@link PrimitiveReducer} computing the minimum.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public final class MinReducer implements PrimitiveReducer {
+
+	private float min;
+
+	@Override
+	public void reset() {
+		min = Float.MAX_VALUE;
+	}
+
+	@Override
+	public void accept(final float value) {
+		if (value < min) {
+			min = value;
+		}
+	}
+
+	@Override
+	public void accept(final int value) {
+		if (value < min) {
+			min = value;
+		}
+	}
+
+	@Override
+	public double result() {
+		return min;
+	}
+
+	@Override
+	public MinReducer copy() {
+		return new MinReducer();
+	}
+}
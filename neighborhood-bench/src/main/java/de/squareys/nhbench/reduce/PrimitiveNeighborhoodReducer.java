@@ -0,0 +1,50 @@
+package de.squareys.nhbench.reduce;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.type.numeric.RealType;
+import de.squareys.nhbench.neighborhood.NeighborhoodReducer;
+
+/**
+ * {@link NeighborhoodReducer} feeding the values of a {@link Neighborhood} to
+ * a {@link PrimitiveReducer}, for images and borders which have no primitive
+ * array to read from.
+ *
+ * @param <I>
+ *            type of the neighborhood values
+ * @param <O>
+ *            type of the output value
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class PrimitiveNeighborhoodReducer<I extends RealType<I>, O extends RealType<O>>
+		implements NeighborhoodReducer<I, O> {
+
+	private final PrimitiveReducer reducer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param reducer
+	 *            the reducer to feed, not shared with other threads
+	 */
+	public PrimitiveNeighborhoodReducer(final PrimitiveReducer reducer) {
+		this.reducer = reducer;
+	}
+
+	@Override
+	public void reduce(final Neighborhood<I> neighborhood, final O output) {
+		final Cursor<I> cursor = neighborhood.cursor();
+		reducer.reset();
+
+		while (cursor.hasNext()) {
+			reducer.accept(cursor.next().getRealFloat());
+		}
+
+		output.setReal(reducer.result());
+	}
+
+	@Override
+	public PrimitiveNeighborhoodReducer<I, O> copy() {
+		return new PrimitiveNeighborhoodReducer<I, O>(reducer.copy());
+	}
+}
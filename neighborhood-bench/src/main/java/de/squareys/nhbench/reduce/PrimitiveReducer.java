@@ -0,0 +1,49 @@
+package de.squareys.nhbench.reduce;
+
+/**
+ * Streaming reduction of primitive neighborhood values to a single value.
+ *
+ * Drivers call {@link #reset()} before every neighborhood, then one of the
+ * accept methods for every neighbor and finally {@link #result()}. Values are
+ * passed as primitives, so the inner loop of a driver needs neither an
+ * iterator nor Type flyweights.
+ *
+ * Implementations hold the state of the running reduction. Drivers running
+ * on multiple threads therefore create a {@link #copy()} for every worker.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public interface PrimitiveReducer {
+
+	/**
+	 * Start a new neighborhood.
+	 */
+	void reset();
+
+	/**
+	 * Add a neighbor value.
+	 *
+	 * @param value
+	 *            value of the neighbor
+	 */
+	void accept(float value);
+
+	/**
+	 * Add a neighbor value of an integer image.
+	 *
+	 * @param value
+	 *            value of the neighbor, e.g. an unsigned byte
+	 */
+	void accept(int value);
+
+	/**
+	 * @return the reduction of all values accepted since the last
+	 *         {@link #reset()}
+	 */
+	double result();
+
+	/**
+	 * @return a copy of this reducer which does not share any state with it
+	 */
+	PrimitiveReducer copy();
+}
@@ -0,0 +1,56 @@
+package de.squareys.nhbench.reduce;
+
+/**
+ * Names of the {@link PrimitiveReducer} implementations, for benchmark
+ * parameters and command lines.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class PrimitiveReducers {
+
+	public static final String MIN = "min";
+	public static final String MAX = "max";
+	public static final String SUM = "sum";
+	public static final String MEAN = "mean";
+	public static final String VARIANCE = "variance";
+	public static final String COUNT = "count";
+
+	/**
+	 * All reducer names.
+	 */
+	public static final String[] NAMES = { MIN, MAX, SUM, MEAN, VARIANCE,
+			COUNT };
+
+	private PrimitiveReducers() {
+		// utility class
+	}
+
+	/**
+	 * Create a reducer.
+	 *
+	 * @param name
+	 *            one of {@link #NAMES}
+	 * @return a new reducer
+	 */
+	public static PrimitiveReducer create(final String name) {
+		if (MIN.equals(name)) {
+			return new MinReducer();
+		}
+		if (MAX.equals(name)) {
+			return new MaxReducer();
+		}
+		if (SUM.equals(name)) {
+			return new SumReducer();
+		}
+		if (MEAN.equals(name)) {
+			return new MeanReducer();
+		}
+		if (VARIANCE.equals(name)) {
+			return new VarianceReducer();
+		}
+		if (COUNT.equals(name)) {
+			return new CountReducer();
+		}
+		throw new IllegalArgumentException("Unknown reducer: " + name);
+	}
+}
@@ -0,0 +1,39 @@
+package de.squareys.nhbench.reduce;
+
+/**
+ * {@link PrimitiveReducer} computing the sum. Integer values are summed
+ * exactly.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public final class SumReducer implements PrimitiveReducer {
+
+	private double sum;
+	private long intSum;
+
+	@Override
+	public void reset() {
+		sum = 0;
+		intSum = 0;
+	}
+
+	@Override
+	public void accept(final float value) {
+		sum += value;
+	}
+
+	@Override
+	public void accept(final int value) {
+		intSum += value;
+	}
+
+	@Override
+	public double result() {
+		return sum + intSum;
+	}
+
+	@Override
+	public SumReducer copy() {
+		return new SumReducer();
+	}
+}
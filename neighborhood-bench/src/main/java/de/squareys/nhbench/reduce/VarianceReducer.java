@@ -0,0 +1,51 @@
+package de.squareys.nhbench.reduce;
+
+/**
+ * {@link PrimitiveReducer} computing the sample variance (normalized by
+ * <code>n - 1</code>, like <code>Ops.Stats.Variance</code>).
+ *
+ * Uses Welford's update, which is numerically stable in a single pass. The
+ * variance of less than two values is NaN.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public final class VarianceReducer implements PrimitiveReducer {
+
+	private long count;
+	private double mean;
+	private double m2;
+
+	@Override
+	public void reset() {
+		count = 0;
+		mean = 0;
+		m2 = 0;
+	}
+
+	@Override
+	public void accept(final float value) {
+		add(value);
+	}
+
+	@Override
+	public void accept(final int value) {
+		add(value);
+	}
+
+	private void add(final double value) {
+		++count;
+		final double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+	}
+
+	@Override
+	public double result() {
+		return (count < 2) ? Double.NaN : m2 / (count - 1);
+	}
+
+	@Override
+	public VarianceReducer copy() {
+		return new VarianceReducer();
+	}
+}
@@ -0,0 +1,260 @@
+package de.squareys.nhbench.results;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares a run against a baseline run.
+ *
+ * Results are matched by {@link ResultRecord#getKey()}. A difference is only
+ * reported as speedup or regression if the confidence intervals (score +/-
+ * JMH score error) of both results do not overlap; otherwise it is considered
+ * noise.
+ *
+ * The baseline score is converted to the unit of the current score first, so
+ * e.g. ms/op and us/op results are compared correctly. Results in units which
+ * cannot be converted into each other are refused. Results recorded before a
+ * benchmark gained a parameter are matched via the defaults
+ * {@link ResultStore} fills in when loading them.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class RegressionReport {
+
+	/**
+	 * Outcome of comparing a single benchmark configuration.
+	 */
+	public static enum Verdict {
+		FASTER, SLOWER, UNCHANGED, NEW, MISSING
+	}
+
+	/**
+	 * Comparison of a single benchmark configuration.
+	 */
+	public static class Entry {
+		private final ResultRecord baseline;
+		private final ResultRecord current;
+
+		/**
+		 * @throws IllegalArgumentException
+		 *             if the units of the scores cannot be converted
+		 */
+		public Entry(final ResultRecord baseline, final ResultRecord current) {
+			this.baseline = (baseline != null && current != null) ? baseline
+					.toUnit(current.getUnit()) : baseline;
+			this.current = current;
+		}
+
+		public ResultRecord getBaseline() {
+			return baseline;
+		}
+
+		public ResultRecord getCurrent() {
+			return current;
+		}
+
+		/**
+		 * @return factor by which the current run is faster than the
+		 *         baseline, &gt; 1 is an improvement, NaN if either is missing
+		 */
+		public double getSpeedup() {
+			if (baseline == null || current == null) {
+				return Double.NaN;
+			}
+			return current.isHigherBetter() ? current.getScore()
+					/ baseline.getScore() : baseline.getScore()
+					/ current.getScore();
+		}
+
+		/**
+		 * @return whether the confidence intervals do not overlap
+		 */
+		public boolean isSignificant() {
+			if (baseline == null || current == null) {
+				return false;
+			}
+			final double baselineError = errorOf(baseline);
+			final double currentError = errorOf(current);
+
+			return baseline.getScore() + baselineError < current.getScore()
+					- currentError
+					|| current.getScore() + currentError < baseline.getScore()
+							- baselineError;
+		}
+
+		public Verdict getVerdict() {
+			if (baseline == null) {
+				return Verdict.NEW;
+			}
+			if (current == null) {
+				return Verdict.MISSING;
+			}
+			if (!isSignificant()) {
+				return Verdict.UNCHANGED;
+			}
+			return (getSpeedup() > 1) ? Verdict.FASTER : Verdict.SLOWER;
+		}
+
+		private static double errorOf(final ResultRecord r) {
+			/* single sample runs have no error estimate */
+			final double error = r.getError();
+			return (Double.isNaN(error) || Double.isInfinite(error)) ? 0
+					: error;
+		}
+	}
+
+	private final ResultStore.Run baseline;
+	private final ResultStore.Run current;
+	private final List<Entry> entries;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param baseline
+	 *            run to compare against
+	 * @param current
+	 *            run to compare
+	 */
+	public RegressionReport(final ResultStore.Run baseline,
+			final ResultStore.Run current) {
+		this.baseline = baseline;
+		this.current = current;
+
+		final Map<String, ResultRecord> baselineRecords = index(baseline);
+		final Map<String, ResultRecord> currentRecords = index(current);
+
+		entries = new ArrayList<Entry>();
+		for (final Map.Entry<String, ResultRecord> e : currentRecords
+				.entrySet()) {
+			entries.add(new Entry(baselineRecords.remove(e.getKey()), e
+					.getValue()));
+		}
+		for (final ResultRecord r : baselineRecords.values()) {
+			entries.add(new Entry(r, null));
+		}
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return number of entries with the given verdict
+	 */
+	public int count(final Verdict verdict) {
+		int count = 0;
+		for (final Entry e : entries) {
+			if (e.getVerdict() == verdict) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return whether any benchmark got significantly slower
+	 */
+	public boolean hasRegressions() {
+		return count(Verdict.SLOWER) > 0;
+	}
+
+	/**
+	 * Print the report.
+	 *
+	 * @param out
+	 *            stream to print to
+	 */
+	public void print(final PrintStream out) {
+		out.println("Baseline: " + describe(baseline));
+		out.println("Current:  " + describe(current));
+
+		for (final String key : new String[] { RunMetadata.JVM,
+				RunMetadata.CPU, RunMetadata.CORES, RunMetadata.THREADS,
+				RunMetadata.MAX_VECTOR_BYTES }) {
+			final String a = baseline.getMetadata().get(key);
+			final String b = current.getMetadata().get(key);
+			if (!a.equals(b)) {
+				out.println("WARNING: " + key + " differs: " + a + " vs. " + b);
+			}
+		}
+		out.println();
+
+		out.println(String.format("%-10s %8s  %-28s %-28s %s", "Verdict",
+				"Speedup", "Baseline", "Current", "Benchmark"));
+		for (final Entry e : entries) {
+			final ResultRecord any = (e.getCurrent() != null) ? e.getCurrent()
+					: e.getBaseline();
+			out.println(String.format("%-10s %8s  %-28s %-28s %s %s", e
+					.getVerdict(), Double.isNaN(e.getSpeedup()) ? "-" : String
+					.format("%.3fx", e.getSpeedup()), format(e.getBaseline()),
+					format(e.getCurrent()), shortName(any.getBenchmark()), any
+							.getParamsString()));
+		}
+
+		out.println();
+		out.println(String.format(
+				"%d faster, %d slower, %d unchanged, %d new, %d missing",
+				count(Verdict.FASTER), count(Verdict.SLOWER),
+				count(Verdict.UNCHANGED), count(Verdict.NEW),
+				count(Verdict.MISSING)));
+	}
+
+	/**
+	 * Compare two runs without running any benchmarks.
+	 *
+	 * @param args
+	 *            baseline and current run, each a run id of the store in
+	 *            {@link ResultStore#DEFAULT_DIRECTORY} or a path to a CSV file
+	 * @throws IOException
+	 *             if a run could not be read
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: RegressionReport <baseline> <current>");
+			System.exit(2);
+		}
+
+		final ResultStore store = new ResultStore(new File(
+				ResultStore.DEFAULT_DIRECTORY));
+		final RegressionReport report = new RegressionReport(store
+				.load(args[0]), store.load(args[1]));
+		report.print(System.out);
+
+		if (report.hasRegressions()) {
+			System.exit(1);
+		}
+	}
+
+	private static Map<String, ResultRecord> index(final ResultStore.Run run) {
+		final Map<String, ResultRecord> records = new LinkedHashMap<String, ResultRecord>();
+		for (final ResultRecord r : run.getRecords()) {
+			records.put(r.getKey(), r);
+		}
+		return records;
+	}
+
+	private static String describe(final ResultStore.Run run) {
+		final RunMetadata m = run.getMetadata();
+		return m.get(RunMetadata.RUN_ID) + " (" + m.get(RunMetadata.GIT_REVISION)
+				+ ", " + m.get(RunMetadata.JVM) + ")";
+	}
+
+	private static String format(final ResultRecord r) {
+		if (r == null) {
+			return "-";
+		}
+		return String.format("%.3f +- %.3f %s", r.getScore(), r.getError(), r
+				.getUnit());
+	}
+
+	private static String shortName(final String benchmark) {
+		final int method = benchmark.lastIndexOf('.');
+		final int clazz = benchmark.lastIndexOf('.', method - 1);
+		return benchmark.substring(clazz + 1);
+	}
+}
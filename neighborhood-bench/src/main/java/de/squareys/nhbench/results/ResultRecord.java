@@ -0,0 +1,219 @@
+package de.squareys.nhbench.results;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * Normalized result of a single benchmark configuration.
+ *
+ * Parameters are kept sorted and without empty values, so that results from
+ * runs with different parameter sets (and therefore different CSV columns)
+ * can be matched by {@link #getKey()}.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class ResultRecord {
+
+	private static final String PER_OP = "/op";
+	private static final String OPS_PER = "ops/";
+
+	private final String benchmark;
+	private final SortedMap<String, String> params;
+	private final String mode;
+	private final int threads;
+	private final double score;
+	private final double error;
+	private final String unit;
+	private final long samples;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param benchmark
+	 *            fully qualified name of the benchmark method
+	 * @param params
+	 *            benchmark parameters, empty values are dropped
+	 * @param mode
+	 *            short JMH mode label, e.g. "avgt" or "thrpt"
+	 * @param threads
+	 *            number of JMH threads
+	 * @param score
+	 *            primary score
+	 * @param error
+	 *            half width of the confidence interval of the score, NaN if
+	 *            unknown
+	 * @param unit
+	 *            unit of the score
+	 * @param samples
+	 *            number of samples
+	 */
+	public ResultRecord(final String benchmark,
+			final Map<String, String> params, final String mode,
+			final int threads, final double score, final double error,
+			final String unit, final long samples) {
+		this.benchmark = benchmark;
+		this.params = new TreeMap<String, String>();
+		for (final Map.Entry<String, String> e : params.entrySet()) {
+			if (e.getValue() != null && !e.getValue().isEmpty()) {
+				this.params.put(e.getKey(), e.getValue());
+			}
+		}
+		this.mode = mode;
+		this.threads = threads;
+		this.score = score;
+		this.error = error;
+		this.unit = unit;
+		this.samples = samples;
+	}
+
+	/**
+	 * Convert a JMH result.
+	 *
+	 * @param result
+	 *            result of a benchmark configuration
+	 * @return the normalized record
+	 */
+	public static ResultRecord fromRunResult(final RunResult result) {
+		final BenchmarkParams benchmarkParams = result.getParams();
+		final Result<?> primary = result.getPrimaryResult();
+
+		final Map<String, String> params = new TreeMap<String, String>();
+		for (final String key : benchmarkParams.getParamsKeys()) {
+			params.put(key, benchmarkParams.getParam(key));
+		}
+
+		return new ResultRecord(benchmarkParams.getBenchmark(), params,
+				benchmarkParams.getMode().shortLabel(),
+				benchmarkParams.getThreads(), primary.getScore(),
+				primary.getScoreError(), primary.getScoreUnit(),
+				primary.getSampleCount());
+	}
+
+	/**
+	 * @return key identifying the benchmark configuration
+	 */
+	public String getKey() {
+		return benchmark + " " + getParamsString() + " " + mode + " "
+				+ threads;
+	}
+
+	/**
+	 * @return parameters as "key=value" pairs separated by ';'
+	 */
+	public String getParamsString() {
+		final StringBuilder sb = new StringBuilder();
+		for (final Map.Entry<String, String> e : params.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append(';');
+			}
+			sb.append(e.getKey()).append('=').append(e.getValue());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Convert score and error to another unit of the same kind, e.g. "us/op"
+	 * to "ms/op" or "ops/s" to "ops/ms".
+	 *
+	 * @param target
+	 *            unit to convert to
+	 * @return this record if it already has the unit, otherwise a copy with
+	 *         converted score and error
+	 * @throws IllegalArgumentException
+	 *             if the units cannot be converted into each other
+	 */
+	public ResultRecord toUnit(final String target) {
+		if ((unit == null) ? target == null : unit.equals(target)) {
+			return this;
+		}
+
+		double factor = Double.NaN;
+		if (unit != null && target != null) {
+			if (unit.endsWith(PER_OP) && target.endsWith(PER_OP)) {
+				// time per operation
+				factor = seconds(unit.substring(0, unit.length()
+						- PER_OP.length()))
+						/ seconds(target.substring(0, target.length()
+								- PER_OP.length()));
+			} else if (unit.startsWith(OPS_PER) && target.startsWith(OPS_PER)) {
+				// operations per time
+				factor = seconds(target.substring(OPS_PER.length()))
+						/ seconds(unit.substring(OPS_PER.length()));
+			}
+		}
+		if (Double.isNaN(factor)) {
+			throw new IllegalArgumentException("Cannot convert " + unit
+					+ " to " + target + " for " + getKey());
+		}
+
+		return new ResultRecord(benchmark, params, mode, threads, score
+				* factor, error * factor, target, samples);
+	}
+
+	/**
+	 * @return seconds of a JMH time unit label, NaN if unknown
+	 */
+	private static double seconds(final String label) {
+		if ("ns".equals(label)) {
+			return 1e-9;
+		} else if ("us".equals(label)) {
+			return 1e-6;
+		} else if ("ms".equals(label)) {
+			return 1e-3;
+		} else if ("s".equals(label)) {
+			return 1;
+		} else if ("min".equals(label)) {
+			return 60;
+		} else if ("hr".equals(label)) {
+			return 60 * 60;
+		} else if ("day".equals(label)) {
+			return 24 * 60 * 60;
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * @return whether a higher score is better, true for throughput
+	 */
+	public boolean isHigherBetter() {
+		return "thrpt".equals(mode);
+	}
+
+	public String getBenchmark() {
+		return benchmark;
+	}
+
+	public SortedMap<String, String> getParams() {
+		return Collections.unmodifiableSortedMap(params);
+	}
+
+	public String getMode() {
+		return mode;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	public double getError() {
+		return error;
+	}
+
+	public String getUnit() {
+		return unit;
+	}
+
+	public long getSamples() {
+		return samples;
+	}
+}
@@ -0,0 +1,341 @@
+package de.squareys.nhbench.results;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.squareys.nhbench.imglib2.IterateNeighborhoodsBenchmark;
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.minfilter.MinimumFilterBenchmark;
+import de.squareys.nhbench.minfilter.MinimumFilterBenchmark2D;
+
+/**
+ * Directory of normalized benchmark results, one CSV file per run.
+ *
+ * Every file starts with the {@link RunMetadata} as "# key=value" lines,
+ * followed by one row per benchmark configuration. Parameters are stored in a
+ * single column (see {@link ResultRecord#getParamsString()}), so runs of
+ * different benchmarks share the same columns.
+ *
+ * CSV files written by JMH directly (with one "Param: ..." column per
+ * parameter) can be read as well, their metadata is unknown.
+ *
+ * Results recorded before a benchmark gained a parameter lack it, so their
+ * keys would never match current results. When reading, such records get the
+ * value of the parameter which reproduces the earlier behavior, e.g.
+ * size=file for the minimum filter benchmarks, which always read the input
+ * file before. Likewise, parameters which were removed are dropped if they
+ * have the value the benchmark now always behaves like. Other legacy
+ * configurations show up as NEW or MISSING in a {@link RegressionReport}.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class ResultStore {
+
+	/** Default location of the store, relative to the working directory */
+	public static final String DEFAULT_DIRECTORY = "results/store";
+
+	private static final String EXTENSION = ".csv";
+	private static final String METADATA_PREFIX = "# ";
+	private static final String JMH_PARAM_PREFIX = "Param: ";
+	private static final String HEADER = "\"Benchmark\",\"Params\",\"Mode\",\"Threads\","
+			+ "\"Samples\",\"Score\",\"Score Error (99.9%)\",\"Unit\"";
+
+	/* benchmark class, parameter, value reproducing the behavior before */
+	private static final String[][] ADDED_PARAMS = {
+			{ MinimumFilterBenchmark.class.getName(), "size",
+					BenchmarkInput.FILE },
+			{ MinimumFilterBenchmark.class.getName(), "content", "noise" },
+			{ MinimumFilterBenchmark2D.class.getName(), "size",
+					BenchmarkInput.FILE },
+			{ MinimumFilterBenchmark2D.class.getName(), "content", "noise" },
+			{ IterateNeighborhoodsBenchmark.class.getName(), "size",
+					"100x100" },
+			{ IterateNeighborhoodsBenchmark.class.getName(), "iterationType",
+					"foreach" } };
+
+	/* benchmark class, parameter, value the benchmark now always uses */
+	private static final String[][] REMOVED_PARAMS = { {
+			IterateNeighborhoodsBenchmark.class.getName(), "optimized",
+			"true" } };
+
+	private final File directory;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory
+	 *            directory of the store, created on first save
+	 */
+	public ResultStore(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * A stored run: metadata and results.
+	 */
+	public static class Run {
+		private final RunMetadata metadata;
+		private final List<ResultRecord> records;
+
+		public Run(final RunMetadata metadata, final List<ResultRecord> records) {
+			this.metadata = metadata;
+			this.records = records;
+		}
+
+		public RunMetadata getMetadata() {
+			return metadata;
+		}
+
+		public List<ResultRecord> getRecords() {
+			return records;
+		}
+	}
+
+	/**
+	 * Save a run under its {@link RunMetadata#RUN_ID}.
+	 *
+	 * @return the file the run was written to
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public File save(final Run run) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory);
+		}
+
+		final File file = new File(directory, run.getMetadata().get(
+				RunMetadata.RUN_ID)
+				+ EXTENSION);
+		final PrintWriter writer = new PrintWriter(new FileWriter(file));
+		try {
+			for (final Map.Entry<String, String> e : run.getMetadata()
+					.getValues().entrySet()) {
+				writer.println(METADATA_PREFIX + e.getKey() + "="
+						+ e.getValue());
+			}
+			writer.println(HEADER);
+			for (final ResultRecord r : run.getRecords()) {
+				writer.println(quote(r.getBenchmark()) + ","
+						+ quote(r.getParamsString()) + "," + quote(r.getMode())
+						+ "," + r.getThreads() + "," + r.getSamples() + ","
+						+ r.getScore() + "," + r.getError() + ","
+						+ quote(r.getUnit()));
+			}
+		} finally {
+			writer.close();
+		}
+
+		return file;
+	}
+
+	/**
+	 * Load a run by id or by path of a CSV file.
+	 *
+	 * @param idOrPath
+	 *            id of a run in this store, or path of a normalized or JMH
+	 *            CSV file
+	 * @throws IOException
+	 *             if the run could not be found or read
+	 */
+	public Run load(final String idOrPath) throws IOException {
+		File file = new File(directory, idOrPath + EXTENSION);
+		if (!file.isFile()) {
+			file = new File(idOrPath);
+		}
+		if (!file.isFile()) {
+			throw new IOException("No stored run or file: " + idOrPath);
+		}
+		return read(file);
+	}
+
+	/**
+	 * @return ids of all runs in the store, oldest first
+	 */
+	public List<String> list() {
+		final List<String> ids = new ArrayList<String>();
+		final String[] names = directory.list();
+		if (names == null) {
+			return ids;
+		}
+
+		Arrays.sort(names);
+		for (final String name : names) {
+			if (name.endsWith(EXTENSION)) {
+				ids.add(name.substring(0, name.length() - EXTENSION.length()));
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Read a normalized or JMH CSV file.
+	 *
+	 * @throws IOException
+	 *             if the file could not be read or parsed
+	 */
+	public static Run read(final File file) throws IOException {
+		final Map<String, String> metadata = new LinkedHashMap<String, String>();
+		final List<ResultRecord> records = new ArrayList<ResultRecord>();
+
+		final BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			List<String> header = null;
+			int lineNumber = 0;
+
+			while ((line = reader.readLine()) != null) {
+				++lineNumber;
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				if (line.startsWith(METADATA_PREFIX)) {
+					final String entry = line.substring(METADATA_PREFIX.length());
+					final int eq = entry.indexOf('=');
+					if (eq > 0) {
+						metadata.put(entry.substring(0, eq), entry
+								.substring(eq + 1));
+					}
+					continue;
+				}
+
+				final List<String> cells = split(line);
+				if (header == null) {
+					header = cells;
+					continue;
+				}
+
+				try {
+					records.add(parseRecord(header, cells));
+				} catch (final RuntimeException e) {
+					throw new IOException(file + ":" + lineNumber + ": "
+							+ e.getMessage());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		if (!metadata.containsKey(RunMetadata.RUN_ID)) {
+			final String name = file.getName();
+			metadata.put(RunMetadata.RUN_ID, name.endsWith(EXTENSION) ? name
+					.substring(0, name.length() - EXTENSION.length()) : name);
+		}
+
+		return new Run(new RunMetadata(metadata), records);
+	}
+
+	private static ResultRecord parseRecord(final List<String> header,
+			final List<String> cells) {
+		final Map<String, String> params = new TreeMap<String, String>();
+		String benchmark = null;
+		String mode = null;
+		String unit = null;
+		int threads = 1;
+		long samples = 0;
+		double score = Double.NaN;
+		double error = Double.NaN;
+
+		for (int i = 0; i < header.size() && i < cells.size(); ++i) {
+			final String column = header.get(i);
+			final String value = cells.get(i);
+
+			if (column.startsWith(JMH_PARAM_PREFIX)) {
+				params.put(column.substring(JMH_PARAM_PREFIX.length()), value);
+			} else if (column.equals("Params")) {
+				for (final String pair : value.split(";")) {
+					final int eq = pair.indexOf('=');
+					if (eq > 0) {
+						params.put(pair.substring(0, eq), pair.substring(eq + 1));
+					}
+				}
+			} else if (column.equals("Benchmark")) {
+				benchmark = value;
+			} else if (column.equals("Mode")) {
+				mode = value;
+			} else if (column.equals("Threads")) {
+				threads = Integer.parseInt(value);
+			} else if (column.equals("Samples")) {
+				samples = (long) Double.parseDouble(value);
+			} else if (column.equals("Score")) {
+				score = Double.parseDouble(value);
+			} else if (column.startsWith("Score Error")) {
+				error = Double.parseDouble(value);
+			} else if (column.equals("Unit")) {
+				unit = value;
+			}
+		}
+
+		if (benchmark == null || mode == null) {
+			throw new IllegalArgumentException("Missing benchmark or mode");
+		}
+
+		for (final String[] added : ADDED_PARAMS) {
+			if (isMethodOf(benchmark, added[0])
+					&& !params.containsKey(added[1])) {
+				params.put(added[1], added[2]);
+			}
+		}
+		for (final String[] removed : REMOVED_PARAMS) {
+			if (isMethodOf(benchmark, removed[0])
+					&& removed[2].equals(params.get(removed[1]))) {
+				params.remove(removed[1]);
+			}
+		}
+
+		return new ResultRecord(benchmark, params, mode, threads, score, error,
+				unit, samples);
+	}
+
+	/**
+	 * @return whether benchmark is a method of the benchmark class
+	 */
+	private static boolean isMethodOf(final String benchmark,
+			final String className) {
+		return benchmark.startsWith(className + ".")
+				&& benchmark.indexOf('.', className.length() + 1) < 0;
+	}
+
+	/**
+	 * Split a CSV line, removing the quotes around cells.
+	 */
+	private static List<String> split(final String line) {
+		final List<String> cells = new ArrayList<String>();
+		final StringBuilder cell = new StringBuilder();
+		boolean quoted = false;
+
+		for (int i = 0; i < line.length(); ++i) {
+			final char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					cell.append('"');
+					++i;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == ',' && !quoted) {
+				cells.add(cell.toString());
+				cell.setLength(0);
+			} else {
+				cell.append(c);
+			}
+		}
+		cells.add(cell.toString());
+
+		return cells;
+	}
+
+	private static String quote(final String value) {
+		return "\"" + ((value == null) ? "" : value.replace("\"", "\"\""))
+				+ "\"";
+	}
+}
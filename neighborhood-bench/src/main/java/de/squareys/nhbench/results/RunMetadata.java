@@ -0,0 +1,174 @@
+package de.squareys.nhbench.results;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * Environment a benchmark run was executed in: JVM, CPU, thread count and git
+ * revision. Stored alongside the results, so that runs on different machines
+ * or JVMs are not compared by accident.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class RunMetadata {
+
+	public static final String RUN_ID = "runId";
+	public static final String TIMESTAMP = "timestamp";
+	public static final String JVM = "jvm";
+	public static final String JVM_ARGS = "jvmArgs";
+	public static final String OS = "os";
+	public static final String CPU = "cpu";
+	public static final String CORES = "cores";
+	public static final String THREADS = "threads";
+	public static final String MAX_VECTOR_BYTES = "maxVectorBytes";
+	public static final String GIT_REVISION = "gitRevision";
+	public static final String UNKNOWN = "unknown";
+
+	private final Map<String, String> values;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param values
+	 *            metadata key value pairs
+	 */
+	public RunMetadata(final Map<String, String> values) {
+		this.values = new LinkedHashMap<String, String>(values);
+	}
+
+	/**
+	 * Collect the metadata of the current environment.
+	 *
+	 * @param runId
+	 *            identifier of the run
+	 * @param threads
+	 *            number of JMH threads of the run
+	 * @return the metadata
+	 */
+	public static RunMetadata collect(final String runId, final int threads) {
+		final Map<String, String> values = new LinkedHashMap<String, String>();
+
+		values.put(RUN_ID, runId);
+		values.put(TIMESTAMP, new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ")
+				.format(new Date()));
+		values.put(JVM, System.getProperty("java.vm.name") + " "
+				+ System.getProperty("java.version"));
+		values.put(JVM_ARGS, ManagementFactory.getRuntimeMXBean()
+				.getInputArguments().toString());
+		values.put(OS, System.getProperty("os.name") + " "
+				+ System.getProperty("os.version") + " "
+				+ System.getProperty("os.arch"));
+		values.put(CPU, cpuModel());
+		values.put(CORES,
+				Integer.toString(Runtime.getRuntime().availableProcessors()));
+		values.put(THREADS, Integer.toString(threads));
+		values.put(MAX_VECTOR_BYTES,
+				Integer.toString(maxVectorBytes()));
+		values.put(GIT_REVISION, gitRevision());
+
+		return new RunMetadata(values);
+	}
+
+	/**
+	 * @return value for a key, {@link #UNKNOWN} if not present
+	 */
+	public String get(final String key) {
+		final String value = values.get(key);
+		return (value == null) ? UNKNOWN : value;
+	}
+
+	/**
+	 * @return all key value pairs, in insertion order
+	 */
+	public Map<String, String> getValues() {
+		return values;
+	}
+
+	private static String cpuModel() {
+		final File cpuinfo = new File("/proc/cpuinfo");
+		if (cpuinfo.canRead()) {
+			BufferedReader reader = null;
+			try {
+				reader = new BufferedReader(new FileReader(cpuinfo));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith("model name")) {
+						return line.substring(line.indexOf(':') + 1).trim();
+					}
+				}
+			} catch (final IOException e) {
+				// fall through to the generic description
+			} finally {
+				closeQuietly(reader);
+			}
+		}
+
+		final String identifier = System.getenv("PROCESSOR_IDENTIFIER");
+		return (identifier != null) ? identifier : System
+				.getProperty("os.arch");
+	}
+
+	/**
+	 * @return the MaxVectorSize of the HotSpot JIT in bytes, e.g. 32 for AVX2
+	 *         and 64 for AVX-512, or 0 if unknown
+	 */
+	private static int maxVectorBytes() {
+		try {
+			final HotSpotDiagnosticMXBean bean = ManagementFactory
+					.newPlatformMXBeanProxy(
+							ManagementFactory.getPlatformMBeanServer(),
+							"com.sun.management:type=HotSpotDiagnostic",
+							HotSpotDiagnosticMXBean.class);
+			return Integer.parseInt(bean.getVMOption("MaxVectorSize")
+					.getValue());
+		} catch (final Exception e) {
+			// not HotSpot, or option unknown on this platform
+			return 0;
+		} catch (final LinkageError e) {
+			return 0;
+		}
+	}
+
+	private static String gitRevision() {
+		BufferedReader reader = null;
+		try {
+			final Process process = new ProcessBuilder("git", "rev-parse",
+					"--short", "HEAD").redirectErrorStream(true).start();
+			reader = new BufferedReader(new InputStreamReader(
+					process.getInputStream()));
+			final String revision = reader.readLine();
+
+			if (process.waitFor() == 0 && revision != null) {
+				return revision.trim();
+			}
+		} catch (final IOException e) {
+			// git not available
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			closeQuietly(reader);
+		}
+
+		return UNKNOWN;
+	}
+
+	private static void closeQuietly(final BufferedReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (final IOException e) {
+				// ignore
+			}
+		}
+	}
+}
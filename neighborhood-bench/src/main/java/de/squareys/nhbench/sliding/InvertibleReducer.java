@@ -0,0 +1,46 @@
+package de.squareys.nhbench.sliding;
+
+/**
+ * Reduction that can be computed from running sums of per pixel
+ * contributions, which makes it invertible: a value leaving a window is
+ * removed by subtracting its contributions again.
+ *
+ * Every pixel value is lifted to a fixed number of channels, e.g. the value
+ * and its square for the variance. {@link SlidingWindowFilter} sums the
+ * channels over the window and computes the result from the sums.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ * @see InvertibleReducers
+ */
+public interface InvertibleReducer {
+
+	/**
+	 * @return number of running sums per pixel
+	 */
+	int numChannels();
+
+	/**
+	 * Compute the contributions of a value.
+	 *
+	 * @param value
+	 *            the pixel value
+	 * @param channels
+	 *            array to write the contributions to
+	 * @param offset
+	 *            index of the first channel in the array
+	 */
+	void lift(double value, double[] channels, int offset);
+
+	/**
+	 * Compute the result from the sums over a window.
+	 *
+	 * @param sums
+	 *            array containing the sums of all channels
+	 * @param offset
+	 *            index of the first channel in the array
+	 * @param count
+	 *            number of pixels in the window
+	 * @return the reduction of the window
+	 */
+	double result(double[] sums, int offset, long count);
+}
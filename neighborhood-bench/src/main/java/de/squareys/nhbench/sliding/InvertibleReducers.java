@@ -0,0 +1,123 @@
+package de.squareys.nhbench.sliding;
+
+/**
+ * The {@link InvertibleReducer}s for box filters.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class InvertibleReducers {
+
+	private InvertibleReducers() {
+		// utility class
+	}
+
+	/**
+	 * @return reducer computing the sum of a window
+	 */
+	public static InvertibleReducer sum() {
+		return new InvertibleReducer() {
+
+			@Override
+			public int numChannels() {
+				return 1;
+			}
+
+			@Override
+			public void lift(final double value, final double[] channels,
+					final int offset) {
+				channels[offset] = value;
+			}
+
+			@Override
+			public double result(final double[] sums, final int offset,
+					final long count) {
+				return sums[offset];
+			}
+		};
+	}
+
+	/**
+	 * @return reducer computing the arithmetic mean of a window
+	 */
+	public static InvertibleReducer mean() {
+		return new InvertibleReducer() {
+
+			@Override
+			public int numChannels() {
+				return 1;
+			}
+
+			@Override
+			public void lift(final double value, final double[] channels,
+					final int offset) {
+				channels[offset] = value;
+			}
+
+			@Override
+			public double result(final double[] sums, final int offset,
+					final long count) {
+				return sums[offset] / count;
+			}
+		};
+	}
+
+	/**
+	 * @return reducer computing the sample variance (normalized by
+	 *         <code>n - 1</code>) of a window from the sums of the values
+	 *         and their squares
+	 */
+	public static InvertibleReducer variance() {
+		return new InvertibleReducer() {
+
+			@Override
+			public int numChannels() {
+				return 2;
+			}
+
+			@Override
+			public void lift(final double value, final double[] channels,
+					final int offset) {
+				channels[offset] = value;
+				channels[offset + 1] = value * value;
+			}
+
+			@Override
+			public double result(final double[] sums, final int offset,
+					final long count) {
+				if (count < 2) {
+					return Double.NaN;
+				}
+				final double sum = sums[offset];
+				final double variance = (sums[offset + 1] - sum * sum / count)
+						/ (count - 1);
+				// cancellation may leave a tiny negative rest
+				return (variance < 0) ? 0 : variance;
+			}
+		};
+	}
+
+	/**
+	 * @return reducer computing the number of pixels of a window
+	 */
+	public static InvertibleReducer count() {
+		return new InvertibleReducer() {
+
+			@Override
+			public int numChannels() {
+				return 0;
+			}
+
+			@Override
+			public void lift(final double value, final double[] channels,
+					final int offset) {
+				// nothing to sum
+			}
+
+			@Override
+			public double result(final double[] sums, final int offset,
+					final long count) {
+				return count;
+			}
+		};
+	}
+}
@@ -0,0 +1,245 @@
+package de.squareys.nhbench.sliding;
+
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.CenteredRectangleShape;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+import de.squareys.nhbench.threshold.SummedAreaTable;
+
+/**
+ * n-dimensional box filter for {@link InvertibleReducer}s, e.g. box mean and
+ * local variance, with a cost per pixel independent of the box size.
+ *
+ * The window is slid along one dimension at a time, starting with the
+ * slowest. For dimension d, a buffer holds the window sums of the extended
+ * hyperplane spanned by the dimensions below d. Stepping along d adds the
+ * entering hyperplane and subtracts the leaving one, then the same is done
+ * recursively within the buffer for dimension d - 1. Every level costs O(1)
+ * per pixel, O(d) in total, and the largest buffer is one hyperplane of the
+ * image, not a full-size table like the {@link SummedAreaTable}.
+ *
+ * Sums are kept in doubles. They are exact for integer images, for float
+ * images the sliding updates may accumulate rounding errors in the order of
+ * the machine epsilon times the window sum.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class SlidingWindowFilter {
+
+	private SlidingWindowFilter() {
+		// utility class
+	}
+
+	/**
+	 * Filter with a rectangular shape like {@link RectangleShape} or
+	 * {@link CenteredRectangleShape}.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image, must not be the same as source
+	 * @param shape
+	 *            rectangular shape
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param reducer
+	 *            reduction applied to every window
+	 */
+	public static <I extends RealType<I>, O extends RealType<O>> void filter(
+			final RandomAccessibleInterval<I> source,
+			final RandomAccessibleInterval<O> target, final Shape shape,
+			final OutOfBoundsFactory<I, RandomAccessibleInterval<I>> outOfBounds,
+			final InvertibleReducer reducer) {
+		final int n = source.numDimensions();
+
+		if (!StructuringElements.isBox(shape, n)) {
+			throw new IllegalArgumentException(
+					"Shape is not a hyper rectangle: " + shape);
+		}
+
+		filter(source, target, StructuringElements.boundingBox(shape, n),
+				outOfBounds, reducer);
+	}
+
+	/**
+	 * Filter with a hyper rectangle given by its offsets relative to the
+	 * center pixel.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image, must not be the same as source
+	 * @param box
+	 *            offsets of the rectangle, e.g. [-r, r] in every dimension for
+	 *            a {@link RectangleShape} with span r
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param reducer
+	 *            reduction applied to every window
+	 */
+	public static <I extends RealType<I>, O extends RealType<O>> void filter(
+			final RandomAccessibleInterval<I> source,
+			final RandomAccessibleInterval<O> target, final Interval box,
+			final OutOfBoundsFactory<I, RandomAccessibleInterval<I>> outOfBounds,
+			final InvertibleReducer reducer) {
+		new Window<I, O>(Views.extend(source, outOfBounds), target, box,
+				reducer).slide(target.numDimensions() - 1, null);
+	}
+
+	/**
+	 * State of one filter run.
+	 */
+	private static final class Window<I extends RealType<I>, O extends RealType<O>> {
+
+		private final RandomAccessible<I> source;
+		private final RandomAccessibleInterval<O> target;
+		private final RandomAccess<O> out;
+		private final InvertibleReducer reducer;
+
+		private final int n;
+		private final int k;
+		private final long[] boxMin;
+		private final int[] window;
+		private final int[] extent;
+
+		/* number of sums in a hyperplane below dimension d */
+		private final int[] planeSize;
+		private final double[][] buffers;
+		private final double[] lifted;
+		private final long count;
+
+		private final long[] position;
+
+		Window(final RandomAccessible<I> source,
+				final RandomAccessibleInterval<O> target, final Interval box,
+				final InvertibleReducer reducer) {
+			this.source = source;
+			this.target = target;
+			this.out = target.randomAccess();
+			this.reducer = reducer;
+
+			n = target.numDimensions();
+			k = reducer.numChannels();
+			boxMin = new long[n];
+			window = new int[n];
+			extent = new int[n];
+			planeSize = new int[n];
+			buffers = new double[n][];
+			lifted = new double[k];
+			position = new long[n];
+
+			long volume = 1;
+			for (int d = 0; d < n; ++d) {
+				boxMin[d] = box.min(d);
+				window[d] = (int) box.dimension(d);
+				extent[d] = (int) target.dimension(d) + window[d] - 1;
+				volume *= window[d];
+
+				planeSize[d] = (d == 0) ? k : planeSize[d - 1] * extent[d - 1];
+				buffers[d] = new double[planeSize[d]];
+			}
+			count = volume;
+		}
+
+		/**
+		 * Slide the window along dimension d.
+		 *
+		 * @param d
+		 *            the dimension
+		 * @param in
+		 *            window sums of the level above, null to read the source
+		 */
+		void slide(final int d, final double[] in) {
+			final double[] sums = buffers[d];
+			final int w = window[d];
+			final long length = target.dimension(d);
+
+			Arrays.fill(sums, 0);
+			for (int h = 0; h < w - 1; ++h) {
+				add(d, in, h, sums, true);
+			}
+
+			for (int i = 0; i < length; ++i) {
+				add(d, in, i + w - 1, sums, true);
+
+				position[d] = target.min(d) + i;
+				if (d == 0) {
+					out.setPosition(position);
+					out.get().setReal(reducer.result(sums, 0, count));
+				} else {
+					slide(d - 1, sums);
+				}
+
+				add(d, in, i, sums, false);
+			}
+		}
+
+		/**
+		 * Add or subtract hyperplane h along dimension d to sums.
+		 */
+		private void add(final int d, final double[] in, final int h,
+				final double[] sums, final boolean plus) {
+			if (in == null) {
+				addSource(d, h, sums, plus);
+				return;
+			}
+
+			final int size = planeSize[d];
+			final int offset = h * size;
+			if (plus) {
+				for (int j = 0; j < size; ++j) {
+					sums[j] += in[offset + j];
+				}
+			} else {
+				for (int j = 0; j < size; ++j) {
+					sums[j] -= in[offset + j];
+				}
+			}
+		}
+
+		/**
+		 * Add or subtract the lifted values of hyperplane h of the extended
+		 * source. Only called for the slowest dimension, so the hyperplane
+		 * spans all other dimensions.
+		 */
+		private void addSource(final int d, final int h, final double[] sums,
+				final boolean plus) {
+			final long[] min = new long[n];
+			final long[] max = new long[n];
+			for (int j = 0; j < n; ++j) {
+				min[j] = target.min(j) + boxMin[j];
+				max[j] = min[j] + extent[j] - 1;
+			}
+			min[d] += h;
+			max[d] = min[d];
+
+			final Cursor<I> c = Views.flatIterable(
+					Views.interval(source, new FinalInterval(min, max)))
+					.cursor();
+
+			for (int index = 0; c.hasNext(); index += k) {
+				reducer.lift(c.next().getRealDouble(), lifted, 0);
+				if (plus) {
+					for (int j = 0; j < k; ++j) {
+						sums[index + j] += lifted[j];
+					}
+				} else {
+					for (int j = 0; j < k; ++j) {
+						sums[index + j] -= lifted[j];
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package de.squareys.nhbench.stream;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * {@link PlaneSink} writing into a 3D {@link RandomAccessibleInterval}.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class ImgPlaneSink<T extends RealType<T>> implements PlaneSink {
+
+	private final RandomAccessibleInterval<T> img;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param img
+	 *            3D image
+	 */
+	public ImgPlaneSink(final RandomAccessibleInterval<T> img) {
+		this.img = img;
+	}
+
+	@Override
+	public void writePlane(final int z, final float[] plane) {
+		final Cursor<T> c = Views.flatIterable(
+				Views.hyperSlice(img, 2, img.min(2) + z)).cursor();
+
+		int i = 0;
+		while (c.hasNext()) {
+			c.next().setReal(plane[i++]);
+		}
+	}
+}
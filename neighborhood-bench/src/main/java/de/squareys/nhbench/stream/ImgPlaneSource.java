@@ -0,0 +1,52 @@
+package de.squareys.nhbench.stream;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * {@link PlaneSource} reading from a 3D {@link RandomAccessibleInterval}.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class ImgPlaneSource<T extends RealType<T>> implements PlaneSource {
+
+	private final RandomAccessibleInterval<T> img;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param img
+	 *            3D image
+	 */
+	public ImgPlaneSource(final RandomAccessibleInterval<T> img) {
+		this.img = img;
+	}
+
+	@Override
+	public int getWidth() {
+		return (int) img.dimension(0);
+	}
+
+	@Override
+	public int getHeight() {
+		return (int) img.dimension(1);
+	}
+
+	@Override
+	public int getDepth() {
+		return (int) img.dimension(2);
+	}
+
+	@Override
+	public void readPlane(final int z, final float[] plane) {
+		final Cursor<T> c = Views.flatIterable(
+				Views.hyperSlice(img, 2, img.min(2) + z)).cursor();
+
+		int i = 0;
+		while (c.hasNext()) {
+			plane[i++] = c.next().getRealFloat();
+		}
+	}
+}
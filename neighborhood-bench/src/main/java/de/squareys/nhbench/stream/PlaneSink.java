@@ -0,0 +1,23 @@
+package de.squareys.nhbench.stream;
+
+import java.io.IOException;
+
+/**
+ * Receives the XY planes of a 3D stack, in increasing z order.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public interface PlaneSink {
+
+	/**
+	 * Write a plane. The plane buffer is reused after this call returns.
+	 *
+	 * @param z
+	 *            index of the plane
+	 * @param plane
+	 *            width * height elements, line by line
+	 * @throws IOException
+	 *             if the plane could not be written
+	 */
+	void writePlane(int z, float[] plane) throws IOException;
+}
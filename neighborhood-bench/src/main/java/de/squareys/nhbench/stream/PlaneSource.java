@@ -0,0 +1,39 @@
+package de.squareys.nhbench.stream;
+
+import java.io.IOException;
+
+/**
+ * Source of the XY planes of a 3D stack, read one at a time.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public interface PlaneSource {
+
+	/**
+	 * @return size of a plane in x
+	 */
+	int getWidth();
+
+	/**
+	 * @return size of a plane in y
+	 */
+	int getHeight();
+
+	/**
+	 * @return number of planes
+	 */
+	int getDepth();
+
+	/**
+	 * Read a plane.
+	 *
+	 * @param z
+	 *            index of the plane
+	 * @param plane
+	 *            buffer of width * height elements to read the plane into,
+	 *            line by line
+	 * @throws IOException
+	 *             if the plane could not be read
+	 */
+	void readPlane(int z, float[] plane) throws IOException;
+}
@@ -0,0 +1,44 @@
+package de.squareys.nhbench.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link PlaneSink} writing planes as raw 32 bit floats to a stream, for
+ * results which do not fit into memory either.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class RawPlaneSink implements PlaneSink {
+
+	private final OutputStream out;
+	private final ByteOrder order;
+	private ByteBuffer buffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out
+	 *            stream to write to, not closed by this sink
+	 * @param order
+	 *            byte order of the written floats
+	 */
+	public RawPlaneSink(final OutputStream out, final ByteOrder order) {
+		this.out = out;
+		this.order = order;
+	}
+
+	@Override
+	public void writePlane(final int z, final float[] plane)
+			throws IOException {
+		if (buffer == null || buffer.capacity() != 4 * plane.length) {
+			buffer = ByteBuffer.allocate(4 * plane.length).order(order);
+		}
+
+		buffer.clear();
+		buffer.asFloatBuffer().put(plane);
+		out.write(buffer.array(), 0, buffer.capacity());
+	}
+}
@@ -0,0 +1,128 @@
+package de.squareys.nhbench.stream;
+
+import io.scif.FormatException;
+import io.scif.ImageMetadata;
+import io.scif.Plane;
+import io.scif.Reader;
+import io.scif.SCIFIO;
+import io.scif.util.FormatTools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link PlaneSource} reading the planes of the first image of a file through
+ * SCIFIO, without ever holding more than one plane of the file in memory.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class ScifioPlaneSource implements PlaneSource {
+
+	private final Reader reader;
+	private final int width;
+	private final int height;
+	private final int depth;
+	private final int pixelType;
+	private final ByteOrder order;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param scifio
+	 *            SCIFIO gateway
+	 * @param path
+	 *            path of the file to read
+	 * @throws IOException
+	 *             if the file could not be opened
+	 */
+	public ScifioPlaneSource(final SCIFIO scifio, final String path)
+			throws IOException {
+		try {
+			reader = scifio.initializer().initializeReader(path);
+		} catch (final FormatException e) {
+			throw new IOException(e);
+		}
+
+		final ImageMetadata meta = reader.getMetadata().get(0);
+		final long[] planar = meta.getAxesLengthsPlanar();
+		if (planar.length != 2) {
+			throw new IOException("Expected planes with two axes, got "
+					+ planar.length);
+		}
+
+		width = (int) planar[0];
+		height = (int) planar[1];
+		depth = (int) meta.getPlaneCount();
+		pixelType = meta.getPixelType();
+		order = meta.isLittleEndian() ? ByteOrder.LITTLE_ENDIAN
+				: ByteOrder.BIG_ENDIAN;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+
+	@Override
+	public void readPlane(final int z, final float[] plane) throws IOException {
+		final Plane p;
+		try {
+			p = reader.openPlane(0, z);
+		} catch (final FormatException e) {
+			throw new IOException(e);
+		}
+
+		final ByteBuffer bytes = ByteBuffer.wrap(p.getBytes()).order(order);
+		final int size = width * height;
+
+		switch (pixelType) {
+		case FormatTools.UINT8:
+			for (int i = 0; i < size; ++i) {
+				plane[i] = bytes.get(i) & 0xff;
+			}
+			break;
+		case FormatTools.INT8:
+			for (int i = 0; i < size; ++i) {
+				plane[i] = bytes.get(i);
+			}
+			break;
+		case FormatTools.UINT16:
+			for (int i = 0; i < size; ++i) {
+				plane[i] = bytes.getShort(2 * i) & 0xffff;
+			}
+			break;
+		case FormatTools.INT16:
+			for (int i = 0; i < size; ++i) {
+				plane[i] = bytes.getShort(2 * i);
+			}
+			break;
+		case FormatTools.FLOAT:
+			bytes.asFloatBuffer().get(plane, 0, size);
+			break;
+		default:
+			throw new IOException("Unsupported pixel type: "
+					+ FormatTools.getPixelTypeString(pixelType));
+		}
+	}
+
+	/**
+	 * Close the underlying reader.
+	 *
+	 * @throws IOException
+	 *             if closing failed
+	 */
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,191 @@
+package de.squareys.nhbench.stream;
+
+import java.io.IOException;
+
+import de.squareys.nhbench.morphology.VanHerkGilWerman;
+
+/**
+ * Streaming 3D minimum and maximum filter on box neighborhoods for stacks
+ * which do not fit into memory.
+ *
+ * Planes are read from a {@link PlaneSource} one at a time and filtered in x
+ * and y with {@link VanHerkGilWerman}. The filtered planes are kept in a ring
+ * buffer of 2*rz+1 planes. As soon as all planes of the z-neighborhood of an
+ * output plane are in the ring, it is reduced along z and emitted to the
+ * {@link PlaneSink}. Peak memory is therefore (2*rz+2) planes instead of the
+ * whole stack.
+ *
+ * Values outside of the stack are mirrored like
+ * {@link net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary#SINGLE},
+ * in all three dimensions.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class StreamingMorphology3D {
+
+	private final int rx;
+	private final int ry;
+	private final int rz;
+	private final boolean max;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param rx
+	 *            radius in x
+	 * @param ry
+	 *            radius in y
+	 * @param rz
+	 *            radius in z
+	 * @param max
+	 *            maximum instead of minimum filter
+	 */
+	public StreamingMorphology3D(final int rx, final int ry, final int rz,
+			final boolean max) {
+		this.rx = rx;
+		this.ry = ry;
+		this.rz = rz;
+		this.max = max;
+	}
+
+	/**
+	 * Filter a stack.
+	 *
+	 * @param source
+	 *            the input planes
+	 * @param sink
+	 *            receives the output planes in increasing z order
+	 * @throws IOException
+	 *             if reading or writing a plane failed
+	 */
+	public void run(final PlaneSource source, final PlaneSink sink)
+			throws IOException {
+		final int width = source.getWidth();
+		final int height = source.getHeight();
+		final int depth = source.getDepth();
+		final int size = width * height;
+
+		final int ringSize = 2 * rz + 1;
+		final float[][] ring = new float[Math.min(ringSize, depth)][];
+		final float[] output = new float[size];
+
+		final PlaneFilter planeFilter = new PlaneFilter(width, height);
+
+		// next plane to read
+		int next = 0;
+		for (int z = 0; z < depth; ++z) {
+			// read until all planes of the neighborhood of z are in the ring
+			final int last = Math.min(depth - 1, z + rz);
+			while (next <= last) {
+				final int slot = next % ring.length;
+				if (ring[slot] == null) {
+					ring[slot] = new float[size];
+				}
+				source.readPlane(next, ring[slot]);
+				planeFilter.filter(ring[slot]);
+				++next;
+			}
+
+			// reduce along z
+			System.arraycopy(ring[mirror(z - rz, depth) % ring.length], 0,
+					output, 0, size);
+			for (int dz = -rz + 1; dz <= rz; ++dz) {
+				reduce(output, ring[mirror(z + dz, depth) % ring.length]);
+			}
+
+			sink.writePlane(z, output);
+		}
+	}
+
+	private void reduce(final float[] acc, final float[] plane) {
+		if (max) {
+			for (int i = 0; i < acc.length; ++i) {
+				if (plane[i] > acc[i]) {
+					acc[i] = plane[i];
+				}
+			}
+		} else {
+			for (int i = 0; i < acc.length; ++i) {
+				if (plane[i] < acc[i]) {
+					acc[i] = plane[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Separable in-plane filter in x and y.
+	 */
+	private class PlaneFilter {
+
+		private final int width;
+		private final int height;
+
+		private final VanHerkGilWerman vhgwX = new VanHerkGilWerman(2 * rx + 1);
+		private final VanHerkGilWerman vhgwY = new VanHerkGilWerman(2 * ry + 1);
+
+		private final double[] in;
+		private final double[] out;
+
+		public PlaneFilter(final int width, final int height) {
+			this.width = width;
+			this.height = height;
+
+			final int length = Math.max(width + 2 * rx, height + 2 * ry);
+			in = new double[length];
+			out = new double[length];
+		}
+
+		public void filter(final float[] plane) {
+			if (rx > 0) {
+				for (int y = 0; y < height; ++y) {
+					final int row = y * width;
+					for (int i = 0; i < width + 2 * rx; ++i) {
+						in[i] = plane[row + mirror(i - rx, width)];
+					}
+					apply(vhgwX, width);
+					for (int x = 0; x < width; ++x) {
+						plane[row + x] = (float) out[x];
+					}
+				}
+			}
+
+			if (ry > 0) {
+				for (int x = 0; x < width; ++x) {
+					for (int i = 0; i < height + 2 * ry; ++i) {
+						in[i] = plane[mirror(i - ry, height) * width + x];
+					}
+					apply(vhgwY, height);
+					for (int y = 0; y < height; ++y) {
+						plane[y * width + x] = (float) out[y];
+					}
+				}
+			}
+		}
+
+		private void apply(final VanHerkGilWerman vhgw, final int length) {
+			if (max) {
+				vhgw.max(in, out, length);
+			} else {
+				vhgw.min(in, out, length);
+			}
+		}
+	}
+
+	/**
+	 * Mirror a position into [0, size) without repeating the border pixel.
+	 */
+	static int mirror(final int x, final int size) {
+		if (size == 1) {
+			return 0;
+		}
+
+		final int period = 2 * size - 2;
+		int m = x % period;
+		if (m < 0) {
+			m += period;
+		}
+
+		return (m < size) ? m : period - m;
+	}
+}
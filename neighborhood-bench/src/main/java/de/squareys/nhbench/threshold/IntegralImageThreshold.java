@@ -0,0 +1,111 @@
+package de.squareys.nhbench.threshold;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+
+/**
+ * Local thresholding on rectangular neighborhoods in constant time per pixel.
+ *
+ * Summed area tables of the values and of the squared values are computed
+ * once. The sum and the sum of squares of any window, and with these mean and
+ * variance, are then computed from the 2^d corners of the window, no matter
+ * its size.
+ *
+ * Windows are clipped at the image border and mean and variance are computed
+ * over the pixels inside the image only, which is the usual boundary handling
+ * for integral image based thresholds.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class IntegralImageThreshold {
+
+	private IntegralImageThreshold() {
+		// utility class
+	}
+
+	/**
+	 * Threshold an image.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source
+	 * @param shape
+	 *            rectangular shape, e.g. {@link RectangleShape}
+	 * @param method
+	 *            the thresholding method
+	 */
+	public static <T extends RealType<T>> void apply(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<BitType> target, final Shape shape,
+			final LocalThresholdMethod method) {
+		final int n = source.numDimensions();
+		if (!StructuringElements.isBox(shape, n)) {
+			throw new IllegalArgumentException(
+					"Shape is not a hyper rectangle: " + shape);
+		}
+		final Interval box = StructuringElements.boundingBox(shape, n);
+
+		final int[] dims = new int[n];
+		int size = 1;
+		for (int d = 0; d < n; ++d) {
+			final long dim = source.dimension(d);
+			if (dim > Integer.MAX_VALUE / size) {
+				throw new IllegalArgumentException(
+						"Image is too large for a summed area table");
+			}
+			dims[d] = (int) dim;
+			size *= dims[d];
+		}
+
+		final double[] values = new double[size];
+		int i = 0;
+		for (final T t : Views.flatIterable(source)) {
+			values[i++] = t.getRealDouble();
+		}
+
+		final SummedAreaTable sum = new SummedAreaTable(dims);
+		final SummedAreaTable sumSq = new SummedAreaTable(dims);
+		sum.compute(values, false);
+		sumSq.compute(values, true);
+
+		final int[] position = new int[n];
+		final int[] lo = new int[n];
+		final int[] hi = new int[n];
+
+		i = 0;
+		final Cursor<BitType> c = Views.flatIterable(target).cursor();
+		while (c.hasNext()) {
+			c.fwd();
+
+			long count = 1;
+			for (int d = 0; d < n; ++d) {
+				lo[d] = Math.max(0, position[d] + (int) box.min(d));
+				hi[d] = Math.min(dims[d] - 1, position[d] + (int) box.max(d));
+				count *= hi[d] - lo[d] + 1;
+			}
+
+			final double mean = sum.boxSum(lo, hi) / count;
+			final double variance = Math.max(0.0, sumSq.boxSum(lo, hi)
+					/ count - mean * mean);
+
+			c.get().set(method.compute(values[i], mean, variance));
+
+			// advance position in flat iteration order
+			++i;
+			for (int d = 0; d < n; ++d) {
+				if (++position[d] < dims[d]) {
+					break;
+				}
+				position[d] = 0;
+			}
+		}
+	}
+}
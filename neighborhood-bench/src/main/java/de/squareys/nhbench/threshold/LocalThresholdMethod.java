@@ -0,0 +1,115 @@
+package de.squareys.nhbench.threshold;
+
+/**
+ * Local thresholding method which decides whether a pixel is foreground from
+ * its value and the mean and variance of its neighborhood.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public interface LocalThresholdMethod {
+
+	/**
+	 * @param center
+	 *            value of the pixel
+	 * @param mean
+	 *            mean of the neighborhood
+	 * @param variance
+	 *            variance of the neighborhood
+	 * @return true if the pixel is foreground
+	 */
+	boolean compute(double center, double mean, double variance);
+
+	/**
+	 * Foreground if the pixel is brighter than the local mean minus c.
+	 */
+	public static class Mean implements LocalThresholdMethod {
+
+		private final double c;
+
+		public Mean(final double c) {
+			this.c = c;
+		}
+
+		@Override
+		public boolean compute(final double center, final double mean,
+				final double variance) {
+			return center > mean - c;
+		}
+	}
+
+	/**
+	 * Niblack: threshold is <code>mean + k * stdDev - c</code>.
+	 */
+	public static class Niblack implements LocalThresholdMethod {
+
+		private final double k;
+		private final double c;
+
+		public Niblack(final double k, final double c) {
+			this.k = k;
+			this.c = c;
+		}
+
+		@Override
+		public boolean compute(final double center, final double mean,
+				final double variance) {
+			return center > mean + k * Math.sqrt(variance) - c;
+		}
+	}
+
+	/**
+	 * Sauvola: threshold is <code>mean * (1 + k * (stdDev / r - 1))</code>,
+	 * where r is the dynamic range of the standard deviation, e.g. 128 for 8
+	 * bit images.
+	 */
+	public static class Sauvola implements LocalThresholdMethod {
+
+		private final double k;
+		private final double r;
+
+		public Sauvola(final double k, final double r) {
+			this.k = k;
+			this.r = r;
+		}
+
+		@Override
+		public boolean compute(final double center, final double mean,
+				final double variance) {
+			return center > mean * (1.0 + k * (Math.sqrt(variance) / r - 1.0));
+		}
+	}
+
+	/**
+	 * Phansalkar: threshold is
+	 * <code>mean * (1 + p * exp(-q * mean) + k * (stdDev / r - 1))</code>.
+	 * The original parameters (k = 0.25, r = 0.5, p = 2, q = 10) assume values
+	 * normalized to [0, 1], so values are divided by <code>scale</code> first.
+	 */
+	public static class Phansalkar implements LocalThresholdMethod {
+
+		private final double k;
+		private final double r;
+		private final double p;
+		private final double q;
+		private final double scale;
+
+		public Phansalkar(final double k, final double r, final double p,
+				final double q, final double scale) {
+			this.k = k;
+			this.r = r;
+			this.p = p;
+			this.q = q;
+			this.scale = scale;
+		}
+
+		@Override
+		public boolean compute(final double center, final double mean,
+				final double variance) {
+			final double m = mean / scale;
+			final double s = Math.sqrt(variance) / scale;
+
+			return center / scale > m
+					* (1.0 + p * Math.exp(-q * m) + k * (s / r - 1.0));
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package de.squareys.nhbench.threshold;
+
+/**
+ * n-dimensional summed area table (integral image).
+ *
+ * The table has one more element than the image in every dimension, element
+ * <code>(x_0 + 1, ..., x_n + 1)</code> holds the sum of all values at
+ * positions <= x. Sums over boxes are computed from the 2^d corners of the
+ * box by inclusion-exclusion.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class SummedAreaTable {
+
+	private final int[] dims;
+	private final int[] strides;
+	private final double[] table;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dims
+	 *            dimensions of the image
+	 */
+	public SummedAreaTable(final int[] dims) {
+		final int n = dims.length;
+		this.dims = dims.clone();
+		this.strides = new int[n];
+
+		// checked in every step, the product of the ints could overflow a long
+		long size = 1;
+		for (int d = 0; d < n; ++d) {
+			strides[d] = (int) size;
+			size *= dims[d] + 1L;
+			if (size > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(
+						"Image is too large for a summed area table");
+			}
+		}
+
+		this.table = new double[(int) size];
+	}
+
+	/**
+	 * Fill the table.
+	 *
+	 * @param values
+	 *            image values in flat iteration order
+	 * @param squared
+	 *            sum the squares of the values instead of the values
+	 */
+	public void compute(final double[] values, final boolean squared) {
+		final int n = dims.length;
+		final int[] position = new int[n];
+
+		// copy values into the table, shifted by one in every dimension
+		int offset = 0;
+		for (int d = 0; d < n; ++d) {
+			offset += strides[d];
+		}
+		for (int i = 0; i < values.length; ++i) {
+			int index = offset;
+			for (int d = 0; d < n; ++d) {
+				index += position[d] * strides[d];
+			}
+			final double v = values[i];
+			table[index] = squared ? v * v : v;
+
+			for (int d = 0; d < n; ++d) {
+				if (++position[d] < dims[d]) {
+					break;
+				}
+				position[d] = 0;
+			}
+		}
+
+		// cumulative sums along every dimension
+		for (int d = 0; d < n; ++d) {
+			final int stride = strides[d];
+			final int block = stride * (dims[d] + 1);
+			for (int start = 0; start < table.length; start += block) {
+				// the first stride elements of a block have x_d = 0
+				for (int index = start + stride; index < start + block; ++index) {
+					table[index] += table[index - stride];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sum of the values in a box.
+	 *
+	 * @param lo
+	 *            lower corner of the box, inclusive
+	 * @param hi
+	 *            upper corner of the box, inclusive
+	 * @return the sum of the box
+	 */
+	public double boxSum(final int[] lo, final int[] hi) {
+		final int n = dims.length;
+		double sum = 0;
+
+		for (int corner = 0; corner < (1 << n); ++corner) {
+			int index = 0;
+			int lower = 0;
+			for (int d = 0; d < n; ++d) {
+				if ((corner & (1 << d)) != 0) {
+					index += (hi[d] + 1) * strides[d];
+				} else {
+					index += lo[d] * strides[d];
+					++lower;
+				}
+			}
+
+			if ((lower & 1) == 0) {
+				sum += table[index];
+			} else {
+				sum -= table[index];
+			}
+		}
+
+		return sum;
+	}
+}
@@ -0,0 +1,43 @@
+package de.squareys.nhbench.tuning;
+
+import de.squareys.nhbench.morphology.DecomposedMorphology;
+import de.squareys.nhbench.morphology.SeparableMorphology;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+import de.squareys.nhbench.plan.FilterPlan;
+
+/**
+ * Minimum and maximum filter algorithms the {@link AutoTunedFilter} chooses
+ * from.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public enum Algorithm {
+
+	/**
+	 * Neighborhood cursors on the extended source, see
+	 * {@link NeighborhoodReduction}. Works for everything, work per pixel is
+	 * the size of the structuring element.
+	 */
+	NAIVE,
+
+	/**
+	 * Compiled offset loops or unrolled kernels on the primitive arrays, see
+	 * {@link FilterPlan}. Only for ArrayImgs of FloatType and
+	 * UnsignedByteType, work per pixel is the size of the structuring element.
+	 */
+	PRIMITIVE,
+
+	/**
+	 * One van Herk/Gil-Werman pass per dimension, see
+	 * {@link SeparableMorphology}. Only for hyper rectangles, work per pixel
+	 * is the number of dimensions.
+	 */
+	SEPARABLE,
+
+	/**
+	 * Decomposition into lines and small offset sets, see
+	 * {@link DecomposedMorphology}. Works for everything, work per pixel is
+	 * the cost of the decomposition.
+	 */
+	DECOMPOSED
+}
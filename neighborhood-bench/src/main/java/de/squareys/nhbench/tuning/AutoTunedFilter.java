@@ -0,0 +1,309 @@
+package de.squareys.nhbench.tuning;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import de.squareys.nhbench.morphology.DecomposedMorphology;
+import de.squareys.nhbench.morphology.Decomposition;
+import de.squareys.nhbench.morphology.SeparableMorphology;
+import de.squareys.nhbench.neighborhood.MaximumReducer;
+import de.squareys.nhbench.neighborhood.MinimumReducer;
+import de.squareys.nhbench.neighborhood.NeighborhoodReduction;
+import de.squareys.nhbench.neighborhood.StructuringElements;
+import de.squareys.nhbench.plan.FilterPlan;
+import de.squareys.nhbench.plan.FilterPlan.Operation;
+import de.squareys.nhbench.plan.FilterPlanCache;
+import de.squareys.nhbench.primitive.PrimitiveMinimumFilter;
+
+/**
+ * Minimum and maximum filter which chooses the fastest {@link Algorithm} for
+ * every call from a calibrated {@link CostProfile}.
+ *
+ * For every algorithm applicable to the images and shape, the time is
+ * estimated from the number of pixels and the work per pixel of the
+ * algorithm for the structuring element, the algorithm with the lowest
+ * estimate is run. All algorithms compute exactly the same result. The
+ * {@link FilterPlan}s of {@link Algorithm#PRIMITIVE} are cached by the
+ * identity of shape and out of bounds factory, so callers filtering many
+ * images alike should reuse them.
+ *
+ * {@link #getDefault()} loads the profile from
+ * {@link CostProfile#defaultFile()} and calibrates a new one with
+ * {@link Calibration} if there is none for this machine yet. Run
+ * {@link Calibration#main(String[])} to calibrate offline instead, and
+ * {@link #getCalibrated()} to only ever use such a profile.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class AutoTunedFilter {
+
+	private static AutoTunedFilter defaultFilter;
+
+	/* plans of the PRIMITIVE algorithm, shared by all filters */
+	private static final FilterPlanCache PLANS = new FilterPlanCache();
+
+	private final CostProfile profile;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param profile
+	 *            the cost model to choose algorithms by
+	 */
+	public AutoTunedFilter(final CostProfile profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * Get the filter with the profile of this machine, loading or calibrating
+	 * it on first use.
+	 *
+	 * @return the shared filter
+	 */
+	public static synchronized AutoTunedFilter getDefault() {
+		if (defaultFilter == null) {
+			defaultFilter = new AutoTunedFilter(loadOrCalibrate(CostProfile
+					.defaultFile()));
+		}
+		return defaultFilter;
+	}
+
+	/**
+	 * Get a filter with the profile of this machine calibrated beforehand with
+	 * {@link Calibration#main(String[])}. Unlike {@link #getDefault()}, this
+	 * never calibrates, which takes seconds and would disturb e.g. a running
+	 * benchmark.
+	 *
+	 * @return a filter with the profile from {@link CostProfile#defaultFile()}
+	 * @throws IllegalStateException
+	 *             if there is no profile for this machine
+	 */
+	public static AutoTunedFilter getCalibrated() {
+		final File file = CostProfile.defaultFile();
+		final CostProfile profile = load(file);
+		if (profile == null) {
+			throw new IllegalStateException("No cost profile for this machine "
+					+ "in " + file + ", run " + Calibration.class.getName()
+					+ " first");
+		}
+		return new AutoTunedFilter(profile);
+	}
+
+	/**
+	 * @return the profile in file, null if there is none for this machine
+	 */
+	private static CostProfile load(final File file) {
+		if (file.isFile()) {
+			try {
+				final CostProfile profile = CostProfile.load(file);
+				if (profile.isCurrent() && !profile.isEmpty()) {
+					return profile;
+				}
+			} catch (final IOException e) {
+				System.err.println("Ignoring cost profile " + file + ": "
+						+ e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	private static CostProfile loadOrCalibrate(final File file) {
+		final CostProfile loaded = load(file);
+		if (loaded != null) {
+			return loaded;
+		}
+
+		final CostProfile profile = Calibration.calibrate();
+		try {
+			profile.save(file);
+		} catch (final IOException e) {
+			System.err.println("Could not save cost profile " + file + ": "
+					+ e.getMessage());
+		}
+		return profile;
+	}
+
+	/**
+	 * Minimum filter.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 */
+	public <T extends RealType<T>> void minimum(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds) {
+		run(choose(source, target, shape), source, target, shape,
+				outOfBounds, false);
+	}
+
+	/**
+	 * Maximum filter.
+	 *
+	 * @see #minimum(RandomAccessibleInterval, RandomAccessibleInterval, Shape,
+	 *      OutOfBoundsFactory)
+	 */
+	public <T extends RealType<T>> void maximum(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds) {
+		run(choose(source, target, shape), source, target, shape,
+				outOfBounds, true);
+	}
+
+	/**
+	 * Choose the algorithm with the lowest estimated time.
+	 *
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @return the fastest applicable algorithm, or the first applicable one
+	 *         if none is calibrated
+	 * @throws IllegalArgumentException
+	 *             if no algorithm can filter source into target
+	 */
+	public <T extends RealType<T>> Algorithm choose(
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape) {
+		final Class<?> typeClass = source.randomAccess().get().getClass();
+		final int n = source.numDimensions();
+
+		long pixels = 1;
+		for (int d = 0; d < n; ++d) {
+			pixels *= source.dimension(d);
+		}
+
+		Algorithm best = null;
+		double bestTime = Double.POSITIVE_INFINITY;
+		for (final Algorithm algorithm : Algorithm.values()) {
+			if (!isApplicable(algorithm, source, target, shape)) {
+				continue;
+			}
+
+			final double time = profile.estimate(algorithm, typeClass,
+					pixels, work(algorithm, shape, n));
+			if (best == null || time < bestTime) {
+				best = algorithm;
+				bestTime = time;
+			}
+		}
+
+		if (best == null) {
+			throw new IllegalArgumentException(
+					"No algorithm can filter source into target");
+		}
+		return best;
+	}
+
+	/**
+	 * @return whether the algorithm can filter source into target
+	 */
+	public static boolean isApplicable(final Algorithm algorithm,
+			final RandomAccessibleInterval<?> source,
+			final RandomAccessibleInterval<?> target, final Shape shape) {
+		switch (algorithm) {
+		case NAIVE:
+			return source != target;
+		case PRIMITIVE:
+			final boolean isFloat = PrimitiveMinimumFilter
+					.isFloatArrayImg(source)
+					&& PrimitiveMinimumFilter.isFloatArrayImg(target);
+			final boolean isByte = PrimitiveMinimumFilter
+					.isUnsignedByteArrayImg(source)
+					&& PrimitiveMinimumFilter.isUnsignedByteArrayImg(target);
+			return source != target && (isFloat || isByte);
+		case SEPARABLE:
+			return StructuringElements.isBox(shape, source.numDimensions());
+		case DECOMPOSED:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @return the work per pixel of the algorithm for the shape, see
+	 *         {@link Algorithm}
+	 */
+	public static double work(final Algorithm algorithm, final Shape shape,
+			final int n) {
+		switch (algorithm) {
+		case SEPARABLE:
+			return n;
+		case DECOMPOSED:
+			return Decomposition.decompose(shape, n, false).cost();
+		default:
+			return StructuringElements.probe(shape, n).size();
+		}
+	}
+
+	/**
+	 * Run an algorithm.
+	 *
+	 * @param algorithm
+	 *            the algorithm, must be applicable
+	 * @param source
+	 *            input image
+	 * @param target
+	 *            output image with the same interval as source
+	 * @param shape
+	 *            shape of the neighborhoods
+	 * @param outOfBounds
+	 *            factory for values outside of source
+	 * @param max
+	 *            true for a maximum filter, false for a minimum filter
+	 */
+	public static <T extends RealType<T>> void run(final Algorithm algorithm,
+			final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds,
+			final boolean max) {
+		final T type = source.randomAccess().get();
+
+		switch (algorithm) {
+		case NAIVE:
+			if (max) {
+				NeighborhoodReduction.reduce(Views.extend(source, outOfBounds),
+						target, target, shape, new MaximumReducer<T>(type));
+			} else {
+				NeighborhoodReduction.reduce(Views.extend(source, outOfBounds),
+						target, target, shape, new MinimumReducer<T>(type));
+			}
+			break;
+		case PRIMITIVE:
+			PLANS.get(shape, type, source, outOfBounds,
+					max ? Operation.MAX : Operation.MIN).execute(source, target);
+			break;
+		case SEPARABLE:
+			if (max) {
+				SeparableMorphology.dilate(source, target, shape, outOfBounds);
+			} else {
+				SeparableMorphology.erode(source, target, shape, outOfBounds);
+			}
+			break;
+		case DECOMPOSED:
+			if (max) {
+				DecomposedMorphology.dilate(source, target, shape,
+						outOfBounds, false);
+			} else {
+				DecomposedMorphology.erode(source, target, shape, outOfBounds,
+						false);
+			}
+			break;
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package de.squareys.nhbench.tuning;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import de.squareys.nhbench.input.BenchmarkInput;
+import de.squareys.nhbench.input.BenchmarkInput.Content;
+import de.squareys.nhbench.neighborhood.Boundaries;
+
+/**
+ * Micro benchmark run which calibrates a {@link CostProfile}.
+ *
+ * Every {@link Algorithm} is timed on a small and a larger 2D noise image of
+ * {@link UnsignedByteType} and {@link FloatType}, with a few shapes of
+ * different work per pixel. The coefficients of the cost model are then
+ * fitted to the timings by least squares. Every configuration is run for
+ * {@link #WARMUP_MILLIS} first, so the JIT compiled it, even if a single run
+ * on the small image only takes microseconds. The timing is then the fastest
+ * of {@link #REPETITIONS} batches of runs, each batch long enough for the
+ * resolution of the timer. This is far less rigorous than JMH, but only
+ * needs to rank algorithms which differ by factors.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class Calibration {
+
+	/** Minimum duration of the untimed runs before timing a configuration */
+	public static final long WARMUP_MILLIS = 200;
+
+	/** Number of timed batches of a configuration */
+	public static final int REPETITIONS = 5;
+
+	/* minimum duration of a timed batch */
+	private static final long BATCH_NANOS = 1000000;
+
+	private static final long[][] SIZES = { { 32, 32 }, { 256, 256 } };
+
+	private Calibration() {
+		// utility class
+	}
+
+	/**
+	 * Calibrate a profile for this machine.
+	 *
+	 * @return the profile
+	 */
+	public static CostProfile calibrate() {
+		final CostProfile profile = new CostProfile();
+		calibrate(profile, new UnsignedByteType());
+		calibrate(profile, new FloatType());
+		return profile;
+	}
+
+	private static <T extends NativeType<T> & RealType<T>> void calibrate(
+			final CostProfile profile, final T type) {
+		final Shape[] shapes = { new RectangleShape(1, false),
+				new RectangleShape(3, false), new DiamondShape(3) };
+		final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds = Boundaries
+				.factory(Boundaries.MIRROR_SINGLE, type);
+
+		for (final Algorithm algorithm : Algorithm.values()) {
+			final List<double[]> rows = new ArrayList<double[]>();
+			final List<Double> times = new ArrayList<Double>();
+
+			for (final long[] size : SIZES) {
+				final Img<T> source = BenchmarkInput.create(size, type,
+						Content.NOISE, BenchmarkInput.DEFAULT_SEED);
+				final Img<T> target = source.factory().create(source, type);
+				final long pixels = size[0] * size[1];
+
+				for (final Shape shape : shapes) {
+					if (!AutoTunedFilter.isApplicable(algorithm, source,
+							target, shape)) {
+						continue;
+					}
+
+					final double work = AutoTunedFilter.work(algorithm, shape,
+							2);
+					rows.add(new double[] { 1, pixels, pixels * work });
+					times.add(time(algorithm, source, target, shape,
+							outOfBounds));
+				}
+			}
+
+			if (!rows.isEmpty()) {
+				final double[] c = fit(rows, times);
+				profile.set(algorithm, type.getClass(), c[0], c[1], c[2]);
+			}
+		}
+	}
+
+	private static <T extends RealType<T>> double time(
+			final Algorithm algorithm, final RandomAccessibleInterval<T> source,
+			final RandomAccessibleInterval<T> target, final Shape shape,
+			final OutOfBoundsFactory<T, RandomAccessibleInterval<T>> outOfBounds) {
+		final long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1000000;
+		long single;
+		do {
+			final long start = System.nanoTime();
+			AutoTunedFilter.run(algorithm, source, target, shape, outOfBounds,
+					false);
+			single = System.nanoTime() - start;
+		} while (System.nanoTime() < warmupEnd);
+
+		final long batch = Math.max(1, BATCH_NANOS / Math.max(1, single));
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < REPETITIONS; ++i) {
+			final long start = System.nanoTime();
+			for (long b = 0; b < batch; ++b) {
+				AutoTunedFilter.run(algorithm, source, target, shape,
+						outOfBounds, false);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return (double) best / batch;
+	}
+
+	/**
+	 * Least squares fit of <code>time = c0 + c1 * x1 + c2 * x2</code>.
+	 * If the work did not vary, c1 and c2 cannot be told apart, and the time
+	 * per pixel is attributed to the work completely, so the estimate scales
+	 * with the work, e.g. with the number of dimensions for
+	 * {@link Algorithm#SEPARABLE}. Negative coefficients are clamped to 0.
+	 *
+	 * @param rows
+	 *            rows of <code>{1, x1, x2}</code>
+	 * @param times
+	 *            measured times
+	 * @return the coefficients
+	 */
+	static double[] fit(final List<double[]> rows, final List<Double> times) {
+		// only fit the work coefficient if the work varies
+		boolean varies = false;
+		final double ratio = rows.get(0)[2] / rows.get(0)[1];
+		for (final double[] row : rows) {
+			if (row[2] / row[1] != ratio) {
+				varies = true;
+			}
+		}
+		final int m = varies ? 3 : 2;
+
+		// normal equations A^T A c = A^T t
+		final double[][] a = new double[m][m + 1];
+		for (int r = 0; r < rows.size(); ++r) {
+			final double[] row = rows.get(r);
+			final double[] x = varies ? row : new double[] { row[0], row[1] };
+			for (int i = 0; i < m; ++i) {
+				for (int j = 0; j < m; ++j) {
+					a[i][j] += x[i] * x[j];
+				}
+				a[i][m] += x[i] * times.get(r);
+			}
+		}
+
+		final double[] c = solve(a, m);
+		if (!varies) {
+			return new double[] { Math.max(0, c[0]), 0,
+					Math.max(0, c[1] / ratio) };
+		}
+		return new double[] { Math.max(0, c[0]), Math.max(0, c[1]),
+				Math.max(0, c[2]) };
+	}
+
+	/**
+	 * Gaussian elimination with partial pivoting on an augmented matrix.
+	 * Singular systems yield 0 for the undetermined coefficients.
+	 */
+	private static double[] solve(final double[][] a, final int m) {
+		for (int col = 0; col < m; ++col) {
+			int pivot = col;
+			for (int r = col + 1; r < m; ++r) {
+				if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) {
+					pivot = r;
+				}
+			}
+			final double[] tmp = a[col];
+			a[col] = a[pivot];
+			a[pivot] = tmp;
+
+			if (a[col][col] == 0) {
+				continue;
+			}
+			for (int r = 0; r < m; ++r) {
+				if (r != col) {
+					final double f = a[r][col] / a[col][col];
+					for (int j = col; j <= m; ++j) {
+						a[r][j] -= f * a[col][j];
+					}
+				}
+			}
+		}
+
+		final double[] c = new double[m];
+		for (int i = 0; i < m; ++i) {
+			c[i] = (a[i][i] == 0) ? 0 : a[i][m] / a[i][i];
+		}
+		return c;
+	}
+
+	/**
+	 * Calibrate and save a profile.
+	 *
+	 * @param args
+	 *            optional path of the profile, defaults to
+	 *            {@link CostProfile#defaultFile()}
+	 * @throws IOException
+	 *             if the profile could not be written
+	 */
+	public static void main(final String[] args) throws IOException {
+		final File file = (args.length > 0) ? new File(args[0]) : CostProfile
+				.defaultFile();
+
+		Calibration.calibrate().save(file);
+		System.out.println("Wrote cost profile " + file);
+	}
+}
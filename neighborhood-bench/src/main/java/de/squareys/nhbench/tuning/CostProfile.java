@@ -0,0 +1,216 @@
+package de.squareys.nhbench.tuning;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import net.imglib2.type.numeric.real.FloatType;
+import de.squareys.nhbench.results.RunMetadata;
+
+/**
+ * Calibrated cost model of the {@link Algorithm}s on one machine.
+ *
+ * The time of a filter call is modeled as
+ * <code>overhead + pixels * (perPixel + perWork * work)</code>, where work
+ * is the work per pixel of the algorithm for the structuring element (see
+ * {@link Algorithm}). The three coefficients are stored per algorithm and
+ * pixel type class in nanoseconds.
+ *
+ * Profiles are persisted as a properties file together with a fingerprint of
+ * the JVM, operating system and CPU, so a profile calibrated on another
+ * machine is recognized as stale.
+ *
+ * @author Jonathan Hale (University of Konstanz)
+ */
+public class CostProfile {
+
+	/** System property overriding {@link #defaultFile()} */
+	public static final String FILE_PROPERTY = "nhbench.costProfile";
+
+	private static final String FINGERPRINT = "fingerprint";
+
+	/* type whose coefficients estimate types which were not calibrated */
+	private static final Class<?> FALLBACK_TYPE = FloatType.class;
+
+	private final String fingerprint;
+	private final Map<String, double[]> coefficients;
+
+	/**
+	 * Create an empty profile for the current machine.
+	 */
+	public CostProfile() {
+		this(currentFingerprint());
+	}
+
+	private CostProfile(final String fingerprint) {
+		this.fingerprint = fingerprint;
+		this.coefficients = new HashMap<String, double[]>();
+	}
+
+	/**
+	 * @return fingerprint of the JVM, operating system and CPU of this machine
+	 */
+	public static String currentFingerprint() {
+		final RunMetadata metadata = RunMetadata.collect(RunMetadata.UNKNOWN,
+				1);
+		return metadata.get(RunMetadata.JVM) + "|"
+				+ metadata.get(RunMetadata.OS) + "|"
+				+ metadata.get(RunMetadata.CPU) + "|"
+				+ metadata.get(RunMetadata.CORES);
+	}
+
+	/**
+	 * @return the file given by {@link #FILE_PROPERTY}, or
+	 *         ".nhbench/cost-profile.properties" in the home directory
+	 */
+	public static File defaultFile() {
+		final String path = System.getProperty(FILE_PROPERTY);
+		if (path != null) {
+			return new File(path);
+		}
+		return new File(new File(System.getProperty("user.home"), ".nhbench"),
+				"cost-profile.properties");
+	}
+
+	/**
+	 * Set the coefficients of an algorithm.
+	 *
+	 * @param algorithm
+	 *            the algorithm
+	 * @param typeClass
+	 *            pixel type class
+	 * @param overhead
+	 *            nanoseconds per call
+	 * @param perPixel
+	 *            nanoseconds per pixel
+	 * @param perWork
+	 *            nanoseconds per pixel and unit of work
+	 */
+	public void set(final Algorithm algorithm, final Class<?> typeClass,
+			final double overhead, final double perPixel, final double perWork) {
+		coefficients.put(key(algorithm, typeClass), new double[] { overhead,
+				perPixel, perWork });
+	}
+
+	/**
+	 * Estimate the time of a filter call.
+	 *
+	 * @param algorithm
+	 *            the algorithm
+	 * @param typeClass
+	 *            pixel type class
+	 * @param pixels
+	 *            number of pixels of the image
+	 * @param work
+	 *            work per pixel of the algorithm
+	 * @return estimated nanoseconds, using the coefficients of
+	 *         {@link FloatType} if the type was not calibrated, or
+	 *         {@link Double#POSITIVE_INFINITY} if the algorithm was not
+	 *         calibrated for either
+	 */
+	public double estimate(final Algorithm algorithm, final Class<?> typeClass,
+			final long pixels, final double work) {
+		double[] c = coefficients.get(key(algorithm, typeClass));
+		if (c == null) {
+			c = coefficients.get(key(algorithm, FALLBACK_TYPE));
+		}
+		if (c == null) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return c[0] + pixels * (c[1] + c[2] * work);
+	}
+
+	/**
+	 * @return whether this profile was calibrated on the current machine
+	 */
+	public boolean isCurrent() {
+		return fingerprint.equals(currentFingerprint());
+	}
+
+	/**
+	 * @return whether no algorithm is calibrated
+	 */
+	public boolean isEmpty() {
+		return coefficients.isEmpty();
+	}
+
+	/**
+	 * Write the profile.
+	 *
+	 * @param file
+	 *            file to write to, parent directories are created
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public void save(final File file) throws IOException {
+		final File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create " + dir);
+		}
+
+		final Properties properties = new Properties();
+		properties.setProperty(FINGERPRINT, fingerprint);
+		for (final Map.Entry<String, double[]> e : coefficients.entrySet()) {
+			final double[] c = e.getValue();
+			properties.setProperty(e.getKey(), c[0] + "," + c[1] + "," + c[2]);
+		}
+
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			properties.store(out, "neighborhood-bench cost profile");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Read a profile.
+	 *
+	 * @param file
+	 *            file written by {@link #save(File)}
+	 * @return the profile
+	 * @throws IOException
+	 *             if the file could not be read or is malformed
+	 */
+	public static CostProfile load(final File file) throws IOException {
+		final Properties properties = new Properties();
+		final InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+
+		final CostProfile profile = new CostProfile(properties.getProperty(
+				FINGERPRINT, RunMetadata.UNKNOWN));
+		for (final String key : properties.stringPropertyNames()) {
+			if (FINGERPRINT.equals(key)) {
+				continue;
+			}
+			final String[] parts = properties.getProperty(key).split(",");
+			if (parts.length != 3) {
+				throw new IOException(file + ": malformed entry " + key);
+			}
+			try {
+				profile.coefficients.put(key, new double[] {
+						Double.parseDouble(parts[0]),
+						Double.parseDouble(parts[1]),
+						Double.parseDouble(parts[2]) });
+			} catch (final NumberFormatException e) {
+				throw new IOException(file + ": malformed entry " + key);
+			}
+		}
+		return profile;
+	}
+
+	private static String key(final Algorithm algorithm,
+			final Class<?> typeClass) {
+		return algorithm.name() + "." + typeClass.getSimpleName();
+	}
+}